@@ -2,8 +2,14 @@ package com.sky.context;
 
 public class BaseContext {
 
+    // 当前登录者的类型：管理端员工或用户端用户，两者的id可能相同
+    public static final String EMPLOYEE = "employee";
+    public static final String USER = "user";
+
     public static ThreadLocal<Long> threadLocal = new ThreadLocal<>();
 
+    public static ThreadLocal<String> actorThreadLocal = new ThreadLocal<>();
+
     public static void setCurrentId(Long id) {
         threadLocal.set(id);
     }
@@ -16,4 +22,16 @@ public class BaseContext {
         threadLocal.remove();
     }
 
+    public static void setCurrentActor(String actor) {
+        actorThreadLocal.set(actor);
+    }
+
+    public static String getCurrentActor() {
+        return actorThreadLocal.get();
+    }
+
+    public static void removeCurrentActor() {
+        actorThreadLocal.remove();
+    }
+
 }
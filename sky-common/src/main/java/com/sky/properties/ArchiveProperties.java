@@ -0,0 +1,20 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.archive")
+@Data
+public class ArchiveProperties {
+
+    /**
+     * 订单冷热分离相关配置
+     */
+    private boolean enabled; //是否启用，启用后历史订单和报表查询会合并归档表中的数据
+    private int days = 90; //已完成、已取消且下单时间早于该天数的订单移入归档表
+    private int batchSize = 500; //每批归档的订单数，每批一个事务
+    private long batchInterval = 100; //两批之间的停顿，单位毫秒，避免长时间占用主库和复制带宽
+
+}
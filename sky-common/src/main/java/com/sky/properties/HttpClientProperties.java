@@ -0,0 +1,34 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 连接池相关配置
+     */
+    private int maxTotal = 200; //连接池最大连接数
+    private int maxPerRoute = 50; //每个目标主机的最大连接数
+    private long idleTimeout = 30000; //空闲超过该时间的连接被后台线程关闭，单位毫秒
+    private long keepAlive = 30000; //服务端未返回Keep-Alive时连接的保持时间，单位毫秒
+    private int validateAfterInactivity = 2000; //连接空闲超过该时间后复用前先检查是否可用，单位毫秒
+
+    /**
+     * 超时相关配置，单位毫秒
+     */
+    private int connectTimeout = 2000; //建立连接超时
+    private int connectionRequestTimeout = 1000; //从连接池获取连接超时
+    private int socketTimeout = 5000; //读取响应超时
+
+    /**
+     * 异步请求相关配置
+     */
+    private int asyncThreads = 32; //执行异步请求的线程数
+    private int asyncQueueSize = 256; //等待执行的异步请求数，超出时直接失败
+
+}
@@ -0,0 +1,20 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.image-variant")
+@Data
+public class ImageVariantProperties {
+
+    private boolean enabled = true; //上传图片后是否生成缩略图和压缩图
+    private int threads = 2; //生成图片的线程数
+    private int queueSize = 100; //等待生成的图片数，超出时丢弃
+    private int thumbWidth = 200; //缩略图宽度，单位像素
+    private int mediumWidth = 750; //压缩图宽度，单位像素
+    private float quality = 0.8f; //JPEG压缩质量，0~1
+    private long maxPixels = 40_000_000; //原图像素数超过该值时不处理，避免解码占用过多内存
+
+}
@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.menu-search")
+@Data
+public class MenuSearchProperties {
+
+    /**
+     * 菜品、套餐搜索索引相关配置
+     */
+    private String mode = "redis"; //redis 索引的增量更新通过Redis发布订阅同步到所有实例；local 只更新本实例的索引，只能单实例部署
+    private int maxIds = 1000; //匹配的id超过此数量时回退到数据库模糊查询，避免过长的in条件
+
+}
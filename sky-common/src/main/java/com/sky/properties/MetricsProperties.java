@@ -0,0 +1,29 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.metrics")
+@Data
+public class MetricsProperties {
+
+    /**
+     * SQL执行统计相关配置
+     */
+    private long sqlSlowThreshold = 200; //慢SQL阈值，单位毫秒
+    private int sqlSlowCapacity = 100; //保留最近多少条慢SQL
+    private double sqlExplainSampleRate = 0.1; //慢查询执行EXPLAIN的采样比例，0表示关闭
+
+    /**
+     * Prometheus指标接口的访问控制，来源地址在白名单中或携带正确的令牌（Authorization: Bearer）才能访问
+     */
+    private List<String> prometheusAllowedAddresses = new ArrayList<>(Arrays.asList("127.0.0.1", "0:0:0:0:0:0:0:1"));
+    private String prometheusToken; //为空时只按地址白名单校验
+
+}
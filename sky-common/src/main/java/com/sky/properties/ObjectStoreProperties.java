@@ -0,0 +1,30 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.object-store")
+@Data
+public class ObjectStoreProperties {
+
+    private String type = "oss"; //存储类型：oss 阿里云对象存储，local 本地磁盘
+
+    /**
+     * 阿里云对象存储的分片上传配置，连接信息见sky.alioss
+     */
+    private long multipartThreshold = 8 * 1024 * 1024; //超过该大小的文件分片上传，单位字节
+    private int partSize = 2 * 1024 * 1024; //分片大小，单位字节，最小100KB
+    private int uploadThreads = 4; //并行上传分片的线程数，同时缓存在内存中的分片数不超过该值
+
+    /**
+     * 本地磁盘存储配置
+     */
+    private String localDirectory = "upload"; //文件保存目录
+    private String localUrlPrefix = "/files"; //文件访问地址的前缀，由sky-server直接提供访问
+    private long localMaxAge = 31536000; //浏览器缓存时间，单位秒
+    private long localCacheFileMaxBytes = 512 * 1024; //不超过该大小的文件缓存在内存中，单位字节
+    private long localCacheMaxBytes = 64 * 1024 * 1024; //内存缓存的总大小，单位字节
+
+}
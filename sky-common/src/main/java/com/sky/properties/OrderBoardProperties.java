@@ -0,0 +1,21 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-board")
+@Data
+public class OrderBoardProperties {
+
+    /**
+     * 管理端订单看板增量推送相关配置
+     */
+    private String mode = "redis"; //redis 序号和最近的增量保存在Redis中，通过发布订阅推送给所有实例的浏览器；local 只在本实例内，只能单实例部署
+    private int historySize = 1000; //保留最近的增量消息数，客户端断线后在此范围内可按序号补发，超出时发送快照
+    private int snapshotLimit = 500; //快照中进行中订单的最大条数
+    private double syncPermitsPerSecond = 0.2; //每个员工每秒补充的快照、补发请求次数
+    private int syncBurst = 3; //快照、补发请求允许的突发次数
+
+}
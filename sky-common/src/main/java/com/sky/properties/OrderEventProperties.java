@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-event")
+@Data
+public class OrderEventProperties {
+
+    /**
+     * 订单事件发件箱相关配置
+     */
+    private int batchSize = 100; //每批领取分发的事件数
+    private long pollInterval = 1000; //定时检查待分发事件的间隔，单位毫秒，事务提交后会立即分发不必等待
+    private long lease = 60000; //领取后多长时间内未完成视为分发中断，可被重新领取，单位毫秒
+    private int maxAttempts = 10; //最多分发次数，用尽后不再重试
+    private long retryDelay = 1000; //首次重试间隔，之后每次翻倍，单位毫秒
+    private long maxRetryDelay = 300000; //重试间隔上限，单位毫秒
+    private int retentionDays = 3; //已分发事件的保留天数
+    private long reminderWindow = 30000; //同一订单的催单合并推送的时间窗口，窗口内首次催单立即推送，之后的合并为一次，单位毫秒
+
+}
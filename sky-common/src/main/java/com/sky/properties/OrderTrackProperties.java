@@ -0,0 +1,25 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-track")
+@Data
+public class OrderTrackProperties {
+
+    /**
+     * 用户端订单跟踪（Server-Sent Events）相关配置
+     */
+    private long timeout = 1800000; //连接的最长保持时间，到期后客户端自动重连，单位毫秒
+    private long heartbeatInterval = 15000; //心跳间隔，避免代理和负载均衡断开空闲连接，单位毫秒
+    private long reconnectTime = 3000; //建议客户端断线后的重连间隔，单位毫秒
+    private int maxConnectionsPerUser = 3; //每个用户的连接数上限，超出时关闭最早的连接
+    private int replayLimit = 100; //断线重连时最多补发的事件数
+    private long replayLookback = 5000; //补发时从最后收到的事件的分发时间再往前回看的时间，覆盖各实例的时钟偏差，单位毫秒
+    private int sendThreads = 2; //推送线程数，分发线程只把消息放入各连接的待发送队列
+    private int sendQueueSize = 10000; //等待推送线程处理的连接数上限，超出时关闭连接，由客户端重连补发
+    private int maxPendingPerConnection = 100; //每个连接待发送的消息数上限，超出时认为是慢连接并关闭
+
+}
@@ -0,0 +1,38 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.page-count")
+@Data
+public class PageCountProperties {
+
+    /**
+     * 分页查询总数（PageHelper的COUNT语句）的获取策略
+     */
+    private long ttl = 10000; //缓存的总数有效期，单位毫秒；缓存在各实例内，其它实例的修改最长在此期间后才反映到总数
+    private int capacity = 1000; //每条语句最多缓存多少种查询条件的总数
+    private long estimateMinRows = 100000; //无查询条件且表的估算行数不少于该值时直接返回估算值
+    private Map<String, Strategy> strategies = new HashMap<>(); //Mapper语句（如OrderMapper.pageQuery） -> 策略，未配置的语句精确查询
+
+    public enum Strategy {
+        /**
+         * 每次执行COUNT
+         */
+        EXACT,
+        /**
+         * 按查询条件缓存总数，同一Mapper执行增删改时失效
+         */
+        CACHE,
+        /**
+         * 无查询条件时返回表的估算行数，有查询条件时同CACHE；分库后订单相关的表不估算
+         */
+        ESTIMATE
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.pay-notify")
+@Data
+public class PayNotifyProperties {
+
+    /**
+     * 支付回调异步处理相关配置
+     */
+    private int threads = 4; //处理回调的线程数
+    private int queueSize = 1000; //等待处理的回调数，超出时留在收件箱由定时任务补偿
+    private int maxAttempts = 8; //最多处理次数，用尽后不再重试
+    private long retryDelay = 5000; //首次重试间隔，之后每次翻倍，单位毫秒
+    private long maxRetryDelay = 600000; //重试间隔上限，单位毫秒
+    private long lease = 60000; //领取后多长时间内未完成视为处理中断，可被重新领取，单位毫秒
+    private int batchSize = 100; //定时任务每次补偿的回调数
+    private long pollInterval = 5000; //定时任务补偿到期回调的间隔，单位毫秒
+
+}
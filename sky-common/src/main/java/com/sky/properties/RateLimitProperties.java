@@ -0,0 +1,28 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "sky.rate-limit")
+@Data
+public class RateLimitProperties {
+
+    /**
+     * 接口限流相关配置
+     */
+    private boolean enabled = true; //是否启用
+    private String mode = "local"; //local 每个实例单独计数，redis 所有实例共用Redis中的计数，Redis不可用时回退到local
+    private Map<String, Limit> limits = new HashMap<>(); //按限流名称覆盖@RateLimit中的默认限额
+
+    @Data
+    public static class Limit {
+        private double permitsPerSecond; //每秒补充的次数
+        private int burst; //允许的突发次数
+    }
+
+}
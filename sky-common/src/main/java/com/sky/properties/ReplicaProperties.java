@@ -0,0 +1,23 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.replica")
+@Data
+public class ReplicaProperties {
+
+    /**
+     * 读写分离相关配置
+     */
+    private boolean enabled; //是否启用，关闭时所有查询都走主库
+    private String url; //从库jdbc地址
+    private String username; //为空时与主库相同
+    private String password; //为空时与主库相同
+    private long maxLagSeconds = 5; //复制延迟超过该值时读请求回退到主库
+    private long lagCheckInterval = 5000; //检查复制延迟的间隔，单位毫秒
+    private long stickyMillis = 5000; //用户写入后多长时间内的读请求仍走主库，单位毫秒
+
+}
@@ -0,0 +1,31 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "sky.sharding")
+@Data
+public class ShardingProperties {
+
+    /**
+     * 订单分库相关配置
+     * 0号分片为主数据源，shards中依次为1号、2号……分片，只存放orders、order_detail及其归档表和order_event
+     */
+    private boolean enabled; //是否启用，关闭时只有主数据源一个分片
+    private List<Shard> shards = new ArrayList<>();
+    private int idStep = 1000; //每次从主库order_id_segment表申请的订单id序号数
+    private boolean legacyOnPrimary = true; //是否存在启用分库前写入的订单（留在0号分片），存在时按用户查询订单同时查询0号分片
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+
+}
@@ -20,4 +20,15 @@ public class WeChatProperties {
     private String notifyUrl; //支付成功的回调地址
     private String refundNotifyUrl; //退款成功的回调地址
 
+    /**
+     * 微信登录接口调用相关配置
+     */
+    private String loginUrl = "https://api.weixin.qq.com/sns/jscode2session"; //登录凭证校验接口地址
+    private long loginTimeout = 2000; //等待接口返回的总时间，包括排队时间，单位毫秒
+    private int loginMaxConcurrent = 20; //同时调用接口的最大请求数
+    private int loginMaxQueued = 50; //等待调用接口的最大请求数，超出时直接失败
+    private int breakerFailureThreshold = 5; //连续失败多少次后熔断
+    private long breakerOpenMillis = 10000; //熔断持续时间，之后放行探测请求，单位毫秒
+    private int breakerHalfOpenCalls = 3; //探测请求数，全部成功后恢复
+
 }
@@ -0,0 +1,204 @@
+package com.sky.storage;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
+import com.aliyun.oss.model.UploadPartRequest;
+import com.sky.properties.AliOssProperties;
+import com.sky.properties.ObjectStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 阿里云OSS对象存储，所有上传共用一个OSSClient
+ * 小文件直接从输入流上传；大文件或大小未知的文件按分片读取并并行上传，每次上传同时缓存在内存中的分片数有上限
+ */
+@Slf4j
+public class AliOssObjectStore implements ObjectStore, Closeable {
+
+    // OSS要求除最后一片外每片不小于100KB
+    private static final int MIN_PART_SIZE = 100 * 1024;
+
+    private final OSS ossClient;
+    private final String endpoint;
+    private final String bucketName;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final int uploadThreads;
+    private final ThreadPoolExecutor partExecutor;
+
+    public AliOssObjectStore(AliOssProperties aliOssProperties, ObjectStoreProperties objectStoreProperties) {
+        this.ossClient = new OSSClientBuilder().build(aliOssProperties.getEndpoint(),
+                aliOssProperties.getAccessKeyId(), aliOssProperties.getAccessKeySecret());
+        this.endpoint = aliOssProperties.getEndpoint();
+        this.bucketName = aliOssProperties.getBucketName();
+        this.multipartThreshold = objectStoreProperties.getMultipartThreshold();
+        this.partSize = Math.max(objectStoreProperties.getPartSize(), MIN_PART_SIZE);
+        this.uploadThreads = objectStoreProperties.getUploadThreads();
+
+        AtomicInteger index = new AtomicInteger();
+        this.partExecutor = new ThreadPoolExecutor(uploadThreads, uploadThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "oss-part-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.partExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String upload(InputStream in, long size, String objectName, String contentType) throws IOException {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        try {
+            if (size >= 0 && size <= multipartThreshold) {
+                metadata.setContentLength(size);
+                ossClient.putObject(bucketName, objectName, in, metadata);
+            } else {
+                multipartUpload(in, objectName, metadata);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("上传" + objectName + "到OSS失败：" + e.getMessage(), e);
+        }
+        String url = getUrl(objectName);
+        log.info("文件上传到:{}", url);
+        return url;
+    }
+
+    @Override
+    public InputStream download(String objectName) throws IOException {
+        try {
+            return ossClient.getObject(bucketName, objectName).getObjectContent();
+        } catch (RuntimeException e) {
+            throw new IOException("从OSS读取" + objectName + "失败：" + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String objectName) throws IOException {
+        try {
+            ossClient.deleteObject(bucketName, objectName);
+        } catch (RuntimeException e) {
+            throw new IOException("从OSS删除" + objectName + "失败：" + e.getMessage(), e);
+        }
+    }
+
+    //文件访问路径规则 https://BucketName.Endpoint/ObjectName
+    @Override
+    public String getUrl(String objectName) {
+        return "https://" + bucketName + "." + endpoint + "/" + objectName;
+    }
+
+    @Override
+    public void close() {
+        partExecutor.shutdown();
+        ossClient.shutdown();
+    }
+
+    /**
+     * 分片上传：顺序读取分片，提交到线程池并行上传；只有一片时改为普通上传
+     */
+    private void multipartUpload(InputStream in, String objectName, ObjectMetadata metadata) throws IOException {
+        byte[] first = readPart(in);
+        if (first.length < partSize) {
+            metadata.setContentLength(first.length);
+            ossClient.putObject(bucketName, objectName, new ByteArrayInputStream(first), metadata);
+            return;
+        }
+
+        String uploadId = ossClient.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, objectName, metadata)).getUploadId();
+        // 限制本次上传已读入内存、尚未上传完成的分片数
+        Semaphore inFlight = new Semaphore(uploadThreads);
+        List<Future<PartETag>> parts = new ArrayList<>();
+        try {
+            byte[] bytes = first;
+            int partNumber = 1;
+            while (bytes.length > 0) {
+                inFlight.acquire();
+                parts.add(submitPart(objectName, uploadId, partNumber++, bytes, inFlight));
+                bytes = readPart(in);
+            }
+            List<PartETag> partETags = new ArrayList<>();
+            for (Future<PartETag> part : parts) {
+                partETags.add(part.get());
+            }
+            ossClient.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+            log.info("分片上传{}完成，共{}片", objectName, partETags.size());
+        } catch (InterruptedException | ExecutionException | IOException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            for (Future<PartETag> part : parts) {
+                part.cancel(true);
+            }
+            abortQuietly(objectName, uploadId);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            throw new IOException("分片上传" + objectName + "失败：" + cause.getMessage(), cause);
+        }
+    }
+
+    private Future<PartETag> submitPart(String objectName, String uploadId, int partNumber, byte[] bytes, Semaphore inFlight) {
+        try {
+            return partExecutor.submit(() -> {
+                try {
+                    UploadPartRequest request = new UploadPartRequest();
+                    request.setBucketName(bucketName);
+                    request.setKey(objectName);
+                    request.setUploadId(uploadId);
+                    request.setPartNumber(partNumber);
+                    request.setPartSize(bytes.length);
+                    request.setInputStream(new ByteArrayInputStream(bytes));
+                    return ossClient.uploadPart(request).getPartETag();
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取一个分片，流结束时返回的数组长度小于分片大小（可能为0）
+     */
+    private byte[] readPart(InputStream in) throws IOException {
+        byte[] buffer = new byte[partSize];
+        int length = 0;
+        int n;
+        while (length < partSize && (n = in.read(buffer, length, partSize - length)) != -1) {
+            length += n;
+        }
+        return length == partSize ? buffer : Arrays.copyOf(buffer, length);
+    }
+
+    private void abortQuietly(String objectName, String uploadId) {
+        try {
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+        } catch (RuntimeException e) {
+            log.warn("取消分片上传{}失败：{}", objectName, e.getMessage());
+        }
+    }
+}
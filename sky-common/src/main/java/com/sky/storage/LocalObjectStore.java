@@ -0,0 +1,72 @@
+package com.sky.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 本地磁盘对象存储，用于离线测试和没有阿里云OSS的部署
+ * 先写入临时文件再改名，读取方不会看到写了一半的文件
+ */
+@Slf4j
+public class LocalObjectStore implements ObjectStore {
+
+    private final Path root;
+    private final String urlPrefix;
+
+    public LocalObjectStore(String directory, String urlPrefix) throws IOException {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        this.urlPrefix = urlPrefix.endsWith("/") ? urlPrefix.substring(0, urlPrefix.length() - 1) : urlPrefix;
+        Files.createDirectories(root);
+        log.info("本地对象存储目录：{}", root);
+    }
+
+    @Override
+    public String upload(InputStream in, long size, String objectName, String contentType) throws IOException {
+        Path target = resolve(objectName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        String url = getUrl(objectName);
+        log.info("文件上传到:{}", url);
+        return url;
+    }
+
+    @Override
+    public InputStream download(String objectName) throws IOException {
+        return Files.newInputStream(resolve(objectName));
+    }
+
+    @Override
+    public void delete(String objectName) throws IOException {
+        Files.deleteIfExists(resolve(objectName));
+    }
+
+    @Override
+    public String getUrl(String objectName) {
+        return urlPrefix + "/" + objectName;
+    }
+
+    /**
+     * 文件在磁盘上的路径，对象名称不能跳出存储目录
+     * @param objectName
+     * @return
+     */
+    public Path resolve(String objectName) {
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("非法的对象名称：" + objectName);
+        }
+        return path;
+    }
+}
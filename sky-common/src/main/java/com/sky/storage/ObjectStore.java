@@ -0,0 +1,44 @@
+package com.sky.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 对象存储：图片等文件的上传、读取和删除，上传返回可直接访问的地址
+ * 实现类在整个应用中共用一个客户端
+ */
+public interface ObjectStore {
+
+    /**
+     * 从输入流上传文件，不把整个文件读入内存
+     * @param in 文件内容，由调用方关闭
+     * @param size 文件大小，未知时传-1
+     * @param objectName 对象名称
+     * @param contentType 文件类型，可以为null
+     * @return 文件访问地址
+     * @throws IOException
+     */
+    String upload(InputStream in, long size, String objectName, String contentType) throws IOException;
+
+    /**
+     * 读取文件内容，由调用方关闭
+     * @param objectName
+     * @return
+     * @throws IOException
+     */
+    InputStream download(String objectName) throws IOException;
+
+    /**
+     * 删除文件，文件不存在时忽略
+     * @param objectName
+     * @throws IOException
+     */
+    void delete(String objectName) throws IOException;
+
+    /**
+     * 文件访问地址
+     * @param objectName
+     * @return
+     */
+    String getUrl(String objectName);
+}
@@ -0,0 +1,104 @@
+package com.sky.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 熔断器：连续失败达到阈值后断开，断开期间的调用直接拒绝；
+ * 断开一段时间后进入半开状态，放行少量探测调用，全部成功则恢复，任一失败则重新断开
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int halfOpenCalls;
+
+    private State state = State.CLOSED;
+    // 关闭状态下的连续失败次数
+    private int failures;
+    // 断开的时间
+    private long openedAt;
+    // 半开状态下已放行和已成功的探测调用数
+    private int probes;
+    private int probeSuccesses;
+
+    /**
+     * @param name 名称，用于日志
+     * @param failureThreshold 连续失败多少次后断开
+     * @param openMillis 断开多久后进入半开状态，单位毫秒
+     * @param halfOpenCalls 半开状态下放行的探测调用数
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis, int halfOpenCalls) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * 是否允许本次调用；允许后必须调用onSuccess、onFailure或release之一
+     * @return
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probes = 0;
+            probeSuccesses = 0;
+            log.info("熔断器{}进入半开状态，放行{}个探测调用", name, halfOpenCalls);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probes >= halfOpenCalls) {
+                return false;
+            }
+            probes++;
+        }
+        return true;
+    }
+
+    /**
+     * 调用成功
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probeSuccesses >= halfOpenCalls) {
+                state = State.CLOSED;
+                failures = 0;
+                log.info("熔断器{}探测调用全部成功，恢复正常", name);
+            }
+        } else if (state == State.CLOSED) {
+            failures = 0;
+        }
+    }
+
+    /**
+     * 调用失败
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= failureThreshold)) {
+            log.warn("熔断器{}断开，{}毫秒内的调用直接拒绝", name, openMillis);
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 已允许的调用没有实际执行（如被限流拒绝），归还半开状态下的探测名额
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probes > 0) {
+            probes--;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
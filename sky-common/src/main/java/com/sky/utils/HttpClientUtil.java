@@ -1,76 +1,139 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.HttpClientProperties;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Http工具类
+ * Http工具类：所有请求共用一个连接池，复用长连接，后台线程关闭空闲和过期的连接
+ * 异步请求在独立的有界线程池中执行，线程池和队列都满时立即失败，不阻塞调用方
  */
-public class HttpClientUtil {
+@Slf4j
+public class HttpClientUtil implements Closeable {
 
-    static final  int TIMEOUT_MSEC = 5 * 1000;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RequestConfig requestConfig;
+    private final ThreadPoolExecutor asyncExecutor;
+
+    // 请求耗时，单位微秒
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // 失败的请求数（网络异常或状态码不是200）
+    private final LongAdder errors = new LongAdder();
+    // 因线程池已满被拒绝的异步请求数
+    private final LongAdder rejected = new LongAdder();
+
+    public HttpClientUtil(HttpClientProperties properties) {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(properties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(properties.getValidateAfterInactivity());
+
+        requestConfig = RequestConfig.custom()
+                .setConnectTimeout(properties.getConnectTimeout())
+                .setConnectionRequestTimeout(properties.getConnectionRequestTimeout())
+                .setSocketTimeout(properties.getSocketTimeout()).build();
+
+        long keepAlive = properties.getKeepAlive();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // 服务端返回了Keep-Alive时以服务端为准
+                .setKeepAliveStrategy((response, context) -> {
+                    long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return duration > 0 ? duration : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(properties.getIdleTimeout(), TimeUnit.MILLISECONDS)
+                .build();
+
+        AtomicInteger index = new AtomicInteger();
+        asyncExecutor = new ThreadPoolExecutor(properties.getAsyncThreads(), properties.getAsyncThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getAsyncQueueSize()), runnable -> {
+            Thread thread = new Thread(runnable, "http-client-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        asyncExecutor.allowCoreThreadTimeOut(true);
+    }
 
     /**
      * 发送GET方式请求
      * @param url
      * @param paramMap
-     * @return
+     * @return 响应内容，请求失败或状态码不是200时返回空字符串
      */
-    public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
-        String result = "";
-        CloseableHttpResponse response = null;
-
-        try{
+    public String doGet(String url, Map<String, String> paramMap) {
+        try {
             URIBuilder builder = new URIBuilder(url);
-            if(paramMap != null){
-                for (String key : paramMap.keySet()) {
-                    builder.addParameter(key,paramMap.get(key));
+            if (paramMap != null) {
+                for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                    builder.addParameter(param.getKey(), param.getValue());
                 }
             }
             URI uri = builder.build();
 
             //创建GET请求
-            HttpGet httpGet = new HttpGet(uri);
+            return execute(new HttpGet(uri), true);
+        } catch (Exception e) {
+            log.warn("GET请求{}失败：{}", url, e.getMessage());
+            return "";
+        }
+    }
 
-            //发送请求
-            response = httpClient.execute(httpGet);
+    /**
+     * 发送POST方式请求
+     * @param url
+     * @param paramMap
+     * @return
+     * @throws IOException
+     */
+    public String doPost(String url, Map<String, String> paramMap) throws IOException {
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
 
-            //判断响应状态
-            if(response.getStatusLine().getStatusCode() == 200){
-                result = EntityUtils.toString(response.getEntity(),"UTF-8");
-            }
-        }catch (Exception e){
-            e.printStackTrace();
-        }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        // 创建参数列表
+        if (paramMap != null) {
+            List<NameValuePair> paramList = new ArrayList<>();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
             }
+            // 模拟表单
+            UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
+            httpPost.setEntity(entity);
         }
 
-        return result;
+        return execute(httpPost, false);
     }
 
     /**
@@ -80,100 +143,135 @@ public class HttpClientUtil {
      * @return
      * @throws IOException
      */
-    public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
-
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
+    public String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
+        // 创建Http Post请求
+        HttpPost httpPost = new HttpPost(url);
 
-            // 创建参数列表
-            if (paramMap != null) {
-                List<NameValuePair> paramList = new ArrayList();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    paramList.add(new BasicNameValuePair(param.getKey(), param.getValue()));
-                }
-                // 模拟表单
-                UrlEncodedFormEntity entity = new UrlEncodedFormEntity(paramList);
-                httpPost.setEntity(entity);
+        if (paramMap != null) {
+            //构造json格式数据
+            JSONObject jsonObject = new JSONObject();
+            for (Map.Entry<String, String> param : paramMap.entrySet()) {
+                jsonObject.put(param.getKey(), param.getValue());
             }
+            StringEntity entity = new StringEntity(jsonObject.toString(), "utf-8");
+            //设置请求编码
+            entity.setContentEncoding("utf-8");
+            //设置数据类型
+            entity.setContentType("application/json");
+            httpPost.setEntity(entity);
+        }
 
-            httpPost.setConfig(builderRequestConfig());
-
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+        return execute(httpPost, false);
+    }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    /**
+     * 异步发送GET方式请求
+     * @param url
+     * @param paramMap
+     * @return
+     */
+    public CompletableFuture<String> doGetAsync(String url, Map<String, String> paramMap) {
+        return submit(() -> doGet(url, paramMap));
+    }
 
-        return resultString;
+    /**
+     * 异步发送POST方式请求
+     * @param url
+     * @param paramMap
+     * @return
+     */
+    public CompletableFuture<String> doPostAsync(String url, Map<String, String> paramMap) {
+        return submit(() -> doPost(url, paramMap));
     }
 
     /**
-     * 发送POST方式请求
+     * 异步发送POST方式请求，请求体为json
      * @param url
      * @param paramMap
      * @return
-     * @throws IOException
      */
-    public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-        CloseableHttpResponse response = null;
-        String resultString = "";
+    public CompletableFuture<String> doPost4JsonAsync(String url, Map<String, String> paramMap) {
+        return submit(() -> doPost4Json(url, paramMap));
+    }
 
-        try {
-            // 创建Http Post请求
-            HttpPost httpPost = new HttpPost(url);
+    /**
+     * 连接池状态：使用中、空闲、等待获取连接的请求数和最大连接数
+     * @return
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
 
-            if (paramMap != null) {
-                //构造json格式数据
-                JSONObject jsonObject = new JSONObject();
-                for (Map.Entry<String, String> param : paramMap.entrySet()) {
-                    jsonObject.put(param.getKey(),param.getValue());
-                }
-                StringEntity entity = new StringEntity(jsonObject.toString(),"utf-8");
-                //设置请求编码
-                entity.setContentEncoding("utf-8");
-                //设置数据类型
-                entity.setContentType("application/json");
-                httpPost.setEntity(entity);
-            }
+    /**
+     * 请求耗时分布，单位微秒
+     * @return
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
 
-            httpPost.setConfig(builderRequestConfig());
+    public long getRejected() {
+        return rejected.sum();
+    }
 
-            // 执行http请求
-            response = httpClient.execute(httpPost);
+    public int getAsyncQueueSize() {
+        return asyncExecutor.getQueue().size();
+    }
 
-            resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
-        } catch (Exception e) {
-            throw e;
+    @Override
+    public void close() throws IOException {
+        asyncExecutor.shutdown();
+        httpClient.close();
+    }
+
+    /**
+     * 执行请求；响应内容读取完毕后连接归还连接池
+     * @param request
+     * @param requireOk 状态码不是200时是否返回空字符串
+     */
+    private String execute(HttpRequestBase request, boolean requireOk) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (requireOk && statusCode != 200) {
+                EntityUtils.consume(response.getEntity());
+                return "";
+            }
+            String result = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), "UTF-8");
+            success = statusCode == 200;
+            return result;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+            latency.record((System.nanoTime() - start) / 1000);
+            if (!success) {
+                errors.increment();
             }
         }
-
-        return resultString;
     }
-    private static RequestConfig builderRequestConfig() {
-        return RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
-                .setSocketTimeout(TIMEOUT_MSEC).build();
+
+    private CompletableFuture<String> submit(HttpCall call) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            asyncExecutor.execute(() -> {
+                try {
+                    future.complete(call.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
     }
 
+    @FunctionalInterface
+    private interface HttpCall {
+        String call() throws IOException;
+    }
 }
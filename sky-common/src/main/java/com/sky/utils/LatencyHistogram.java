@@ -0,0 +1,140 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 线程安全的延迟直方图（HdrHistogram风格的对数-线性分桶）
+ * 每个2的幂区间再均分为64个子桶，相对误差约1.6%，记录操作无锁，适合在请求路径上使用
+ * 记录的数值单位由调用方决定（一般为微秒）
+ */
+public class LatencyHistogram {
+
+    // 子桶位数，决定精度
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 覆盖到Long.MAX_VALUE所需的桶数
+    private static final int BUCKET_COUNT = 64 - SUB_BUCKET_BITS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT * SUB_BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalSum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个数值，负数按0处理
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.increment();
+        totalSum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 记录的总次数
+     * @return
+     */
+    public long getCount() {
+        return totalCount.sum();
+    }
+
+    /**
+     * 记录的数值总和
+     * @return
+     */
+    public long getSum() {
+        return totalSum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double) getSum() / count;
+    }
+
+    /**
+     * 获取指定百分位的数值（返回所在桶的上界，偏保守）
+     * @param percentile 0-100，例如 99.9
+     * @return
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * 统计小于等于指定数值的记录次数，用于导出累积分桶（如Prometheus的le标签）
+     * @param value
+     * @return
+     */
+    public long getCountAtOrBelow(long value) {
+        if (value < 0) {
+            return 0;
+        }
+        int last = indexOf(value);
+        long seen = 0;
+        for (int i = 0; i <= last; i++) {
+            seen += counts.get(i);
+        }
+        return seen;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalSum.reset();
+        max.set(0);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int bucket = msb - SUB_BUCKET_BITS + 1;
+        int sub = (int) (value >>> (bucket - 1));
+        return bucket * SUB_BUCKET_COUNT + (sub - SUB_BUCKET_COUNT);
+    }
+
+    private static long upperBoundOf(int index) {
+        int bucket = index / SUB_BUCKET_COUNT;
+        int sub = index % SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return sub;
+        }
+        int shift = bucket - 1;
+        long upper = ((long) (sub + SUB_BUCKET_COUNT + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
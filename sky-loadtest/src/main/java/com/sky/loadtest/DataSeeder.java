@@ -0,0 +1,388 @@
+package com.sky.loadtest;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 向内嵌数据库写入表结构和接近线上分布的菜单、用户、历史订单数据
+ */
+@Slf4j
+public class DataSeeder {
+
+    private static final String[] DISH_CATEGORIES = {"湘菜", "川菜", "粤菜", "主食", "汤类", "饮品"};
+    private static final String[] SETMEAL_CATEGORIES = {"商务套餐", "人气套餐"};
+    private static final String[] STYLES = {"红烧", "清蒸", "干煸", "水煮", "酸辣", "宫保", "鱼香", "糖醋", "爆炒", "凉拌"};
+    private static final String[] INGREDIENTS = {"牛肉", "鸡丁", "鱼片", "排骨", "豆腐", "茄子", "土豆丝", "虾仁", "肥肠", "藕片", "莴笋", "鸭血"};
+    private static final String SPICY_FLAVOR = "[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]";
+    private static final String AVOID_FLAVOR = "[\"不要葱\",\"不要蒜\",\"不要香菜\",\"不要辣\"]";
+    private static final int BATCH_SIZE = 500;
+    // 与V8__order_id_segment.sql中号段的初始值一致
+    private static final long ORDER_ID_SEGMENT_START = 10_000_000_000L;
+
+    private final LoadTestConfig config;
+    private final Random random = new Random(20230101L);
+
+    public DataSeeder(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 建表并写入数据
+     * @param urls 内嵌数据库的jdbc地址，第一个为主库，其余为订单分片
+     * @return 压测脚本需要用到的id集合
+     */
+    public SeedData seed(List<String> urls) throws SQLException {
+        long start = System.currentTimeMillis();
+        SeedData seedData = new SeedData();
+        List<Connection> shards = new ArrayList<>();
+        try {
+            for (String url : urls) {
+                Connection connection = DriverManager.getConnection(url, "sa", "");
+                shards.add(connection);
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/schema.sql"));
+                migrate(connection);
+                connection.setAutoCommit(false);
+            }
+            Connection connection = shards.get(0);
+            seedEmployee(connection);
+            seedMenu(connection, seedData);
+            seedUsers(connection, seedData);
+            seedOrders(shards, seedData);
+            for (Connection shard : shards) {
+                shard.commit();
+            }
+        } finally {
+            for (Connection shard : shards) {
+                shard.close();
+            }
+        }
+        log.info("压测数据准备完成：用户{}个，菜品{}个，套餐{}个，历史订单{}个，订单分片{}个，耗时{}ms",
+                seedData.getUserIds().size(), seedData.getDishIds().size(), seedData.getSetmealIds().size(),
+                config.getSeedOrders(), urls.size(), System.currentTimeMillis() - start);
+        return seedData;
+    }
+
+    /**
+     * 按文件名顺序执行sky-server中的数据库变更脚本（索引等），保持与线上一致
+     */
+    private void migrate(Connection connection) throws SQLException {
+        try {
+            Resource[] scripts = new PathMatchingResourcePatternResolver().getResources("classpath*:db/migration/*.sql");
+            Arrays.sort(scripts, Comparator.comparing(Resource::getFilename));
+            for (Resource script : scripts) {
+                ScriptUtils.executeSqlScript(connection, script);
+            }
+        } catch (IOException e) {
+            throw new SQLException("读取数据库变更脚本失败", e);
+        }
+    }
+
+    private void seedEmployee(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into employee (name, username, password, phone, sex, id_number, status, create_time, update_time, create_user, update_user)"
+                        + " values ('管理员', 'admin', 'e10adc3949ba59abbe56e057f20f883e', '13812312312', '1', '110101199001010047', 1, ?, ?, 1, 1)")) {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            ps.setTimestamp(1, now);
+            ps.setTimestamp(2, now);
+            ps.executeUpdate();
+        }
+    }
+
+    private void seedMenu(Connection connection, SeedData seedData) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        String categorySql = "insert into category (type, name, sort, status, create_time, update_time, create_user, update_user)"
+                + " values (?, ?, ?, 1, ?, ?, 1, 1)";
+        try (PreparedStatement ps = connection.prepareStatement(categorySql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < DISH_CATEGORIES.length; i++) {
+                seedData.getDishCategoryIds().add(insertCategory(ps, 1, DISH_CATEGORIES[i], i, now));
+            }
+            for (int i = 0; i < SETMEAL_CATEGORIES.length; i++) {
+                seedData.getSetmealCategoryIds().add(insertCategory(ps, 2, SETMEAL_CATEGORIES[i], i, now));
+            }
+        }
+
+        String dishSql = "insert into dish (name, category_id, price, image, description, status, create_time, update_time, create_user, update_user)"
+                + " values (?, ?, ?, ?, ?, 1, ?, ?, 1, 1)";
+        String flavorSql = "insert into dish_flavor (dish_id, name, value) values (?, ?, ?)";
+        try (PreparedStatement dishPs = connection.prepareStatement(dishSql, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement flavorPs = connection.prepareStatement(flavorSql)) {
+            int index = 0;
+            for (Long categoryId : seedData.getDishCategoryIds()) {
+                for (int i = 0; i < config.getDishesPerCategory(); i++, index++) {
+                    String name = dishName(index);
+                    BigDecimal price = BigDecimal.valueOf(10 + random.nextInt(79));
+                    dishPs.setString(1, name);
+                    dishPs.setLong(2, categoryId);
+                    dishPs.setBigDecimal(3, price);
+                    dishPs.setString(4, "https://sky-takeout.oss-cn-hangzhou.aliyuncs.com/dish-" + index + ".png");
+                    dishPs.setString(5, name + "，选用当日新鲜食材现做");
+                    dishPs.setTimestamp(6, now);
+                    dishPs.setTimestamp(7, now);
+                    dishPs.executeUpdate();
+                    Long dishId = generatedKey(dishPs);
+                    seedData.getDishIds().add(dishId);
+                    seedData.getDishNames().add(name);
+                    seedData.getDishPrices().add(price);
+                    // 约一半的菜品有口味
+                    if (random.nextBoolean()) {
+                        addFlavor(flavorPs, dishId, "辣度", SPICY_FLAVOR);
+                        addFlavor(flavorPs, dishId, "忌口", AVOID_FLAVOR);
+                    }
+                }
+            }
+            flavorPs.executeBatch();
+        }
+
+        String setmealSql = "insert into setmeal (category_id, name, price, status, description, image, create_time, update_time, create_user, update_user)"
+                + " values (?, ?, ?, 1, ?, ?, ?, ?, 1, 1)";
+        String setmealDishSql = "insert into setmeal_dish (setmeal_id, dish_id, name, price, copies) values (?, ?, ?, ?, 1)";
+        try (PreparedStatement setmealPs = connection.prepareStatement(setmealSql, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement setmealDishPs = connection.prepareStatement(setmealDishSql)) {
+            int index = 0;
+            for (int c = 0; c < seedData.getSetmealCategoryIds().size(); c++) {
+                Long categoryId = seedData.getSetmealCategoryIds().get(c);
+                for (int i = 0; i < config.getSetmealsPerCategory(); i++, index++) {
+                    String name = SETMEAL_CATEGORIES[c] + (i + 1) + "号";
+                    BigDecimal price = BigDecimal.ZERO;
+                    List<Integer> dishIndexes = new ArrayList<>();
+                    for (int d = 0; d < 3; d++) {
+                        int dishIndex = random.nextInt(seedData.getDishIds().size());
+                        dishIndexes.add(dishIndex);
+                        price = price.add(seedData.getDishPrices().get(dishIndex));
+                    }
+                    setmealPs.setLong(1, categoryId);
+                    setmealPs.setString(2, name);
+                    setmealPs.setBigDecimal(3, price);
+                    setmealPs.setString(4, name + "，三菜组合");
+                    setmealPs.setString(5, "https://sky-takeout.oss-cn-hangzhou.aliyuncs.com/setmeal-" + index + ".png");
+                    setmealPs.setTimestamp(6, now);
+                    setmealPs.setTimestamp(7, now);
+                    setmealPs.executeUpdate();
+                    Long setmealId = generatedKey(setmealPs);
+                    seedData.getSetmealIds().add(setmealId);
+                    for (Integer dishIndex : dishIndexes) {
+                        setmealDishPs.setLong(1, setmealId);
+                        setmealDishPs.setLong(2, seedData.getDishIds().get(dishIndex));
+                        setmealDishPs.setString(3, seedData.getDishNames().get(dishIndex));
+                        setmealDishPs.setBigDecimal(4, seedData.getDishPrices().get(dishIndex));
+                        setmealDishPs.addBatch();
+                    }
+                }
+            }
+            setmealDishPs.executeBatch();
+        }
+    }
+
+    private void seedUsers(Connection connection, SeedData seedData) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        String userSql = "insert into user (openid, name, phone, create_time) values (?, ?, ?, ?)";
+        String addressSql = "insert into address_book (user_id, consignee, sex, phone, province_code, province_name, city_code, city_name,"
+                + " district_code, district_name, detail, label, is_default)"
+                + " values (?, ?, '1', ?, '33', '浙江省', '3301', '杭州市', '330106', '西湖区', ?, '公司', 1)";
+        try (PreparedStatement userPs = connection.prepareStatement(userSql, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement addressPs = connection.prepareStatement(addressSql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < config.getSeedUsers(); i++) {
+                String phone = String.valueOf(13900000000L + i);
+                userPs.setString(1, "loadtest-openid-" + i);
+                userPs.setString(2, "压测用户" + i);
+                userPs.setString(3, phone);
+                userPs.setTimestamp(4, Timestamp.valueOf(now.minusMinutes(random.nextInt(90 * 24 * 60))));
+                userPs.executeUpdate();
+                Long userId = generatedKey(userPs);
+
+                addressPs.setLong(1, userId);
+                addressPs.setString(2, "压测用户" + i);
+                addressPs.setString(3, phone);
+                addressPs.setString(4, "文三路" + (i % 500) + "号");
+                addressPs.executeUpdate();
+                seedData.getUserIds().add(userId);
+                seedData.getAddressBookIds().add(generatedKey(addressPs));
+                seedData.getPhones().add(phone);
+            }
+        }
+    }
+
+    /**
+     * 历史订单：大部分已完成，少量取消和进行中，按天均匀分布
+     * 订单及明细写入user_id所在的分片，订单号末两位为分片号
+     * 多个分片时按线上规则指定订单id（序号 * 100 + 分片号），并把主库的id号段推进到已用的序号之后
+     */
+    private void seedOrders(List<Connection> shards, SeedData seedData) throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        boolean sharded = shards.size() > 1;
+        // 指定id时参数位置后移一位
+        int o = sharded ? 1 : 0;
+        String orderSql = "insert into orders (" + (sharded ? "id, " : "") + "number, status, user_id, address_book_id, order_time, checkout_time, pay_method, pay_status,"
+                + " amount, phone, address, consignee, cancel_reason, cancel_time, delivery_status, delivery_time, pack_amount,"
+                + " tableware_number, tableware_status, number_rev, phone_rev)"
+                + " values (" + (sharded ? "?, " : "") + "?, ?, ?, ?, ?, ?, 1, ?, ?, ?, '文三路', ?, ?, ?, 1, ?, 0, 0, 1, reverse(?), reverse(?))";
+        String detailSql = "insert into order_detail (name, image, order_id, dish_id, number, amount) values (?, ?, ?, ?, ?, ?)";
+        List<PreparedStatement> orderStatements = new ArrayList<>();
+        List<PreparedStatement> detailStatements = new ArrayList<>();
+        try {
+            for (Connection connection : shards) {
+                orderStatements.add(connection.prepareStatement(orderSql, Statement.RETURN_GENERATED_KEYS));
+                detailStatements.add(connection.prepareStatement(detailSql));
+            }
+            for (int i = 0; i < config.getSeedOrders(); i++) {
+                int userIndex = random.nextInt(seedData.getUserIds().size());
+                Long userId = seedData.getUserIds().get(userIndex);
+                int shard = (int) (userId % shards.size());
+                PreparedStatement orderPs = orderStatements.get(shard);
+                PreparedStatement detailPs = detailStatements.get(shard);
+                LocalDateTime orderTime = now.minusMinutes(random.nextInt(Math.max(1, config.getSeedDays()) * 24 * 60));
+                int status = randomStatus();
+
+                int lines = 1 + random.nextInt(4);
+                int[] dishIndexes = new int[lines];
+                int[] numbers = new int[lines];
+                BigDecimal amount = BigDecimal.ZERO;
+                for (int l = 0; l < lines; l++) {
+                    dishIndexes[l] = random.nextInt(seedData.getDishIds().size());
+                    numbers[l] = 1 + random.nextInt(2);
+                    amount = amount.add(seedData.getDishPrices().get(dishIndexes[l]).multiply(BigDecimal.valueOf(numbers[l])));
+                }
+
+                String number = (1600000000000L + i) + String.format("%02d", shard);
+                orderPs.setString(o + 1, number);
+                orderPs.setInt(o + 2, status);
+                orderPs.setLong(o + 3, userId);
+                orderPs.setLong(o + 4, seedData.getAddressBookIds().get(userIndex));
+                orderPs.setTimestamp(o + 5, Timestamp.valueOf(orderTime));
+                orderPs.setTimestamp(o + 6, status == 1 ? null : Timestamp.valueOf(orderTime.plusMinutes(1)));
+                orderPs.setInt(o + 7, status == 1 ? 0 : 1);
+                orderPs.setBigDecimal(o + 8, amount);
+                orderPs.setString(o + 9, seedData.getPhones().get(userIndex));
+                orderPs.setString(o + 10, "压测用户" + userIndex);
+                orderPs.setString(o + 11, status == 6 ? "用户取消" : null);
+                orderPs.setTimestamp(o + 12, status == 6 ? Timestamp.valueOf(orderTime.plusMinutes(5)) : null);
+                orderPs.setTimestamp(o + 13, status == 5 ? Timestamp.valueOf(orderTime.plusMinutes(40)) : null);
+                orderPs.setString(o + 14, number);
+                orderPs.setString(o + 15, seedData.getPhones().get(userIndex));
+                Long orderId = null;
+                if (sharded) {
+                    orderId = (ORDER_ID_SEGMENT_START + i + 1) * 100 + shard;
+                    orderPs.setLong(1, orderId);
+                }
+                orderPs.executeUpdate();
+                if (orderId == null) {
+                    orderId = generatedKey(orderPs);
+                }
+
+                for (int l = 0; l < lines; l++) {
+                    detailPs.setString(1, seedData.getDishNames().get(dishIndexes[l]));
+                    detailPs.setString(2, "https://sky-takeout.oss-cn-hangzhou.aliyuncs.com/dish-" + dishIndexes[l] + ".png");
+                    detailPs.setLong(3, orderId);
+                    detailPs.setLong(4, seedData.getDishIds().get(dishIndexes[l]));
+                    detailPs.setInt(5, numbers[l]);
+                    detailPs.setBigDecimal(6, seedData.getDishPrices().get(dishIndexes[l]));
+                    detailPs.addBatch();
+                }
+                if (i % BATCH_SIZE == 0) {
+                    for (PreparedStatement ps : detailStatements) {
+                        ps.executeBatch();
+                    }
+                }
+            }
+            for (PreparedStatement ps : detailStatements) {
+                ps.executeBatch();
+            }
+            if (sharded) {
+                try (PreparedStatement ps = shards.get(0).prepareStatement(
+                        "update order_id_segment set max_value = ? where name = 'orders'")) {
+                    ps.setLong(1, ORDER_ID_SEGMENT_START + config.getSeedOrders());
+                    ps.executeUpdate();
+                }
+            }
+        } finally {
+            for (PreparedStatement ps : orderStatements) {
+                ps.close();
+            }
+            for (PreparedStatement ps : detailStatements) {
+                ps.close();
+            }
+        }
+    }
+
+    private int randomStatus() {
+        int value = random.nextInt(100);
+        if (value < 75) {
+            return 5;
+        } else if (value < 85) {
+            return 6;
+        } else if (value < 90) {
+            return 2;
+        } else if (value < 95) {
+            return 3;
+        } else if (value < 98) {
+            return 4;
+        }
+        return 1;
+    }
+
+    private static String dishName(int index) {
+        String name = STYLES[index % STYLES.length] + INGREDIENTS[(index / STYLES.length) % INGREDIENTS.length];
+        int round = index / (STYLES.length * INGREDIENTS.length);
+        return round == 0 ? name : name + round;
+    }
+
+    private static Long insertCategory(PreparedStatement ps, int type, String name, int sort, Timestamp now) throws SQLException {
+        ps.setInt(1, type);
+        ps.setString(2, name);
+        ps.setInt(3, sort);
+        ps.setTimestamp(4, now);
+        ps.setTimestamp(5, now);
+        ps.executeUpdate();
+        return generatedKey(ps);
+    }
+
+    private static void addFlavor(PreparedStatement ps, Long dishId, String name, String value) throws SQLException {
+        ps.setLong(1, dishId);
+        ps.setString(2, name);
+        ps.setString(3, value);
+        ps.addBatch();
+    }
+
+    private static Long generatedKey(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.getGeneratedKeys()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * 预置数据中压测脚本需要引用的id
+     */
+    @Data
+    public static class SeedData {
+        private List<Long> dishCategoryIds = new ArrayList<>();
+        private List<Long> setmealCategoryIds = new ArrayList<>();
+        private List<Long> dishIds = new ArrayList<>();
+        private List<String> dishNames = new ArrayList<>();
+        private List<BigDecimal> dishPrices = new ArrayList<>();
+        private List<Long> setmealIds = new ArrayList<>();
+        private List<Long> userIds = new ArrayList<>();
+        private List<Long> addressBookIds = new ArrayList<>();
+        private List<String> phones = new ArrayList<>();
+    }
+}
@@ -0,0 +1,599 @@
+package com.sky.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内的Redis替身，使用RESP2协议
+ * 只实现项目（RedisTemplate、Spring Cache、销量排名的有序集合、图片变体标记）和Lettuce握手实际会用到的命令子集，数据只保存在内存中
+ */
+@Slf4j
+public class EmbeddedRedisServer implements Closeable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "embedded-redis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 数据库编号 -> 键值数据
+    private final Map<Integer, Map<String, Entry>> databases = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public EmbeddedRedisServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 启动监听，每个连接一个工作线程
+     */
+    public void start() {
+        running = true;
+        workers.execute(() -> {
+            while (running) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    workers.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    if (running) {
+                        log.error("Redis替身接受连接失败：{}", e.getMessage());
+                    }
+                }
+            }
+        });
+        log.info("Redis替身已启动，端口：{}", getPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream());
+            int db = 0;
+            while (running) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    break;
+                }
+                if (command.isEmpty()) {
+                    continue;
+                }
+                String name = string(command.get(0)).toUpperCase(Locale.ROOT);
+                if ("SELECT".equals(name)) {
+                    db = Integer.parseInt(string(command.get(1)));
+                    writeSimple(out, "OK");
+                } else if ("QUIT".equals(name)) {
+                    writeSimple(out, "OK");
+                    out.flush();
+                    break;
+                } else {
+                    try {
+                        execute(database(db), name, command, out);
+                    } catch (RuntimeException e) {
+                        writeError(out, "ERR " + e.getMessage());
+                    }
+                }
+                // 客户端流水线发送时，攒够一批再刷出
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException ignored) {
+            // 客户端断开
+        } catch (IOException e) {
+            if (running) {
+                log.debug("Redis替身连接异常：{}", e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, Entry> database(int index) {
+        return databases.computeIfAbsent(index, key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 执行单条命令
+     */
+    private void execute(Map<String, Entry> data, String name, List<byte[]> args, OutputStream out) throws IOException {
+        switch (name) {
+            case "PING":
+                writeSimple(out, "PONG");
+                break;
+            case "ECHO":
+                writeBulk(out, args.get(1));
+                break;
+            case "HELLO":
+                // 让Lettuce回退到RESP2
+                writeError(out, "ERR unknown command 'HELLO'");
+                break;
+            case "AUTH":
+            case "CLIENT":
+            case "READONLY":
+                writeSimple(out, "OK");
+                break;
+            case "INFO":
+                writeBulk(out, "# Server\r\nredis_version:6.0.0\r\nredis_mode:standalone\r\n".getBytes(StandardCharsets.UTF_8));
+                break;
+            case "GET": {
+                Entry entry = live(data, string(args.get(1)));
+                if (entry != null && entry.zset != null) {
+                    writeError(out, "WRONGTYPE Operation against a key holding the wrong kind of value");
+                    break;
+                }
+                writeBulk(out, entry == null ? null : entry.value);
+                break;
+            }
+            case "MGET": {
+                List<byte[]> values = new ArrayList<>();
+                for (int i = 1; i < args.size(); i++) {
+                    Entry entry = live(data, string(args.get(i)));
+                    values.add(entry == null ? null : entry.value);
+                }
+                writeArray(out, values);
+                break;
+            }
+            case "SET":
+                set(data, args, out);
+                break;
+            case "SETNX": {
+                String key = string(args.get(1));
+                boolean absent = live(data, key) == null;
+                if (absent) {
+                    data.put(key, new Entry(args.get(2), 0));
+                }
+                writeInteger(out, absent ? 1 : 0);
+                break;
+            }
+            case "SETEX":
+            case "PSETEX": {
+                long ttl = Long.parseLong(string(args.get(2)));
+                long millis = "SETEX".equals(name) ? ttl * 1000 : ttl;
+                data.put(string(args.get(1)), new Entry(args.get(3), System.currentTimeMillis() + millis));
+                writeSimple(out, "OK");
+                break;
+            }
+            case "DEL":
+            case "UNLINK": {
+                int removed = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (live(data, string(args.get(i))) != null && data.remove(string(args.get(i))) != null) {
+                        removed++;
+                    }
+                }
+                writeInteger(out, removed);
+                break;
+            }
+            case "EXISTS": {
+                int count = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    if (live(data, string(args.get(i))) != null) {
+                        count++;
+                    }
+                }
+                writeInteger(out, count);
+                break;
+            }
+            case "KEYS":
+                writeArray(out, keys(data, string(args.get(1))));
+                break;
+            case "SCAN": {
+                // 一次返回全部匹配的键，游标直接归零
+                String pattern = "*";
+                for (int i = 2; i + 1 < args.size(); i += 2) {
+                    if ("MATCH".equalsIgnoreCase(string(args.get(i)))) {
+                        pattern = string(args.get(i + 1));
+                    }
+                }
+                out.write(("*2\r\n").getBytes(StandardCharsets.UTF_8));
+                writeBulk(out, "0".getBytes(StandardCharsets.UTF_8));
+                writeArray(out, keys(data, pattern));
+                break;
+            }
+            case "EXPIRE":
+            case "PEXPIRE": {
+                Entry entry = live(data, string(args.get(1)));
+                if (entry == null) {
+                    writeInteger(out, 0);
+                } else {
+                    long ttl = Long.parseLong(string(args.get(2)));
+                    entry.expireAt = System.currentTimeMillis() + ("EXPIRE".equals(name) ? ttl * 1000 : ttl);
+                    writeInteger(out, 1);
+                }
+                break;
+            }
+            case "PERSIST": {
+                Entry entry = live(data, string(args.get(1)));
+                if (entry != null) {
+                    entry.expireAt = 0;
+                }
+                writeInteger(out, entry == null ? 0 : 1);
+                break;
+            }
+            case "TTL":
+            case "PTTL": {
+                Entry entry = live(data, string(args.get(1)));
+                long ttl;
+                if (entry == null) {
+                    ttl = -2;
+                } else if (entry.expireAt == 0) {
+                    ttl = -1;
+                } else {
+                    long millis = entry.expireAt - System.currentTimeMillis();
+                    ttl = "TTL".equals(name) ? millis / 1000 : millis;
+                }
+                writeInteger(out, ttl);
+                break;
+            }
+            case "INCR":
+            case "DECR":
+            case "INCRBY":
+            case "DECRBY": {
+                long delta = args.size() > 2 ? Long.parseLong(string(args.get(2))) : 1;
+                if (name.startsWith("DECR")) {
+                    delta = -delta;
+                }
+                writeInteger(out, increment(data, string(args.get(1)), delta));
+                break;
+            }
+            case "TYPE": {
+                Entry entry = live(data, string(args.get(1)));
+                writeSimple(out, entry == null ? "none" : entry.zset != null ? "zset" : "string");
+                break;
+            }
+            case "ZADD":
+            case "ZINCRBY":
+            case "ZUNIONSTORE":
+            case "ZRANGE":
+            case "ZREVRANGE":
+            case "ZCARD":
+            case "ZSCORE":
+                synchronized (data) {
+                    sortedSet(data, name, args, out);
+                }
+                break;
+            case "DBSIZE":
+                writeInteger(out, keys(data, "*").size());
+                break;
+            case "FLUSHDB":
+                data.clear();
+                writeSimple(out, "OK");
+                break;
+            case "FLUSHALL":
+                databases.clear();
+                writeSimple(out, "OK");
+                break;
+            default:
+                writeError(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    /**
+     * SET key value [EX seconds|PX milliseconds] [NX|XX]
+     */
+    private void set(Map<String, Entry> data, List<byte[]> args, OutputStream out) throws IOException {
+        String key = string(args.get(1));
+        long expireAt = 0;
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 3; i < args.size(); i++) {
+            String option = string(args.get(i)).toUpperCase(Locale.ROOT);
+            if ("EX".equals(option)) {
+                expireAt = System.currentTimeMillis() + Long.parseLong(string(args.get(++i))) * 1000;
+            } else if ("PX".equals(option)) {
+                expireAt = System.currentTimeMillis() + Long.parseLong(string(args.get(++i)));
+            } else if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            }
+        }
+        synchronized (data) {
+            boolean exists = live(data, key) != null;
+            if ((nx && exists) || (xx && !exists)) {
+                writeBulk(out, null);
+                return;
+            }
+            data.put(key, new Entry(args.get(2), expireAt));
+        }
+        writeSimple(out, "OK");
+    }
+
+    /**
+     * 有序集合命令，调用方持有data的锁
+     * ZADD key score member [score member ...]（不支持NX、XX等选项）
+     * ZUNIONSTORE destination numkeys key [key ...]（不支持WEIGHTS、AGGREGATE，按SUM合并）
+     */
+    private void sortedSet(Map<String, Entry> data, String name, List<byte[]> args, OutputStream out) throws IOException {
+        String key = string(args.get(1));
+        Entry entry = live(data, key);
+        if (entry != null && entry.zset == null) {
+            writeError(out, "WRONGTYPE Operation against a key holding the wrong kind of value");
+            return;
+        }
+        switch (name) {
+            case "ZADD": {
+                if (entry == null) {
+                    entry = new Entry(new HashMap<>(), 0);
+                    data.put(key, entry);
+                }
+                int added = 0;
+                for (int i = 2; i + 1 < args.size(); i += 2) {
+                    if (entry.zset.put(string(args.get(i + 1)), Double.parseDouble(string(args.get(i)))) == null) {
+                        added++;
+                    }
+                }
+                writeInteger(out, added);
+                break;
+            }
+            case "ZINCRBY": {
+                if (entry == null) {
+                    entry = new Entry(new HashMap<>(), 0);
+                    data.put(key, entry);
+                }
+                double score = entry.zset.merge(string(args.get(3)), Double.parseDouble(string(args.get(2))), Double::sum);
+                writeBulk(out, score(score));
+                break;
+            }
+            case "ZUNIONSTORE": {
+                int count = Integer.parseInt(string(args.get(2)));
+                Map<String, Double> union = new HashMap<>();
+                for (int i = 3; i < 3 + count; i++) {
+                    Entry source = live(data, string(args.get(i)));
+                    if (source != null && source.zset != null) {
+                        source.zset.forEach((member, score) -> union.merge(member, score, Double::sum));
+                    }
+                }
+                if (union.isEmpty()) {
+                    data.remove(key);
+                } else {
+                    data.put(key, new Entry(union, 0));
+                }
+                writeInteger(out, union.size());
+                break;
+            }
+            case "ZRANGE":
+            case "ZREVRANGE": {
+                List<Map.Entry<String, Double>> members = new ArrayList<>();
+                if (entry != null) {
+                    members.addAll(entry.zset.entrySet());
+                }
+                Comparator<Map.Entry<String, Double>> comparator = Map.Entry.<String, Double>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey());
+                members.sort("ZREVRANGE".equals(name) ? comparator.reversed() : comparator);
+                int size = members.size();
+                int start = Integer.parseInt(string(args.get(2)));
+                int stop = Integer.parseInt(string(args.get(3)));
+                start = Math.max(start < 0 ? size + start : start, 0);
+                stop = Math.min(stop < 0 ? size + stop : stop, size - 1);
+                boolean withScores = args.size() > 4 && "WITHSCORES".equalsIgnoreCase(string(args.get(4)));
+                List<byte[]> result = new ArrayList<>();
+                for (int i = start; i <= stop; i++) {
+                    result.add(members.get(i).getKey().getBytes(StandardCharsets.UTF_8));
+                    if (withScores) {
+                        result.add(score(members.get(i).getValue()));
+                    }
+                }
+                writeArray(out, result);
+                break;
+            }
+            case "ZCARD":
+                writeInteger(out, entry == null ? 0 : entry.zset.size());
+                break;
+            case "ZSCORE": {
+                Double score = entry == null ? null : entry.zset.get(string(args.get(2)));
+                writeBulk(out, score == null ? null : score(score));
+                break;
+            }
+            default:
+                writeError(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    private static byte[] score(double score) {
+        String value = score == Math.rint(score) ? String.valueOf((long) score) : String.valueOf(score);
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long increment(Map<String, Entry> data, String key, long delta) {
+        synchronized (data) {
+            Entry entry = live(data, key);
+            long value = entry == null ? 0 : Long.parseLong(string(entry.value));
+            value += delta;
+            data.put(key, new Entry(String.valueOf(value).getBytes(StandardCharsets.UTF_8),
+                    entry == null ? 0 : entry.expireAt));
+            return value;
+        }
+    }
+
+    /**
+     * 获取未过期的键，过期的键惰性删除
+     */
+    private Entry live(Map<String, Entry> data, String key) {
+        Entry entry = data.get(key);
+        if (entry != null && entry.expireAt != 0 && entry.expireAt <= System.currentTimeMillis()) {
+            data.remove(key, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private List<byte[]> keys(Map<String, Entry> data, String glob) {
+        Pattern pattern = globToRegex(glob);
+        List<byte[]> result = new ArrayList<>();
+        for (String key : data.keySet()) {
+            if (pattern.matcher(key).matches() && live(data, key) != null) {
+                result.add(key.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return result;
+    }
+
+    private static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[' || c == ']') {
+                regex.append(c);
+            } else if ("\\.^$|(){}+".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    /**
+     * 读取一条命令，支持RESP数组格式和telnet式的内联命令；连接关闭时返回null
+     */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return null;
+        }
+        List<byte[]> command = new ArrayList<>();
+        if (first != '*') {
+            String line = (char) first + readLine(in);
+            for (String part : line.trim().split("\\s+")) {
+                if (!part.isEmpty()) {
+                    command.add(part.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return command;
+        }
+        int count = Integer.parseInt(readLine(in));
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("协议错误：期望批量字符串");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            in.read();
+            in.read();
+            command.add(bytes);
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                in.read();
+                break;
+            }
+            buffer.write(c);
+        }
+        if (c == -1) {
+            throw new EOFException();
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write(('+' + value).getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write(('-' + message).getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((":" + value).getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write("$-1".getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+            return;
+        }
+        out.write(("$" + value.length).getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+
+    private static void writeArray(OutputStream out, List<byte[]> values) throws IOException {
+        out.write(("*" + values.size()).getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+        for (byte[] value : values) {
+            writeBulk(out, value);
+        }
+    }
+
+    /**
+     * 存储的值及过期时间（毫秒时间戳，0表示永不过期），有序集合的value为null
+     */
+    private static class Entry {
+        private final byte[] value;
+        private final Map<String, Double> zset;
+        private volatile long expireAt;
+
+        Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.zset = null;
+            this.expireAt = expireAt;
+        }
+
+        Entry(Map<String, Double> zset, long expireAt) {
+            this.value = null;
+            this.zset = zset;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.sky.loadtest;
+
+/**
+ * 内嵌H2数据库缺少的MySQL函数，在schema.sql中通过create alias注册
+ */
+public class H2Functions {
+
+    public static String reverse(String value) {
+        return value == null ? null : new StringBuilder(value).reverse().toString();
+    }
+}
@@ -0,0 +1,280 @@
+package com.sky.loadtest;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.utils.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测驱动：按脚本模拟C端用户的完整下单流程和管理端工作台轮询，统计每个接口的吞吐量和延迟分布
+ */
+@Slf4j
+public class LoadDriver {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final String baseUrl;
+    private final LoadTestConfig config;
+    private final DataSeeder.SeedData seedData;
+    private final List<String> userTokens;
+    private final String userTokenName;
+    private final String adminToken;
+    private final String adminTokenName;
+
+    // 接口名称 -> 统计数据
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+    private volatile boolean stopped;
+
+    public LoadDriver(String baseUrl, LoadTestConfig config, DataSeeder.SeedData seedData,
+                      List<String> userTokens, String userTokenName, String adminToken, String adminTokenName) {
+        this.baseUrl = baseUrl;
+        this.config = config;
+        this.seedData = seedData;
+        this.userTokens = userTokens;
+        this.userTokenName = userTokenName;
+        this.adminToken = adminToken;
+        this.adminTokenName = adminTokenName;
+    }
+
+    /**
+     * 预热后正式压测，结束时输出报告
+     */
+    public void run() throws InterruptedException {
+        // 先把店铺设置为营业中
+        call("PUT /admin/shop/{status}", "PUT", "/admin/shop/1", adminTokenName, adminToken, null);
+
+        ExecutorService pool = Executors.newFixedThreadPool(config.getUsers() + config.getAdmins() + config.getLogins());
+        for (int i = 0; i < config.getUsers(); i++) {
+            final int userIndex = i;
+            pool.execute(() -> customerLoop(userIndex));
+        }
+        for (int i = 0; i < config.getAdmins(); i++) {
+            pool.execute(this::adminLoop);
+        }
+        for (int i = 0; i < config.getLogins(); i++) {
+            final int loginIndex = i;
+            pool.execute(() -> loginLoop(loginIndex));
+        }
+
+        log.info("预热{}秒...", config.getWarmupSeconds());
+        TimeUnit.SECONDS.sleep(config.getWarmupSeconds());
+        stats.clear();
+        recording = true;
+        long start = System.nanoTime();
+        log.info("开始压测：{}个用户，{}个管理端，持续{}秒", config.getUsers(), config.getAdmins(), config.getDurationSeconds());
+        TimeUnit.SECONDS.sleep(config.getDurationSeconds());
+        recording = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        stopped = true;
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+        report(elapsedSeconds);
+    }
+
+    /**
+     * C端用户脚本：浏览菜单 -> 加减购物车 -> 下单 -> 支付 -> 查看历史订单
+     */
+    private void customerLoop(int userIndex) {
+        Random random = new Random(userIndex);
+        String token = userTokens.get(userIndex);
+        Long addressBookId = seedData.getAddressBookIds().get(userIndex);
+        while (!stopped) {
+            Long dishCategoryId = pick(random, seedData.getDishCategoryIds());
+            Long setmealCategoryId = pick(random, seedData.getSetmealCategoryIds());
+            Long dishA = pick(random, seedData.getDishIds());
+            Long dishB = pick(random, seedData.getDishIds());
+            Long setmealId = pick(random, seedData.getSetmealIds());
+
+            userCall("GET /user/shop/status", "GET", "/user/shop/status", token, null);
+            userCall("GET /user/category/list", "GET", "/user/category/list?type=1", token, null);
+            userCall("GET /user/dish/list", "GET", "/user/dish/list?categoryId=" + dishCategoryId, token, null);
+            userCall("GET /user/setmeal/list", "GET", "/user/setmeal/list?categoryId=" + setmealCategoryId, token, null);
+            userCall("GET /user/setmeal/dish/{id}", "GET", "/user/setmeal/dish/" + setmealId, token, null);
+
+            userCall("POST /user/shoppingCart/add", "POST", "/user/shoppingCart/add", token, "{\"dishId\":" + dishA + "}");
+            userCall("POST /user/shoppingCart/add", "POST", "/user/shoppingCart/add", token, "{\"dishId\":" + dishB + "}");
+            userCall("POST /user/shoppingCart/add", "POST", "/user/shoppingCart/add", token, "{\"dishId\":" + dishA + "}");
+            userCall("POST /user/shoppingCart/add", "POST", "/user/shoppingCart/add", token, "{\"setmealId\":" + setmealId + "}");
+            userCall("POST /user/shoppingCart/sub", "POST", "/user/shoppingCart/sub", token, "{\"dishId\":" + dishA + "}");
+            userCall("GET /user/shoppingCart/list", "GET", "/user/shoppingCart/list", token, null);
+
+            JSONObject submit = new JSONObject();
+            submit.put("addressBookId", addressBookId);
+            submit.put("payMethod", 1);
+            submit.put("remark", "压测订单");
+            submit.put("estimatedDeliveryTime", LocalDateTime.now().plusHours(1).format(TIME_FORMATTER));
+            submit.put("deliveryStatus", 1);
+            submit.put("tablewareNumber", 0);
+            submit.put("tablewareStatus", 1);
+            submit.put("packAmount", 2);
+            submit.put("amount", 66);
+            JSONObject result = userCall("POST /user/order/submit", "POST", "/user/order/submit", token, submit.toJSONString());
+            if (result != null && result.getJSONObject("data") != null) {
+                JSONObject payment = new JSONObject();
+                payment.put("orderNumber", result.getJSONObject("data").getString("orderNumber"));
+                payment.put("payMethod", 1);
+                userCall("PUT /user/order/payment", "PUT", "/user/order/payment", token, payment.toJSONString());
+            }
+            userCall("GET /user/order/historyOrders", "GET", "/user/order/historyOrders?page=1&pageSize=10", token, null);
+        }
+    }
+
+    /**
+     * 管理端脚本：轮询工作台和订单管理页
+     */
+    private void adminLoop() {
+        while (!stopped) {
+            adminCall("GET /admin/workspace/businessData", "/admin/workspace/businessData");
+            adminCall("GET /admin/workspace/overviewOrders", "/admin/workspace/overviewOrders");
+            adminCall("GET /admin/workspace/overviewDishes", "/admin/workspace/overviewDishes");
+            adminCall("GET /admin/workspace/overviewSetmeals", "/admin/workspace/overviewSetmeals");
+            adminCall("GET /admin/order/statistics", "/admin/order/statistics");
+            adminCall("GET /admin/order/conditionSearch", "/admin/order/conditionSearch?page=1&pageSize=10&status=2");
+            sleep(config.getAdminPollMillis());
+        }
+    }
+
+    /**
+     * 微信登录脚本：登录凭证在有限范围内循环，凭证首次出现时注册新用户
+     */
+    private void loginLoop(int loginIndex) {
+        long sequence = 0;
+        while (!stopped) {
+            String code = "login" + loginIndex + "-" + (sequence++ % Math.max(1, config.getSeedUsers()));
+            call("POST /user/user/login", "POST", "/user/user/login", userTokenName, "",
+                    "{\"code\":\"" + code + "\"}");
+            sleep(config.getThinkTimeMillis());
+        }
+    }
+
+    private JSONObject userCall(String name, String method, String path, String token, String body) {
+        JSONObject result = call(name, method, path, userTokenName, token, body);
+        sleep(config.getThinkTimeMillis());
+        return result;
+    }
+
+    private void adminCall(String name, String path) {
+        call(name, "GET", path, adminTokenName, adminToken, null);
+    }
+
+    /**
+     * 发送请求并记录耗时；HTTP状态码非200或Result.code不为1都计为错误
+     */
+    private JSONObject call(String name, String method, String path, String tokenName, String token, String body) {
+        long start = System.nanoTime();
+        boolean success = false;
+        JSONObject result = null;
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            connection.setRequestProperty(tokenName, token);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json;charset=UTF-8");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String text = in == null ? "" : read(in);
+            if (status == 200 && !text.isEmpty()) {
+                result = JSON.parseObject(text);
+                success = Integer.valueOf(1).equals(result.getInteger("code"));
+            }
+        } catch (Exception e) {
+            log.debug("请求失败 {} {}：{}", method, path, e.getMessage());
+        }
+        long micros = (System.nanoTime() - start) / 1000;
+        if (recording) {
+            EndpointStats endpointStats = stats.computeIfAbsent(name, key -> new EndpointStats());
+            endpointStats.latency.record(micros);
+            if (!success) {
+                endpointStats.errors.increment();
+            }
+        }
+        return result;
+    }
+
+    private void report(double elapsedSeconds) {
+        StringBuilder sb = new StringBuilder("\n压测报告（延迟单位：毫秒，统计时长")
+                .append(String.format("%.1f", elapsedSeconds)).append("秒）\n");
+        sb.append(String.format("%-40s %10s %8s %10s %9s %9s %9s %9s%n",
+                "接口", "请求数", "错误数", "吞吐(req/s)", "p50", "p99", "p999", "max"));
+        long total = 0;
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(stats).entrySet()) {
+            LatencyHistogram latency = entry.getValue().latency;
+            total += latency.getCount();
+            sb.append(String.format("%-40s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(),
+                    latency.getCount(),
+                    entry.getValue().errors.sum(),
+                    latency.getCount() / elapsedSeconds,
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMax() / 1000.0));
+        }
+        sb.append(String.format("总吞吐：%.1f req/s", total / elapsedSeconds));
+        log.info(sb.toString());
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] bytes = new byte[4096];
+            int n;
+            while ((n = input.read(bytes)) != -1) {
+                buffer.write(bytes, 0, n);
+            }
+            return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static <T> T pick(Random random, List<T> list) {
+        return list.get(random.nextInt(list.size()));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 单个接口的统计数据
+     */
+    private static class EndpointStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,129 @@
+package com.sky.loadtest;
+
+import com.sky.SkyApplication;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 离线压测入口：启动内嵌H2（MySQL兼容模式）和Redis替身，写入预置数据后以真实配置启动SkyApplication，
+ * 再按脚本并发驱动C端下单流程和管理端轮询，输出每个接口的吞吐量和p50/p99/p999延迟
+ *
+ * 打包：mvn -P loadtest -DskipTests package
+ * 运行：java -jar sky-loadtest/target/sky-loadtest-1.0-SNAPSHOT.jar --users=100 --durationSeconds=120
+ * 可选参数见 LoadTestConfig，--shards=N 时订单按用户拆分到N个内嵌数据库
+ * --logins=N 时N个线程持续调用微信登录，配合--wechatErrorPercent=100观察熔断期间其他接口的延迟
+ */
+@Slf4j
+public class LoadTestApplication {
+
+    public static final String JDBC_URL = "jdbc:h2:mem:sky_take_out;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;NON_KEYWORDS=USER,VALUE;DB_CLOSE_DELAY=-1";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        log.info("压测参数：{}", config);
+
+        // 准备数据库和Redis替身
+        List<String> urls = new ArrayList<>();
+        urls.add(JDBC_URL);
+        for (int i = 1; i < config.getShards(); i++) {
+            urls.add(shardUrl(i));
+        }
+        DataSeeder.SeedData seedData = new DataSeeder(config).seed(urls);
+        EmbeddedRedisServer redisServer = new EmbeddedRedisServer(config.getRedisPort());
+        redisServer.start();
+        WeChatStubServer weChatStubServer = new WeChatStubServer(config.getWechatDelayMillis(), config.getWechatErrorPercent());
+        weChatStubServer.start();
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SkyApplication.class)
+                .run(applicationArgs(redisServer.getPort(), config.getShards(), weChatStubServer.getLoginUrl()));
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            JwtProperties jwtProperties = context.getBean(JwtProperties.class);
+
+            // 直接签发令牌，下单流程不经过微信登录；登录接口由--logins单独压测
+            List<String> userTokens = new ArrayList<>();
+            for (Long userId : seedData.getUserIds()) {
+                Map<String, Object> claims = new HashMap<>();
+                claims.put(JwtClaimsConstant.USER_ID, userId);
+                userTokens.add(JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims));
+            }
+            Map<String, Object> adminClaims = new HashMap<>();
+            adminClaims.put(JwtClaimsConstant.EMP_ID, 1L);
+            String adminToken = JwtUtil.createJWT(jwtProperties.getAdminSecretKey(), jwtProperties.getAdminTtl(), adminClaims);
+
+            new LoadDriver("http://127.0.0.1:" + port, config, seedData,
+                    userTokens, jwtProperties.getUserTokenName(),
+                    adminToken, jwtProperties.getAdminTokenName()).run();
+        } finally {
+            context.close();
+            redisServer.close();
+            weChatStubServer.close();
+        }
+    }
+
+    /**
+     * 订单分片的内嵌数据库地址
+     * @param shard
+     * @return
+     */
+    private static String shardUrl(int shard) {
+        return JDBC_URL.replace("mem:sky_take_out;", "mem:sky_take_out_shard" + shard + ";");
+    }
+
+    /**
+     * 以命令行参数的方式覆盖application-dev.yml中的数据源和Redis配置（优先级高于配置文件）
+     * @param redisPort
+     * @param shards
+     * @param weChatLoginUrl 微信登录接口替身的地址
+     * @return
+     */
+    private static String[] applicationArgs(int redisPort, int shards, String weChatLoginUrl) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "--server.port=0",
+                "--spring.datasource.druid.driver-class-name=org.h2.Driver",
+                "--spring.datasource.druid.url=" + JDBC_URL,
+                "--spring.datasource.druid.username=sa",
+                "--spring.datasource.druid.password=",
+                "--spring.redis.host=127.0.0.1",
+                "--spring.redis.port=" + redisPort,
+                "--sky.alioss.access-key-id=loadtest",
+                "--sky.alioss.access-key-secret=loadtest",
+                "--sky.object-store.type=local",
+                "--sky.object-store.local-directory=" + System.getProperty("java.io.tmpdir") + "/sky-loadtest-upload",
+                "--sky.wechat.login-url=" + weChatLoginUrl,
+                // 压测用户循环下单的频率远高于真实用户，关闭限流以免压测请求被429拒绝
+                "--sky.rate-limit.enabled=false",
+                // Redis替身不支持脚本和发布订阅，压测是单实例，订单看板和搜索索引只在本实例内更新
+                "--sky.order-board.mode=local",
+                "--sky.menu-search.mode=local",
+                // 压测时关闭SQL调试日志，避免日志输出本身成为瓶颈
+                "--logging.level.com.sky.mapper=warn",
+                "--logging.level.com.sky.service=warn",
+                "--logging.level.com.sky.controller=warn",
+                "--logging.level.com.sky.loadtest=info"
+        ));
+        if (shards > 1) {
+            args.add("--sky.sharding.enabled=true");
+            // 预置订单都按分库后的规则生成id，没有留在0号分片的旧订单
+            args.add("--sky.sharding.legacy-on-primary=false");
+            for (int i = 1; i < shards; i++) {
+                args.add("--sky.sharding.shards[" + (i - 1) + "].url=" + shardUrl(i));
+                args.add("--sky.sharding.shards[" + (i - 1) + "].username=sa");
+                args.add("--sky.sharding.shards[" + (i - 1) + "].password=");
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+}
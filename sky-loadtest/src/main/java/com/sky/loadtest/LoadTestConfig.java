@@ -0,0 +1,72 @@
+package com.sky.loadtest;
+
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数，通过命令行 --key=value 传入，未传入的使用默认值
+ */
+@Data
+public class LoadTestConfig {
+
+    private int users = 50;             // 并发C端用户数（每个线程独占一个用户，避免购物车互相干扰）
+    private int admins = 2;             // 并发轮询工作台的管理端数
+    private int durationSeconds = 60;   // 正式压测时长
+    private int warmupSeconds = 10;     // 预热时长，期间的数据不计入报告
+    private long thinkTimeMillis = 0;   // 用户每一步操作之间的停顿
+    private long adminPollMillis = 1000; // 管理端轮询间隔
+    private int logins = 0;             // 并发调用微信登录的线程数
+
+    private int seedUsers = 500;        // 预置用户数
+    private int seedOrders = 20000;     // 预置历史订单数
+    private int seedDays = 30;          // 历史订单分布的天数
+    private int dishesPerCategory = 12; // 每个菜品分类下的菜品数
+    private int setmealsPerCategory = 5; // 每个套餐分类下的套餐数
+
+    private int redisPort = 0;          // Redis替身端口，0表示随机
+    private int shards = 1;             // 订单分片数，大于1时为每个分片创建独立的内嵌数据库
+    private int wechatDelayMillis = 50; // 微信登录接口替身的响应延迟
+    private int wechatErrorPercent = 0; // 微信登录接口替身返回失败的比例，100表示微信服务完全不可用
+
+    /**
+     * 解析命令行参数，例如 --users=100 --durationSeconds=120
+     * @param args
+     * @return
+     */
+    public static LoadTestConfig parse(String[] args) {
+        Map<String, String> map = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                int index = arg.indexOf('=');
+                map.put(arg.substring(2, index), arg.substring(index + 1));
+            }
+        }
+        LoadTestConfig config = new LoadTestConfig();
+        config.setUsers(intValue(map, "users", config.getUsers()));
+        config.setAdmins(intValue(map, "admins", config.getAdmins()));
+        config.setDurationSeconds(intValue(map, "durationSeconds", config.getDurationSeconds()));
+        config.setWarmupSeconds(intValue(map, "warmupSeconds", config.getWarmupSeconds()));
+        config.setThinkTimeMillis(intValue(map, "thinkTimeMillis", (int) config.getThinkTimeMillis()));
+        config.setAdminPollMillis(intValue(map, "adminPollMillis", (int) config.getAdminPollMillis()));
+        config.setLogins(intValue(map, "logins", config.getLogins()));
+        config.setSeedUsers(intValue(map, "seedUsers", config.getSeedUsers()));
+        config.setSeedOrders(intValue(map, "seedOrders", config.getSeedOrders()));
+        config.setSeedDays(intValue(map, "seedDays", config.getSeedDays()));
+        config.setDishesPerCategory(intValue(map, "dishesPerCategory", config.getDishesPerCategory()));
+        config.setSetmealsPerCategory(intValue(map, "setmealsPerCategory", config.getSetmealsPerCategory()));
+        config.setRedisPort(intValue(map, "redisPort", config.getRedisPort()));
+        config.setShards(Math.max(1, intValue(map, "shards", config.getShards())));
+        config.setWechatDelayMillis(intValue(map, "wechatDelayMillis", config.getWechatDelayMillis()));
+        config.setWechatErrorPercent(intValue(map, "wechatErrorPercent", config.getWechatErrorPercent()));
+        // 每个并发用户至少需要一个独立的预置用户
+        config.setSeedUsers(Math.max(config.getSeedUsers(), config.getUsers()));
+        return config;
+    }
+
+    private static int intValue(Map<String, String> map, String key, int defaultValue) {
+        String value = map.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
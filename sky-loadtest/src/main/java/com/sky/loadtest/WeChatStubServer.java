@@ -0,0 +1,107 @@
+package com.sky.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 进程内的微信登录接口替身，只实现jscode2session：按js_code返回固定的openid
+ * 可以设置响应延迟和失败比例，模拟微信服务变慢或故障，观察舱壁和熔断对其他接口的保护
+ */
+@Slf4j
+public class WeChatStubServer implements Closeable {
+
+    public static final String LOGIN_PATH = "/sns/jscode2session";
+
+    private final HttpServer server;
+    private final ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "wechat-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long delayMillis;
+    private final int errorPercent;
+
+    /**
+     * @param delayMillis 每个请求的响应延迟
+     * @param errorPercent 返回500的请求比例，0~100
+     */
+    public WeChatStubServer(long delayMillis, int errorPercent) throws IOException {
+        this.delayMillis = delayMillis;
+        this.errorPercent = errorPercent;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.createContext(LOGIN_PATH, this::login);
+        server.setExecutor(workers);
+    }
+
+    public String getLoginUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + LOGIN_PATH;
+    }
+
+    public void start() {
+        server.start();
+        log.info("微信登录接口替身已启动：{}，延迟{}ms，失败比例{}%", getLoginUrl(), delayMillis, errorPercent);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (ThreadLocalRandom.current().nextInt(100) < errorPercent) {
+                respond(exchange, 500, "{\"errcode\":-1,\"errmsg\":\"system error\"}");
+                return;
+            }
+            String code = parameter(exchange.getRequestURI(), "js_code");
+            if (code == null || code.isEmpty()) {
+                respond(exchange, 200, "{\"errcode\":40029,\"errmsg\":\"invalid code\"}");
+                return;
+            }
+            respond(exchange, 200, "{\"openid\":\"loadtest-openid-" + code + "\",\"session_key\":\"loadtest\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String parameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            if (index > 0 && pair.substring(0, index).equals(name)) {
+                return pair.substring(index + 1);
+            }
+        }
+        return null;
+    }
+}
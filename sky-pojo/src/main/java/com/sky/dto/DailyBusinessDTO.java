@@ -0,0 +1,34 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 按天分组的营业数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessDTO implements Serializable {
+
+    //日期
+    private LocalDate businessDate;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数
+    private Integer validOrderCount;
+
+    //营业额
+    private Double turnover;
+
+    //新增用户数
+    private Integer newUsers;
+}
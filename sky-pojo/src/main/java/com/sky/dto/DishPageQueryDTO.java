@@ -3,6 +3,7 @@ package com.sky.dto;
 import lombok.Data;
 
 import java.io.Serializable;
+import java.util.List;
 
 @Data
 public class DishPageQueryDTO implements Serializable {
@@ -19,4 +20,7 @@ public class DishPageQueryDTO implements Serializable {
     //状态 0表示禁用 1表示启用
     private Integer status;
 
+    //按名称搜索时由服务端根据搜索索引设置，替代名称模糊查询
+    private List<Long> ids;
+
 }
@@ -27,4 +27,17 @@ public class OrdersPageQueryDTO implements Serializable {
 
     private Long userId;
 
+    //游标分页的继续令牌，不为null时按游标分页（空串表示第一页），不再查询总数
+    private String cursor;
+
+    //以下由服务端根据cursor设置：上一页最后一条订单的下单时间和id，以及本次最多查询的条数
+    private LocalDateTime seekOrderTime;
+
+    private Long seekId;
+
+    private Integer seekLimit;
+
+    //由服务端设置：订单号、手机号没有前缀或后缀匹配的订单时改为包含匹配（不走索引），游标分页时记录在继续令牌中
+    private Boolean infix;
+
 }
@@ -0,0 +1,77 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件（发件箱）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent implements Serializable {
+
+    /**
+     * 事件类型 下单、支付成功、接单、拒单、取消、派送、完成、催单
+     */
+    public static final String SUBMITTED = "SUBMITTED";
+    public static final String PAID = "PAID";
+    public static final String CONFIRMED = "CONFIRMED";
+    public static final String REJECTED = "REJECTED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String DELIVERY = "DELIVERY";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String REMINDER = "REMINDER";
+
+    /**
+     * 分发状态 0待分发 1已分发 2重试次数用尽
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer DONE = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //事件类型
+    private String eventType;
+
+    //订单id
+    private Long orderId;
+
+    //下单用户id
+    private Long userId;
+
+    //订单号
+    private String orderNumber;
+
+    //事件发生后的订单状态
+    private Integer orderStatus;
+
+    //分发状态
+    private Integer status;
+
+    //已分发次数
+    private Integer attempts;
+
+    //下次分发时间
+    private LocalDateTime nextRetryTime;
+
+    //领取标记
+    private String claimToken;
+
+    //已成功处理的处理器名称，逗号分隔
+    private String handled;
+
+    //最近一次领取分发的时间
+    private LocalDateTime dispatchTime;
+
+    private LocalDateTime createTime;
+}
@@ -0,0 +1,52 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 支付回调收件箱
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayNotify implements Serializable {
+
+    /**
+     * 处理状态 0待处理 1已处理 2重试次数用尽
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer DONE = 1;
+    public static final Integer FAILED = 2;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //微信支付交易号
+    private String transactionId;
+
+    //商户平台订单号
+    private String outTradeNo;
+
+    //处理状态
+    private Integer status;
+
+    //已处理次数
+    private Integer attempts;
+
+    //下次处理时间
+    private LocalDateTime nextRetryTime;
+
+    //最近一次处理失败的原因
+    private String lastError;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime updateTime;
+}
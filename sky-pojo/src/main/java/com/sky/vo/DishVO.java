@@ -17,6 +17,8 @@ import java.util.List;
 @AllArgsConstructor
 public class DishVO implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     private Long id;
     //菜品名称
     private String name;
@@ -26,6 +28,12 @@ public class DishVO implements Serializable {
     private BigDecimal price;
     //图片
     private String image;
+
+    //缩略图，图片变体尚未生成时为null
+    private String imageThumb;
+
+    //压缩图，图片变体尚未生成时为null
+    private String imageMedium;
     //描述信息
     private String description;
     //0 停售 1 起售
@@ -0,0 +1,50 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 外部Http请求统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HttpClientStatsVO implements Serializable {
+
+    //使用中的连接数
+    private Integer leased;
+
+    //空闲的连接数
+    private Integer available;
+
+    //等待获取连接的请求数
+    private Integer pending;
+
+    //最大连接数
+    private Integer max;
+
+    //等待执行的异步请求数
+    private Integer asyncQueued;
+
+    //请求次数
+    private Long count;
+
+    //失败次数（网络异常或状态码不是200）
+    private Long errors;
+
+    //线程池已满被拒绝的异步请求数
+    private Long rejected;
+
+    private Double meanMillis;
+
+    private Double p50Millis;
+
+    private Double p99Millis;
+
+    private Double maxMillis;
+}
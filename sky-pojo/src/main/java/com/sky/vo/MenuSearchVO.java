@@ -0,0 +1,27 @@
+package com.sky.vo;
+
+import com.sky.entity.Setmeal;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 用户端菜单搜索结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuSearchVO implements Serializable {
+
+    //匹配的菜品（含口味），按匹配程度排序
+    private List<DishVO> dishes;
+
+    //匹配的套餐，按匹配程度排序
+    private List<Setmeal> setmeals;
+
+}
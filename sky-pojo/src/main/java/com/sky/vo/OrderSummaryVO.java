@@ -0,0 +1,31 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单看板推送的订单摘要，只包含看板卡片展示的字段，收货人、电话、地址等在打开订单详情时查询
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryVO implements Serializable {
+    //订单id
+    private Long id;
+    //订单号
+    private String number;
+    //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private Integer status;
+    //支付状态 0未支付 1已支付 2退款
+    private Integer payStatus;
+    //下单时间
+    private LocalDateTime orderTime;
+    //预计送达时间
+    private LocalDateTime estimatedDeliveryTime;
+}
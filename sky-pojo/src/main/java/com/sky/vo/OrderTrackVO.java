@@ -0,0 +1,26 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderTrackVO implements Serializable {
+    //订单id
+    private Long orderId;
+    //订单号
+    private String orderNumber;
+    //事件类型 PAID CONFIRMED REJECTED CANCELLED DELIVERY COMPLETED
+    private String eventType;
+    //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private Integer status;
+    //状态变更时间
+    private LocalDateTime time;
+}
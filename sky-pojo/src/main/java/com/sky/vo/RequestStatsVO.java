@@ -0,0 +1,49 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 单个接口的请求统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RequestStatsVO implements Serializable {
+
+    //接口分组 admin/user/notify
+    private String group;
+
+    //请求方式
+    private String method;
+
+    //请求路径模板，例如 /user/order/orderDetail/{id}
+    private String uri;
+
+    //请求次数
+    private Long count;
+
+    //失败次数（状态码>=400或未处理异常）
+    private Long errors;
+
+    //正在处理的请求数
+    private Integer inFlight;
+
+    //平均每个请求执行的SQL条数
+    private Double meanStatements;
+
+    private Double meanMillis;
+
+    private Double p50Millis;
+
+    private Double p99Millis;
+
+    private Double p999Millis;
+
+    private Double maxMillis;
+}
@@ -17,6 +17,8 @@ import java.util.List;
 @AllArgsConstructor
 public class SetmealVO implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
     private Long id;
 
     //分类id
@@ -37,6 +39,12 @@ public class SetmealVO implements Serializable {
     //图片
     private String image;
 
+    //缩略图，图片变体尚未生成时为null
+    private String imageThumb;
+
+    //压缩图，图片变体尚未生成时为null
+    private String imageMedium;
+
     //更新时间
     private LocalDateTime updateTime;
 
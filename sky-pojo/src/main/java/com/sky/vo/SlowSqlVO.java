@@ -0,0 +1,42 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 慢SQL记录
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlowSqlVO implements Serializable {
+
+    //语句id
+    private String statementId;
+
+    //执行的SQL
+    private String sql;
+
+    //绑定的参数
+    private List<String> parameters;
+
+    //耗时（毫秒）
+    private Double elapsedMillis;
+
+    //返回或影响的行数
+    private Long rows;
+
+    //执行时间
+    private LocalDateTime executeTime;
+
+    //采样得到的执行计划，未采样时为空
+    private List<Map<String, Object>> explain;
+}
@@ -0,0 +1,47 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 单条Mapper语句的执行统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SqlStatementStatsVO implements Serializable {
+
+    //语句id，例如 OrderMapper.countByMap
+    private String statementId;
+
+    //执行次数
+    private Long count;
+
+    //执行失败次数
+    private Long errors;
+
+    //返回或影响的总行数
+    private Long totalRows;
+
+    //单次最多返回或影响的行数
+    private Long maxRows;
+
+    //累计耗时（毫秒）
+    private Double totalMillis;
+
+    //平均耗时（毫秒）
+    private Double meanMillis;
+
+    private Double p50Millis;
+
+    private Double p99Millis;
+
+    private Double p999Millis;
+
+    private Double maxMillis;
+}
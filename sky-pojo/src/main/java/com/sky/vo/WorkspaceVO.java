@@ -0,0 +1,27 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 工作台全部数据
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkspaceVO implements Serializable {
+
+    private BusinessDataVO businessData;//今日数据
+
+    private OrderOverViewVO orderOverView;//订单管理
+
+    private DishOverViewVO dishOverView;//菜品总览
+
+    private SetmealOverViewVO setmealOverView;//套餐总览
+
+}
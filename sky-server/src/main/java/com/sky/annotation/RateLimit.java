@@ -0,0 +1,30 @@
+package com.sky.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 自定义注解，按当前用户（未登录时按客户端地址）限制Controller方法的调用频率，超出时返回429
+ * 限额优先取sky.rate-limit.limits中以value为名的配置，未配置时使用注解中的默认值
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimit {
+
+    /**
+     * 限流名称，同名的方法共用一个限额
+     */
+    String value();
+
+    /**
+     * 每秒补充的次数
+     */
+    double permitsPerSecond() default 1;
+
+    /**
+     * 允许的突发次数（令牌桶容量）
+     */
+    int burst() default 5;
+}
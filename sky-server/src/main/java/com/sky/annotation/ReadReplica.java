@@ -0,0 +1,15 @@
+package com.sky.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 自定义注解，标识方法（或类中的所有方法）中的查询可以走从库
+ * 在事务中调用、从库延迟过大或当前用户刚写入过数据时仍走主库
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadReplica {
+}
@@ -0,0 +1,56 @@
+package com.sky.aspect;
+
+import com.sky.datasource.ReplicaRouting;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 读写分离切面：标记@ReadReplica方法的查询可以走从库，写操作由ReplicaWriteInterceptor记录
+ * 需要在事务拦截器之外执行，才能在事务开始获取连接之前标记@Transactional方法走主库
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class ReadReplicaAspect {
+
+    @Autowired
+    private ReplicaRouting replicaRouting;
+
+    /**
+     * 事务中的查询需要与写操作使用同一连接，不切换到从库
+     */
+    @Around("@within(com.sky.annotation.ReadReplica) || @annotation(com.sky.annotation.ReadReplica)")
+    public Object readReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+        boolean nested = replicaRouting.enterReadOnly();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            replicaRouting.exitReadOnly(nested);
+        }
+    }
+
+    /**
+     * 事务方法中的连接都走主库，包括从@ReadReplica方法中调用的写方法
+     */
+    @Around("@within(org.springframework.transaction.annotation.Transactional)"
+            + " || @annotation(org.springframework.transaction.annotation.Transactional)")
+    public Object transactional(ProceedingJoinPoint joinPoint) throws Throwable {
+        replicaRouting.enterTransactional();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            replicaRouting.exitTransactional();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.sky.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
+import com.sky.datasource.ReplicaRouting;
+import com.sky.datasource.RoutingDataSource;
+import com.sky.properties.ReplicaProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 读写分离数据源配置，sky.replica.enabled为true时替换默认的Druid数据源
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "sky.replica", name = "enabled", havingValue = "true")
+@Slf4j
+public class DataSourceConfiguration {
+
+    @Bean(initMethod = "init", destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.druid")
+    public DruidDataSource primaryDataSource() {
+        return DruidDataSourceBuilder.create().build();
+    }
+
+    /**
+     * 从库连接池，除连接地址外的参数与主库相同
+     */
+    @Bean(initMethod = "init", destroyMethod = "close")
+    public DruidDataSource replicaDataSource(DruidDataSource primaryDataSource, ReplicaProperties replicaProperties) {
+        log.info("开始创建从库数据源：{}", replicaProperties.getUrl());
+        DruidDataSource dataSource = primaryDataSource.cloneDruidDataSource();
+        dataSource.setName("replica");
+        dataSource.setUrl(replicaProperties.getUrl());
+        if (StringUtils.hasText(replicaProperties.getUsername())) {
+            dataSource.setUsername(replicaProperties.getUsername());
+        }
+        if (StringUtils.hasText(replicaProperties.getPassword())) {
+            dataSource.setPassword(replicaProperties.getPassword());
+        }
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public RoutingDataSource dataSource(DruidDataSource primaryDataSource, DruidDataSource replicaDataSource,
+                                        ReplicaRouting replicaRouting) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(RoutingDataSource.PRIMARY, primaryDataSource);
+        targets.put(RoutingDataSource.REPLICA, replicaDataSource);
+        RoutingDataSource dataSource = new RoutingDataSource(replicaRouting);
+        dataSource.setTargetDataSources(targets);
+        dataSource.setDefaultTargetDataSource(primaryDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sky.config;
+
+import com.sky.properties.AliOssProperties;
+import com.sky.properties.ObjectStoreProperties;
+import com.sky.storage.AliOssObjectStore;
+import com.sky.storage.LocalObjectStore;
+import com.sky.storage.ObjectStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * 配置类，按sky.object-store.type创建对象存储，整个应用共用一个实例
+ */
+@Configuration
+@Slf4j
+public class ObjectStoreConfiguration {
+
+    // 默认使用阿里云OSS，应用关闭时关闭OSSClient
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "sky.object-store", name = "type", havingValue = "oss", matchIfMissing = true)
+    public AliOssObjectStore aliOssObjectStore(AliOssProperties aliOssProperties, ObjectStoreProperties objectStoreProperties) {
+        log.info("开始创建阿里云对象存储：{}，{}", aliOssProperties.getEndpoint(), aliOssProperties.getBucketName());
+        return new AliOssObjectStore(aliOssProperties, objectStoreProperties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ObjectStore.class)
+    @ConditionalOnProperty(prefix = "sky.object-store", name = "type", havingValue = "local")
+    public LocalObjectStore localObjectStore(ObjectStoreProperties objectStoreProperties) throws IOException {
+        log.info("开始创建本地对象存储：{}", objectStoreProperties.getLocalDirectory());
+        return new LocalObjectStore(objectStoreProperties.getLocalDirectory(), objectStoreProperties.getLocalUrlPrefix());
+    }
+}
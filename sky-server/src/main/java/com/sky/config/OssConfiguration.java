@@ -1,29 +0,0 @@
-package com.sky.config;
-
-import com.sky.properties.AliOssProperties;
-import com.sky.utils.AliOssUtil;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-
-/**
- * 配置类，用于创建AliOssUtil对象
- */
-@Configuration
-@Slf4j
-public class OssConfiguration {
-
-    // Bean注解的作用：当项目启动的时候会调用该方法，把AliOssUtil对象创建出来，交给Spring容器去管理
-    // ConditionalOnMissingBean注解：当没有AliOssUtil对象时再去创建，保证容器中只有一个AliOssUtil对象
-    @Bean
-    @ConditionalOnMissingBean
-    public AliOssUtil aliOssUtil(AliOssProperties aliOssProperties) {
-        log.info("开始创建阿里云文件上传工具类对象：{}", aliOssProperties);
-        // 通过配置类参数注入的方式将配置文件的属性注入
-        return new AliOssUtil(aliOssProperties.getEndpoint(),
-                aliOssProperties.getAccessKeyId(),
-                aliOssProperties.getAccessKeySecret(),
-                aliOssProperties.getBucketName());
-    }
-}
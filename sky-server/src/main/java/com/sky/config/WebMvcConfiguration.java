@@ -1,17 +1,26 @@
 package com.sky.config;
 
+import com.sky.handler.LocalFileHandler;
 import com.sky.interceptor.JwtTokenAdminInterceptor;
 import com.sky.interceptor.JwtTokenUserInterceptor;
+import com.sky.interceptor.MetricsAccessInterceptor;
+import com.sky.interceptor.RateLimitInterceptor;
+import com.sky.interceptor.RequestMetricsInterceptor;
 import com.sky.json.JacksonObjectMapper;
+import com.sky.properties.ObjectStoreProperties;
+import com.sky.storage.LocalObjectStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -19,7 +28,9 @@ import springfox.documentation.service.ApiInfo;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 配置类，注册web层相关组件
@@ -32,6 +43,12 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
     private JwtTokenAdminInterceptor jwtTokenAdminInterceptor;
     @Autowired
     private JwtTokenUserInterceptor jwtTokenUserInterceptor;
+    @Autowired
+    private RequestMetricsInterceptor requestMetricsInterceptor;
+    @Autowired
+    private RateLimitInterceptor rateLimitInterceptor;
+    @Autowired
+    private MetricsAccessInterceptor metricsAccessInterceptor;
 
     /**
      * 注册自定义拦截器
@@ -40,6 +57,9 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
      */
     protected void addInterceptors(InterceptorRegistry registry) {
         log.info("开始注册自定义拦截器...");
+        // 请求统计需要最先注册，才能覆盖令牌校验的耗时和401响应
+        registry.addInterceptor(requestMetricsInterceptor)
+                .addPathPatterns("/admin/**", "/user/**", "/notify/**");
         registry.addInterceptor(jwtTokenAdminInterceptor)
                 .addPathPatterns("/admin/**")
                 .excludePathPatterns("/admin/employee/login");
@@ -47,6 +67,12 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
                 .addPathPatterns("/user/**")
                 .excludePathPatterns("/user/user/login")
                 .excludePathPatterns("/user/shop/status");  // 在没有完成登录时无法获取店铺状态
+        // 限流按令牌中的用户id计数，需要在令牌校验之后注册
+        registry.addInterceptor(rateLimitInterceptor)
+                .addPathPatterns("/admin/**", "/user/**");
+        // Prometheus指标接口不使用jwt令牌，按来源地址或抓取令牌校验
+        registry.addInterceptor(metricsAccessInterceptor)
+                .addPathPatterns("/metrics/**");
     }
 
     /**
@@ -91,6 +117,28 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
         return docket;
     }
 
+    /**
+     * 使用本地对象存储时，由sky-server直接提供上传文件的访问
+     * @param localObjectStore
+     * @param objectStoreProperties
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "sky.object-store", name = "type", havingValue = "local")
+    public SimpleUrlHandlerMapping localFileHandlerMapping(LocalObjectStore localObjectStore,
+                                                           ObjectStoreProperties objectStoreProperties) {
+        log.info("开始设置本地文件访问路径：{}", objectStoreProperties.getLocalUrlPrefix());
+        LocalFileHandler localFileHandler = new LocalFileHandler(localObjectStore,
+                objectStoreProperties.getLocalUrlPrefix(),
+                objectStoreProperties.getLocalMaxAge(),
+                objectStoreProperties.getLocalCacheFileMaxBytes(),
+                objectStoreProperties.getLocalCacheMaxBytes());
+        Map<String, Object> urlMap = new HashMap<>();
+        urlMap.put(objectStoreProperties.getLocalUrlPrefix() + "/**", localFileHandler);
+        // 排在静态资源映射之前
+        return new SimpleUrlHandlerMapping(urlMap, Ordered.LOWEST_PRECEDENCE - 10);
+    }
+
     /**
      * 设置静态资源映射
      * @param registry
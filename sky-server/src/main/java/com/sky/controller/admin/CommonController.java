@@ -1,8 +1,9 @@
 package com.sky.controller.admin;
 
 import com.sky.constant.MessageConstant;
+import com.sky.image.ImageVariants;
 import com.sky.result.Result;
-import com.sky.utils.AliOssUtil;
+import com.sky.storage.ObjectStore;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
 
 /**
@@ -28,7 +30,9 @@ public class CommonController {
 
     // 核心依赖注入注解，用于由 Spring 容器自动为属性、构造方法或方法参数注入 Bean 对象。
     @Autowired
-    private AliOssUtil aliOssUtil;
+    private ObjectStore objectStore;
+    @Autowired
+    private ImageVariants imageVariants;
 
     /**
      * 文件上传
@@ -46,8 +50,16 @@ public class CommonController {
             String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
             // 构造新文件名称，使用UUID防止文件名重复而发生覆盖
             String objectName = UUID.randomUUID().toString() + extension;
-            String filePath = aliOssUtil.upload(file.getBytes(), objectName);
-            return Result.success(filePath);
+            // 直接从上传的临时文件流式写入对象存储，不把整个文件读入内存
+            try (InputStream in = file.getInputStream()) {
+                String filePath = objectStore.upload(in, file.getSize(), objectName, file.getContentType());
+                // 图片在后台生成缩略图和压缩图
+                String contentType = file.getContentType();
+                if (contentType != null && contentType.startsWith("image/")) {
+                    imageVariants.submit(objectName);
+                }
+                return Result.success(filePath);
+            }
         } catch (IOException e) {
             log.error("文件上传失败：{}", e.getMessage());
         }
@@ -0,0 +1,101 @@
+package com.sky.controller.admin;
+
+import com.sky.metrics.HttpClientMetrics;
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.result.Result;
+import com.sky.vo.HttpClientStatsVO;
+import com.sky.vo.RequestStatsVO;
+import com.sky.vo.SlowSqlVO;
+import com.sky.vo.SqlStatementStatsVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 运行指标
+ */
+@RestController
+@RequestMapping("/admin/metrics")
+@Api(tags = "运行指标相关接口")
+@Slf4j
+public class MetricsController {
+
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+    @Autowired
+    private RequestMetricsRegistry requestMetricsRegistry;
+    @Autowired
+    private HttpClientMetrics httpClientMetrics;
+
+    /**
+     * 各接口的请求统计，按请求次数倒序
+     * @return
+     */
+    @GetMapping("/requests")
+    @ApiOperation("接口请求统计")
+    public Result<List<RequestStatsVO>> requests() {
+        return Result.success(requestMetricsRegistry.endpoints());
+    }
+
+    /**
+     * 清空接口请求统计数据
+     * @return
+     */
+    @DeleteMapping("/requests")
+    @ApiOperation("清空接口请求统计")
+    public Result resetRequests() {
+        log.info("清空接口请求统计数据");
+        requestMetricsRegistry.reset();
+        return Result.success();
+    }
+
+    /**
+     * 各Mapper语句的执行统计，按累计耗时倒序
+     * @return
+     */
+    @GetMapping("/sql")
+    @ApiOperation("SQL执行统计")
+    public Result<List<SqlStatementStatsVO>> sqlStatements() {
+        return Result.success(sqlMetricsRegistry.statements());
+    }
+
+    /**
+     * 最近的慢SQL
+     * @return
+     */
+    @GetMapping("/sql/slow")
+    @ApiOperation("慢SQL列表")
+    public Result<List<SlowSqlVO>> slowSql() {
+        return Result.success(sqlMetricsRegistry.slowQueries());
+    }
+
+    /**
+     * 清空SQL统计数据
+     * @return
+     */
+    @DeleteMapping("/sql")
+    @ApiOperation("清空SQL统计")
+    public Result resetSql() {
+        log.info("清空SQL统计数据");
+        sqlMetricsRegistry.reset();
+        return Result.success();
+    }
+
+    /**
+     * 外部Http请求的连接池状态和耗时
+     * @return
+     */
+    @GetMapping("/http")
+    @ApiOperation("外部Http请求统计")
+    public Result<HttpClientStatsVO> httpClient() {
+        return Result.success(httpClientMetrics.stats());
+    }
+}
@@ -16,6 +16,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
 
 @RestController
@@ -85,4 +87,27 @@ public class ReportController {
         SalesTop10ReportVO salesTop10ReportVO = reportService.getSalesTop10(begin, end);
         return Result.success(salesTop10ReportVO);
     }
+
+    /**
+     * 导出运营数据报表，默认为最近30天
+     * @param begin
+     * @param end
+     * @param response
+     */
+    @GetMapping("/export")
+    @ApiOperation("导出运营数据报表")
+    public void export(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                       @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                       HttpServletResponse response) throws IOException {
+        if (end == null) {
+            end = LocalDate.now().minusDays(1);
+        }
+        if (begin == null) {
+            begin = end.minusDays(29);
+        }
+        log.info("导出运营数据报表：{}, {}", begin, end);
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment; filename=business-" + begin + "-" + end + ".xlsx");
+        reportService.exportBusinessData(begin, end, response.getOutputStream());
+    }
 }
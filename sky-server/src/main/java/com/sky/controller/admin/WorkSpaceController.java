@@ -6,6 +6,7 @@ import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
@@ -73,4 +74,16 @@ public class WorkSpaceController {
     public Result<SetmealOverViewVO> setmealOverView(){
         return Result.success(workspaceService.getSetmealOverView());
     }
+
+    /**
+     * 查询工作台全部数据，各项数据并行查询
+     * @return
+     */
+    @GetMapping("/all")
+    @ApiOperation("查询工作台全部数据")
+    public Result<WorkspaceVO> all(){
+        LocalDateTime begin = LocalDateTime.now().with(LocalTime.MIN);
+        LocalDateTime end = LocalDateTime.now().with(LocalTime.MAX);
+        return Result.success(workspaceService.getAll(begin, end));
+    }
 }
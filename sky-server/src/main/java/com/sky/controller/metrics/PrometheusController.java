@@ -0,0 +1,51 @@
+package com.sky.controller.metrics;
+
+import com.sky.metrics.HttpClientMetrics;
+import com.sky.metrics.OrderEventMetrics;
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.sse.OrderTracker;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 供Prometheus抓取的指标接口，不在/admin、/user路径下，不使用jwt令牌，由MetricsAccessInterceptor按来源地址或抓取令牌校验
+ */
+@RestController
+@RequestMapping("/metrics")
+@Api(tags = "Prometheus指标接口")
+public class PrometheusController {
+
+    @Autowired
+    private RequestMetricsRegistry requestMetricsRegistry;
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+    @Autowired
+    private HttpClientMetrics httpClientMetrics;
+    @Autowired
+    private OrderEventMetrics orderEventMetrics;
+    @Autowired
+    private OrderTracker orderTracker;
+
+    /**
+     * Prometheus文本格式的指标
+     * @return
+     */
+    @GetMapping(value = "/prometheus", produces = "text/plain; version=0.0.4; charset=utf-8")
+    @ApiOperation("Prometheus指标")
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder(8192);
+        requestMetricsRegistry.writePrometheus(sb);
+        sqlMetricsRegistry.writePrometheus(sb);
+        httpClientMetrics.writePrometheus(sb);
+        orderEventMetrics.writePrometheus(sb);
+        sb.append("# HELP sky_order_track_connections 用户端订单跟踪连接数\n");
+        sb.append("# TYPE sky_order_track_connections gauge\n");
+        sb.append("sky_order_track_connections ").append(orderTracker.getConnections()).append('\n');
+        return sb.toString();
+    }
+}
@@ -4,16 +4,16 @@ import com.alibaba.druid.support.json.JSONUtils;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
-import com.sky.service.OrderService;
+import com.sky.wechat.PayNotifyInbox;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.entity.ContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
@@ -25,12 +25,12 @@ import java.util.HashMap;
 @Slf4j
 public class PayNotifyController {
     @Autowired
-    private OrderService orderService;
+    private PayNotifyInbox payNotifyInbox;
     @Autowired
     private WeChatProperties weChatProperties;
 
     /**
-     * 支付成功回调
+     * 支付成功回调：回调按交易号去重保存到收件箱后立即应答，订单状态更新和来单提醒异步处理
      *
      * @param request
      */
@@ -51,8 +51,8 @@ public class PayNotifyController {
         log.info("商户平台订单号：{}", outTradeNo);
         log.info("微信支付交易号：{}", transactionId);
 
-        //业务处理，修改订单状态、来单提醒
-        orderService.paySuccess(outTradeNo);
+        //保存到收件箱，修改订单状态、来单提醒由后台线程处理，重复通知直接应答
+        payNotifyInbox.accept(outTradeNo, transactionId);
 
         //给微信响应
         responseToWeixin(response);
@@ -66,16 +66,7 @@ public class PayNotifyController {
      * @throws Exception
      */
     private String readData(HttpServletRequest request) throws Exception {
-        BufferedReader reader = request.getReader();
-        StringBuilder result = new StringBuilder();
-        String line = null;
-        while ((line = reader.readLine()) != null) {
-            if (result.length() > 0) {
-                result.append("\n");
-            }
-            result.append(line);
-        }
-        return result.toString();
+        return StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
     }
 
     /**
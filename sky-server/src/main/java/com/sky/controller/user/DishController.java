@@ -10,6 +10,7 @@ import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -37,7 +38,14 @@ public class DishController {
         // 构造redis中的key，构造规则：dish_分类id
         String key = "dish_" + categoryId;
         // 查询redis中是否存在菜品数据
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+        List<DishVO> list = null;
+        try {
+            list = (List<DishVO>) redisTemplate.opsForValue().get(key);
+        } catch (SerializationException e) {
+            // DishVO的结构变更前写入的缓存无法反序列化，删除后重新从数据库加载
+            log.warn("菜品缓存{}无法反序列化，重新加载：{}", key, e.getMessage());
+            redisTemplate.delete(key);
+        }
         // 如果存在，直接返回
         if (list!= null && !list.isEmpty()) {
             return Result.success(list);
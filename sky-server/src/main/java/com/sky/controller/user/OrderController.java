@@ -1,5 +1,7 @@
 package com.sky.controller.user;
 
+import com.sky.annotation.RateLimit;
+import com.sky.context.BaseContext;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
@@ -7,6 +9,7 @@ import com.sky.entity.OrderDetail;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
+import com.sky.sse.OrderTracker;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
@@ -14,7 +17,9 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController("userOrderController")
 @RequestMapping("/user/order")
@@ -24,6 +29,8 @@ public class OrderController {
 
     @Autowired
     private OrderService orderService;
+    @Autowired
+    private OrderTracker orderTracker;
 
     /**
      * 用户下单
@@ -32,6 +39,7 @@ public class OrderController {
      */
     @PostMapping("/submit")
     @ApiOperation("用户下单")
+    @RateLimit(value = "order-submit", permitsPerSecond = 0.2, burst = 3)
     public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO) {
         log.info("用户下单：{}", ordersSubmitDTO);
         OrderSubmitVO orderSubmitVO = orderService.submitOrder(ordersSubmitDTO);
@@ -55,15 +63,16 @@ public class OrderController {
 
     /**
      * 历史订单查询
-     * @param page
+     * @param page     页码，游标分页时不需要传，按页码分页时缺省为第1页
      * @param pageSize
      * @param status   订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+     * @param cursor   游标分页的继续令牌，传空串查询第一页，之后传上一页返回的next
      * @return
      */
     @GetMapping("/historyOrders")
     @ApiOperation("历史订单查询")
-    public Result<PageResult> page(int page, int pageSize, Integer status) {
-        PageResult pageResult = orderService.pageQuery4User(page, pageSize, status);
+    public Result<PageResult> page(Integer page, int pageSize, Integer status, String cursor) {
+        PageResult pageResult = orderService.pageQuery4User(page == null ? 1 : page, pageSize, status, cursor);
         return Result.success(pageResult);
     }
 
@@ -111,8 +120,20 @@ public class OrderController {
      */
     @GetMapping("/reminder/{id}")
     @ApiOperation("用户催单")
+    @RateLimit(value = "order-reminder", permitsPerSecond = 0.1, burst = 2)
     public Result reminder(@PathVariable Long id) {
         orderService.reminder(id);
         return Result.success();
     }
+
+    /**
+     * 订单状态跟踪，以Server-Sent Events推送当前用户订单的状态变化，代替轮询订单详情
+     * @param lastEventId 断线重连时浏览器自动带上的最后一个事件id
+     * @return
+     */
+    @GetMapping(value = "/track", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ApiOperation("订单状态跟踪")
+    public SseEmitter track(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return orderTracker.subscribe(BaseContext.getCurrentId(), lastEventId);
+    }
 }
@@ -0,0 +1,40 @@
+package com.sky.controller.user;
+
+import com.sky.result.Result;
+import com.sky.service.DishService;
+import com.sky.service.SetmealService;
+import com.sky.vo.MenuSearchVO;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController("userSearchController")
+@RequestMapping("/user/search")
+@Slf4j
+@Api(tags = "C端-菜单搜索接口")
+public class SearchController {
+    @Autowired
+    private DishService dishService;
+    @Autowired
+    private SetmealService setmealService;
+
+    /**
+     * 按名称搜索起售中的菜品和套餐
+     *
+     * @param name
+     * @return
+     */
+    @GetMapping
+    @ApiOperation("按名称搜索菜品和套餐")
+    public Result<MenuSearchVO> search(String name) {
+        MenuSearchVO menuSearchVO = MenuSearchVO.builder()
+                .dishes(dishService.search(name))
+                .setmeals(setmealService.search(name))
+                .build();
+        return Result.success(menuSearchVO);
+    }
+}
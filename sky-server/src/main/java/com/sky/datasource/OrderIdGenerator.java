@@ -0,0 +1,79 @@
+package com.sky.datasource;
+
+import com.sky.properties.ShardingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 分库后订单id的序号：从主库（0号分片）的order_id_segment表按号段申请，号段用完再申请下一段
+ * 申请使用独立的连接和事务，不受下单事务回滚影响；各实例各自持有号段，序号全局唯一但不严格递增
+ */
+@Component
+@Slf4j
+public class OrderIdGenerator {
+
+    private static final String SEGMENT_NAME = "orders";
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    // 当前号段中下一个可用的序号，以及号段的最大序号
+    private long next;
+    private long max = -1;
+
+    /**
+     * 获取下一个序号
+     * @return
+     */
+    public synchronized long nextSequence() {
+        if (next > max) {
+            allocate();
+        }
+        return next++;
+    }
+
+    private void allocate() {
+        int step = shardingProperties.getIdStep();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update order_id_segment set max_value = max_value + ? where name = ?");
+                 PreparedStatement select = connection.prepareStatement(
+                         "select max_value from order_id_segment where name = ?")) {
+                update.setInt(1, step);
+                update.setString(2, SEGMENT_NAME);
+                if (update.executeUpdate() == 0) {
+                    throw new SQLException("order_id_segment中没有" + SEGMENT_NAME + "号段");
+                }
+                // 更新已对该行加锁，读到的是本次申请后的最大值
+                select.setString(1, SEGMENT_NAME);
+                long segmentMax;
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    segmentMax = rs.getLong(1);
+                }
+                connection.commit();
+                next = segmentMax - step + 1;
+                max = segmentMax;
+                log.info("申请订单id号段：{} - {}", next, max);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("申请订单id号段失败", e);
+        }
+    }
+}
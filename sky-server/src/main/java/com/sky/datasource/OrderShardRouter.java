@@ -0,0 +1,214 @@
+package com.sky.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.sky.properties.ShardingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 订单分片规则：
+ * 1. 订单及明细按user_id % 分片数 存放，同一用户的订单在同一分片
+ * 2. 订单id由应用生成：OrderIdGenerator的序号 * 100 + 分片号，末两位即为分片号，不依赖各分片的自增设置
+ * 3. 订单号末两位为分片号
+ * 4. 启用分库前写入的订单（自增id小于GENERATED_ID_MIN、13位订单号）不迁移，留在0号分片，
+ *    按id、订单号查询时路由到0号分片，按用户查询时同时查询用户所在分片和0号分片（sky.sharding.legacy-on-primary）
+ * 5. 订单事件（发件箱）与订单在同一分片，与订单的修改在同一个分片事务中提交；各分片的事件id各自自增，
+ *    推送给客户端的事件id末两位加上分片号
+ */
+@Component
+@Slf4j
+public class OrderShardRouter {
+
+    // 启用分库后生成的订单id不小于该值，更小的是启用分库前的自增id
+    public static final long GENERATED_ID_MIN = 1_000_000_000_000L;
+    // 毫秒时间戳的位数，更短的订单号没有分片后缀
+    private static final int TIMESTAMP_LENGTH = 13;
+    // 订单id、订单号的末两位为分片号
+    private static final int SHARD_RADIX = 100;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+    @Autowired
+    private OrderIdGenerator orderIdGenerator;
+
+    // 1号及之后分片的连接池，0号分片使用主数据源
+    private final List<DruidDataSource> dataSources = new ArrayList<>();
+    // 当前线程指定的发件箱分片，分发器和断线补发按分片逐个处理事件
+    private final ThreadLocal<Integer> eventShard = new ThreadLocal<>();
+
+    @PostConstruct
+    public void init() throws SQLException {
+        if (!shardingProperties.isEnabled()) {
+            return;
+        }
+        for (ShardingProperties.Shard shard : shardingProperties.getShards()) {
+            DruidDataSource dataSource = new DruidDataSource();
+            dataSource.setName("order-shard-" + (dataSources.size() + 1));
+            dataSource.setUrl(shard.getUrl());
+            dataSource.setUsername(shard.getUsername());
+            dataSource.setPassword(shard.getPassword());
+            dataSource.init();
+            dataSources.add(dataSource);
+        }
+        log.info("订单分库已启用，共{}个分片", getShardCount());
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSources.forEach(DruidDataSource::close);
+    }
+
+    public int getShardCount() {
+        return dataSources.size() + 1;
+    }
+
+    /**
+     * 分片的数据源，0号分片返回null（使用主数据源）
+     * @param shard
+     * @return
+     */
+    public DataSource getDataSource(int shard) {
+        return shard == 0 ? null : dataSources.get(shard - 1);
+    }
+
+    public int shardOfUser(Long userId) {
+        return (int) (userId % getShardCount());
+    }
+
+    /**
+     * 根据订单id末两位取分片号，启用分库前的订单id在0号分片
+     * @param orderId
+     * @return
+     */
+    public int shardOfOrderId(Long orderId) {
+        if (orderId < GENERATED_ID_MIN) {
+            return 0;
+        }
+        int shard = (int) (orderId % SHARD_RADIX);
+        return shard < getShardCount() ? shard : 0;
+    }
+
+    /**
+     * 根据订单号末两位取分片号，启用分库前的13位订单号在0号分片，无法识别的订单号返回null
+     * @param number
+     * @return
+     */
+    public Integer shardOfNumber(String number) {
+        if (number == null) {
+            return null;
+        }
+        if (number.length() <= TIMESTAMP_LENGTH) {
+            return 0;
+        }
+        int shard = Integer.parseInt(number.substring(number.length() - 2));
+        return shard < getShardCount() ? shard : null;
+    }
+
+    /**
+     * 订单所在的分片，优先按订单id，没有id时按订单号
+     * @param orderId
+     * @param number
+     * @return 无法识别时返回null
+     */
+    public Integer shardOfOrder(Long orderId, String number) {
+        return orderId != null ? Integer.valueOf(shardOfOrderId(orderId)) : shardOfNumber(number);
+    }
+
+    /**
+     * 在指定分片上执行发件箱语句（OrderEventMapper），期间的其他语句仍按各自的规则路由
+     * @param shard
+     * @param action
+     * @return
+     */
+    public <T> T onEventShard(int shard, Supplier<T> action) {
+        Integer previous = eventShard.get();
+        eventShard.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                eventShard.remove();
+            } else {
+                eventShard.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前线程指定的发件箱分片，未指定时返回null
+     * @return
+     */
+    public Integer getEventShard() {
+        return eventShard.get();
+    }
+
+    /**
+     * 推送给客户端的事件id：分库后末两位为事件所在的分片号，未启用分库时即为事件id
+     * @param eventId
+     * @param shard
+     * @return
+     */
+    public long publicEventId(long eventId, int shard) {
+        return getShardCount() == 1 ? eventId : eventId * SHARD_RADIX + shard;
+    }
+
+    /**
+     * 客户端事件id所在的分片
+     * @param publicEventId
+     * @return
+     */
+    public int shardOfPublicEventId(long publicEventId) {
+        if (getShardCount() == 1) {
+            return 0;
+        }
+        int shard = (int) (publicEventId % SHARD_RADIX);
+        return shard < getShardCount() ? shard : 0;
+    }
+
+    /**
+     * 客户端事件id对应的分片内事件id
+     * @param publicEventId
+     * @return
+     */
+    public long eventIdOf(long publicEventId) {
+        return getShardCount() == 1 ? publicEventId : publicEventId / SHARD_RADIX;
+    }
+
+    /**
+     * 按用户查询订单时是否需要同时查询0号分片上启用分库前的订单
+     * @return
+     */
+    public boolean isLegacyOnPrimary() {
+        return shardingProperties.isLegacyOnPrimary();
+    }
+
+    /**
+     * 为新订单生成id，未启用分库时返回null，由数据库自增生成
+     * @param userId
+     * @return
+     */
+    public Long orderId(Long userId) {
+        if (getShardCount() == 1) {
+            return null;
+        }
+        return orderIdGenerator.nextSequence() * SHARD_RADIX + shardOfUser(userId);
+    }
+
+    /**
+     * 生成订单号：毫秒时间戳 + 两位分片号
+     * @param userId
+     * @return
+     */
+    public String orderNumber(Long userId) {
+        return System.currentTimeMillis() + String.format("%02d", shardOfUser(userId));
+    }
+}
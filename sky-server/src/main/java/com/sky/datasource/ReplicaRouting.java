@@ -0,0 +1,160 @@
+package com.sky.datasource;
+
+import com.sky.context.BaseContext;
+import com.sky.properties.ReplicaProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 读写分离的路由状态：当前线程是否处于只读方法中、从库是否可用、用户最近的写入时间
+ */
+@Component
+@Slf4j
+public class ReplicaRouting {
+
+    // 当前线程正在执行@ReadReplica方法
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    // 当前线程正在执行的@Transactional方法层数；事务开始时获取连接早于事务标记为活动，需要单独记录
+    private static final ThreadLocal<int[]> TRANSACTIONAL = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Autowired
+    private ReplicaProperties replicaProperties;
+    @Autowired(required = false)
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    // 从库复制延迟是否在允许范围内，由定时检查更新
+    private volatile boolean replicaAvailable = true;
+    // 登录者类型:id -> 最近一次写入的时间
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * 进入只读方法
+     * @return 是否已经处于只读方法中（嵌套调用）
+     */
+    public boolean enterReadOnly() {
+        boolean nested = READ_ONLY.get() != null;
+        READ_ONLY.set(Boolean.TRUE);
+        return nested;
+    }
+
+    /**
+     * 退出只读方法
+     * @param nested enterReadOnly的返回值
+     */
+    public void exitReadOnly(boolean nested) {
+        if (!nested) {
+            READ_ONLY.remove();
+        }
+    }
+
+    /**
+     * 进入@Transactional方法，其中（包括从只读方法中调用的写方法）获取的连接都走主库
+     */
+    public void enterTransactional() {
+        TRANSACTIONAL.get()[0]++;
+    }
+
+    /**
+     * 退出@Transactional方法
+     */
+    public void exitTransactional() {
+        int[] depth = TRANSACTIONAL.get();
+        if (--depth[0] <= 0) {
+            TRANSACTIONAL.remove();
+        }
+    }
+
+    /**
+     * 当前获取的连接是否走从库
+     * @return
+     */
+    public boolean useReplica() {
+        if (READ_ONLY.get() == null || !replicaAvailable || TRANSACTIONAL.get()[0] > 0
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return false;
+        }
+        // 读自己的写：用户刚写入过数据时仍走主库，避免读到复制延迟前的旧数据
+        String writer = currentWriter();
+        if (writer != null) {
+            Long lastWrite = lastWrites.get(writer);
+            return lastWrite == null || System.currentTimeMillis() - lastWrite >= replicaProperties.getStickyMillis();
+        }
+        return true;
+    }
+
+    /**
+     * 记录当前用户执行了写操作
+     */
+    public void markWrite() {
+        if (!replicaProperties.isEnabled()) {
+            return;
+        }
+        String writer = currentWriter();
+        if (writer != null) {
+            lastWrites.put(writer, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 读自己的写按登录者类型和id区分，员工和用户的id相同时互不影响
+     */
+    private static String currentWriter() {
+        Long id = BaseContext.getCurrentId();
+        return id == null ? null : BaseContext.getCurrentActor() + ":" + id;
+    }
+
+    /**
+     * 定时检查从库复制延迟，并清理过期的写入记录
+     */
+    @Scheduled(fixedDelayString = "${sky.replica.lag-check-interval:5000}")
+    public void checkReplicaLag() {
+        if (replicaDataSource == null) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - replicaProperties.getStickyMillis();
+        lastWrites.values().removeIf(time -> time < expired);
+
+        boolean available = false;
+        String reason = null;
+        try (Connection connection = replicaDataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("show slave status")) {
+            if (!rs.next()) {
+                // 未配置复制（如测试环境从库直接指向主库），视为无延迟
+                available = true;
+            } else {
+                long lag = rs.getLong("Seconds_Behind_Master");
+                if (rs.wasNull()) {
+                    reason = "复制线程未运行";
+                } else if (lag > replicaProperties.getMaxLagSeconds()) {
+                    reason = "复制延迟" + lag + "秒";
+                } else {
+                    available = true;
+                }
+            }
+        } catch (Exception e) {
+            reason = e.getMessage();
+        }
+
+        if (available != replicaAvailable) {
+            if (available) {
+                log.info("从库恢复可用，读请求重新路由到从库");
+            } else {
+                log.warn("从库不可用，读请求回退到主库：{}", reason);
+            }
+        }
+        replicaAvailable = available;
+    }
+}
@@ -0,0 +1,23 @@
+package com.sky.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 读写分离数据源：获取连接时由ReplicaRouting决定使用主库还是从库
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final ReplicaRouting replicaRouting;
+
+    public RoutingDataSource(ReplicaRouting replicaRouting) {
+        this.replicaRouting = replicaRouting;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return replicaRouting.useReplica() ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,221 @@
+package com.sky.event;
+
+import com.sky.entity.OrderEvent;
+import com.sky.datasource.OrderShardRouter;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.metrics.OrderEventMetrics;
+import com.sky.properties.OrderEventProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 订单事件分发器：在独立线程中按写入顺序批量领取发件箱中的事件，依次交给所有OrderEventHandler处理
+ * 事务提交后立即唤醒分发，定时任务兜底处理重试和其他实例写入的事件；领取带租约，分发中断的事件到期后重新分发
+ * 状态变更时未知的订单id、用户id、订单号在分发前查询订单补全，不占用请求线程
+ * 每个处理器单独记录是否处理成功，部分处理器失败时只重试失败的处理器
+ * 分库后订单事件与订单在同一分片，按分片依次领取和分发，各分片的事件id各自自增
+ */
+@Component
+@Slf4j
+public class OrderEventDispatcher {
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderEventProperties orderEventProperties;
+    @Autowired
+    private OrderEventMetrics orderEventMetrics;
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+    @Autowired
+    private List<OrderEventHandler> handlers;
+
+    private ThreadPoolExecutor executor;
+    // 是否已提交分发任务，保证同时只有一个线程在分发
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // 分发过程中是否又有新的事件写入
+    private volatile boolean dirty;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), runnable -> {
+            Thread thread = new Thread(runnable, "order-event-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 通知有新的事件，分发线程空闲时立即开始分发
+     */
+    public void wakeup() {
+        dirty = true;
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 定时检查到期的待分发事件
+     */
+    @Scheduled(fixedDelayString = "${sky.order-event.poll-interval:1000}")
+    public void poll() {
+        wakeup();
+    }
+
+    /**
+     * 每日凌晨4点，删除超过保留天数的已分发事件
+     */
+    @Scheduled(cron = "0 0 4 * * ?")
+    public void cleanup() {
+        int deleted = orderEventMapper.deleteDoneBefore(LocalDateTime.now().minusDays(orderEventProperties.getRetentionDays()));
+        log.info("删除已分发的订单事件{}条", deleted);
+    }
+
+    private void drain() {
+        try {
+            do {
+                dirty = false;
+                for (int shard = 0; shard < orderShardRouter.getShardCount(); shard++) {
+                    while (orderShardRouter.onEventShard(shard, this::dispatchBatch) >= orderEventProperties.getBatchSize()) {
+                        // 本批已满，继续领取下一批
+                    }
+                }
+            } while (dirty);
+        } catch (RuntimeException e) {
+            log.warn("订单事件分发失败：{}", e.getMessage());
+        } finally {
+            scheduled.set(false);
+        }
+        if (dirty) {
+            wakeup();
+        }
+    }
+
+    /**
+     * 领取并分发当前分片的一批事件
+     * @return 本批领取的候选事件数
+     */
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = orderEventMapper.getDueIds(now, orderEventProperties.getBatchSize());
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String token = UUID.randomUUID().toString();
+        LocalDateTime leaseUntil = now.plus(orderEventProperties.getLease(), ChronoUnit.MILLIS);
+        if (orderEventMapper.claim(ids, token, now, leaseUntil) == 0) {
+            return ids.size();
+        }
+
+        List<Long> done = new ArrayList<>();
+        for (OrderEvent orderEvent : orderEventMapper.getByClaimToken(token)) {
+            try {
+                fill(orderEvent);
+            } catch (RuntimeException e) {
+                retry(orderEvent, e);
+                continue;
+            }
+            // 之前已处理成功的处理器不再调用，失败的处理器不影响其余处理器
+            Set<String> handled = new LinkedHashSet<>(StringUtils.commaDelimitedListToSet(orderEvent.getHandled()));
+            RuntimeException failure = null;
+            for (OrderEventHandler handler : handlers) {
+                String name = ClassUtils.getUserClass(handler).getSimpleName();
+                if (handled.contains(name)) {
+                    continue;
+                }
+                try {
+                    handler.handle(orderEvent);
+                    handled.add(name);
+                } catch (RuntimeException e) {
+                    log.warn("订单事件{}的处理器{}处理失败：{}", orderEvent.getId(), name, e.getMessage());
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                done.add(orderEvent.getId());
+            } else {
+                orderEvent.setHandled(StringUtils.collectionToCommaDelimitedString(handled));
+                retry(orderEvent, failure);
+            }
+        }
+        if (!done.isEmpty()) {
+            orderEventMapper.markDone(done);
+        }
+        return ids.size();
+    }
+
+    /**
+     * 补全事件中的订单id、用户id和订单号
+     */
+    private void fill(OrderEvent orderEvent) {
+        if (orderEvent.getOrderId() != null && orderEvent.getUserId() != null && orderEvent.getOrderNumber() != null) {
+            return;
+        }
+        Orders orders = orderEvent.getOrderId() != null ? orderMapper.getById(orderEvent.getOrderId())
+                : orderMapper.getByNumber(orderEvent.getOrderNumber());
+        if (orders != null) {
+            orderEvent.setOrderId(orders.getId());
+            orderEvent.setUserId(orders.getUserId());
+            orderEvent.setOrderNumber(orders.getNumber());
+            // 写回发件箱，重试和断线补发时不必再查询订单
+            orderEventMapper.updateOrder(orderEvent);
+        }
+    }
+
+    /**
+     * 分发失败，按指数退避安排重试，次数用尽后不再分发
+     */
+    private void retry(OrderEvent orderEvent, RuntimeException e) {
+        int attempts = orderEvent.getAttempts();
+        OrderEvent update = OrderEvent.builder().id(orderEvent.getId()).handled(orderEvent.getHandled()).build();
+        if (attempts >= orderEventProperties.getMaxAttempts()) {
+            log.error("订单事件{}分发失败且重试次数已用尽，类型：{}，订单：{}", orderEvent.getId(),
+                    orderEvent.getEventType(), orderEvent.getOrderId(), e);
+            orderEventMetrics.failed();
+            update.setStatus(OrderEvent.FAILED);
+            update.setNextRetryTime(LocalDateTime.now());
+        } else {
+            long delay = Math.min(orderEventProperties.getRetryDelay() << Math.min(attempts - 1, 20),
+                    orderEventProperties.getMaxRetryDelay());
+            log.warn("订单事件{}分发失败，第{}次，{}ms后重试：{}", orderEvent.getId(), attempts, delay, e.getMessage());
+            orderEventMetrics.retried();
+            update.setStatus(OrderEvent.PENDING);
+            update.setNextRetryTime(LocalDateTime.now().plus(delay, ChronoUnit.MILLIS));
+        }
+        orderEventMapper.updateRetry(update);
+    }
+}
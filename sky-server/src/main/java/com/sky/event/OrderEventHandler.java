@@ -0,0 +1,16 @@
+package com.sky.event;
+
+import com.sky.entity.OrderEvent;
+
+/**
+ * 订单事件处理器，注册为Spring Bean后由OrderEventDispatcher分发事件
+ * 事件至少分发一次：任一处理器失败时整个事件会重新分发，处理器需要容忍重复
+ */
+public interface OrderEventHandler {
+
+    /**
+     * 处理订单事件，抛出异常表示需要重试
+     * @param orderEvent
+     */
+    void handle(OrderEvent orderEvent);
+}
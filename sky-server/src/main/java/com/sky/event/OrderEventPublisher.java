@@ -0,0 +1,56 @@
+package com.sky.event;
+
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderEventMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * 写入订单事件：在调用方的事务中插入发件箱，事务提交后通知分发器立即分发
+ * 订单更新和事件写入同时成功或同时回滚，非必要的后续处理（推送、统计）不占用请求线程
+ * 分库后事件写入订单所在的分片，与订单的修改在同一个分片事务中提交
+ */
+@Component
+public class OrderEventPublisher {
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+    @Autowired
+    private OrderEventDispatcher orderEventDispatcher;
+
+    /**
+     * 写入订单事件
+     * @param eventType 事件类型，见OrderEvent中的常量
+     * @param orders 订单id或订单号，未知的订单id、用户id、订单号在分发前补全
+     * @param orderStatus 事件发生后的订单状态
+     */
+    public void publish(String eventType, Orders orders, Integer orderStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        orderEventMapper.insert(OrderEvent.builder()
+                .eventType(eventType)
+                .orderId(orders.getId())
+                .userId(orders.getUserId())
+                .orderNumber(orders.getNumber())
+                .orderStatus(orderStatus)
+                .status(OrderEvent.PENDING)
+                .attempts(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .build());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    orderEventDispatcher.wakeup();
+                }
+            });
+        } else {
+            orderEventDispatcher.wakeup();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sky.event;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.websocket.ReminderCoalescer;
+import com.sky.websocket.WebSocketServer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+
+/**
+ * 来单提醒和客户催单：通过websocket向商家端浏览器推送消息，催单按订单合并后推送
+ */
+@Component
+public class WebSocketOrderEventHandler implements OrderEventHandler {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private ReminderCoalescer reminderCoalescer;
+
+    @Override
+    public void handle(OrderEvent orderEvent) {
+        if (OrderEvent.REMINDER.equals(orderEvent.getEventType())) {
+            reminderCoalescer.remind(orderEvent.getOrderId(), orderEvent.getOrderNumber());
+            return;
+        }
+        if (!OrderEvent.PAID.equals(orderEvent.getEventType())) {
+            return;
+        }
+        // 推送消息：type orderId content
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("type", 1); // 1表示来单提醒 2表示客户催单
+        map.put("orderId", orderEvent.getOrderId());
+        map.put("content", "订单号：" + orderEvent.getOrderNumber());
+        webSocketServer.sendToAllClient(JSON.toJSONString(map));
+    }
+}
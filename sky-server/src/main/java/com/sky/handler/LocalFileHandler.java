@@ -0,0 +1,259 @@
+package com.sky.handler;
+
+import com.sky.storage.LocalObjectStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.HttpRequestHandler;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 本地对象存储的文件访问：强ETag、Cache-Control、单区间Range请求
+ * 小文件缓存在内存中（总大小有上限，最近最少使用的先淘汰）；
+ * 其余文件优先交给Tomcat的sendfile零拷贝发送，不支持时用FileChannel.transferTo写出
+ */
+@Slf4j
+public class LocalFileHandler implements HttpRequestHandler {
+
+    // Tomcat的sendfile请求属性
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalObjectStore localObjectStore;
+    private final String urlPrefix;
+    private final String cacheControl;
+    private final long cacheFileMaxBytes;
+    private final long cacheMaxBytes;
+
+    // 对象名称 -> 文件内容，按访问顺序排列
+    private final LinkedHashMap<String, CachedFile> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * @param localObjectStore
+     * @param urlPrefix 文件访问地址的前缀
+     * @param maxAge 浏览器缓存时间，单位秒
+     * @param cacheFileMaxBytes 不超过该大小的文件缓存在内存中
+     * @param cacheMaxBytes 内存缓存的总大小
+     */
+    public LocalFileHandler(LocalObjectStore localObjectStore, String urlPrefix, long maxAge,
+                            long cacheFileMaxBytes, long cacheMaxBytes) {
+        this.localObjectStore = localObjectStore;
+        this.urlPrefix = urlPrefix.endsWith("/") ? urlPrefix.substring(0, urlPrefix.length() - 1) : urlPrefix;
+        // 文件名使用UUID，内容不会变化，可以长期缓存
+        this.cacheControl = "public, max-age=" + maxAge + ", immutable";
+        this.cacheFileMaxBytes = cacheFileMaxBytes;
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            response.setHeader("Allow", "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        String objectName = objectName(request);
+        Path path;
+        BasicFileAttributes attributes;
+        try {
+            path = localObjectStore.resolve(objectName);
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IllegalArgumentException | NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", cacheControl);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+        String contentType = request.getServletContext().getMimeType(path.getFileName().toString());
+        response.setContentType(contentType == null ? "application/octet-stream" : contentType);
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] parsed = parseRange(range, size);
+            if (parsed == null) {
+                response.setHeader("Content-Range", "bytes */" + size);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (parsed.length == 2) {
+                start = parsed[0];
+                end = parsed[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+        long length = end - start + 1;
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length == 0) {
+            return;
+        }
+
+        if (size <= cacheFileMaxBytes) {
+            byte[] bytes = cached(objectName, path, size, lastModified);
+            response.getOutputStream().write(bytes, (int) start, (int) length);
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toFile().getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        transfer(path, start, length, response.getOutputStream());
+    }
+
+    /**
+     * 清空内存缓存
+     */
+    public synchronized void clearCache() {
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    private String objectName(HttpServletRequest request) throws IOException {
+        String uri = request.getRequestURI().substring(request.getContextPath().length());
+        String name = uri.startsWith(urlPrefix + "/") ? uri.substring(urlPrefix.length() + 1) : uri;
+        return URLDecoder.decode(name, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * 协商缓存：If-None-Match优先于If-Modified-Since
+     */
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String value = candidate.trim();
+                if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        // Last-Modified精确到秒
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * 解析Range头，只支持单个区间
+     * @return 无法满足时返回null；多个区间或格式不支持时返回空数组，按完整文件响应
+     */
+    private static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = range.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                // bytes=-N 表示最后N个字节
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * 从内存缓存中取文件内容，文件已变化或不在缓存中时重新读取
+     */
+    private byte[] cached(String objectName, Path path, long size, long lastModified) throws IOException {
+        synchronized (this) {
+            CachedFile cachedFile = cache.get(objectName);
+            if (cachedFile != null && cachedFile.lastModified == lastModified && cachedFile.bytes.length == size) {
+                return cachedFile.bytes;
+            }
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        synchronized (this) {
+            CachedFile previous = cache.put(objectName, new CachedFile(bytes, lastModified));
+            cachedBytes += bytes.length - (previous == null ? 0 : previous.bytes.length);
+            Iterator<Map.Entry<String, CachedFile>> iterator = cache.entrySet().iterator();
+            while (cachedBytes > cacheMaxBytes && iterator.hasNext()) {
+                cachedBytes -= iterator.next().getValue().bytes.length;
+                iterator.remove();
+            }
+        }
+        return bytes;
+    }
+
+    private static void transfer(Path path, long start, long length, ServletOutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    private static class CachedFile {
+        private final byte[] bytes;
+        private final long lastModified;
+
+        private CachedFile(byte[] bytes, long lastModified) {
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.sky.handler;
+
+import com.sky.interceptor.RequestMetricsInterceptor;
+import com.sky.result.Result;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 业务失败（包括全局异常处理器转换的业务异常）以200响应返回Result.error，在写出响应前记为接口错误
+ */
+@RestControllerAdvice
+public class ResultMetricsAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body instanceof Result && !Integer.valueOf(1).equals(((Result<?>) body).getCode())
+                && request instanceof ServletServerHttpRequest) {
+            RequestMetricsInterceptor.markError(((ServletServerHttpRequest) request).getServletRequest());
+        }
+        return body;
+    }
+}
@@ -0,0 +1,254 @@
+package com.sky.image;
+
+import com.sky.properties.ImageVariantProperties;
+import com.sky.storage.ObjectStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 菜品、套餐图片的缩略图和压缩图：上传后在有界线程池中异步生成，与原图一起保存到对象存储
+ * 变体的对象名称由原图名称推出（abc.png -> abc_thumb.jpg、abc_medium.jpg），生成完成后在Redis中记录标记，
+ * 只有标记存在的图片才返回变体地址，尚未生成或历史图片的客户端继续使用原图
+ * 用户端的菜品列表缓存可能在变体生成前写入，生成完成后清理菜品缓存，下次查询时带上变体地址
+ */
+@Component
+@Slf4j
+public class ImageVariants {
+
+    private static final String READY_KEY = "image:variants:";
+    private static final String THUMB = "_thumb";
+    private static final String MEDIUM = "_medium";
+    private static final String VARIANT_EXTENSION = ".jpg";
+    // 用户端菜品列表的缓存键，规则：dish_分类id
+    private static final String DISH_CACHE_PATTERN = "dish_*";
+
+    @Autowired
+    private ImageVariantProperties imageVariantProperties;
+    @Autowired
+    private ObjectStore objectStore;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(imageVariantProperties.getThreads(), imageVariantProperties.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(imageVariantProperties.getQueueSize()), runnable -> {
+            Thread thread = new Thread(runnable, "image-variant-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交生成任务，队列已满时放弃，不影响上传结果
+     * @param objectName 原图的对象名称
+     */
+    public void submit(String objectName) {
+        if (!imageVariantProperties.isEnabled()) {
+            return;
+        }
+        try {
+            executor.execute(() -> generate(objectName));
+        } catch (RejectedExecutionException e) {
+            log.warn("图片变体生成队列已满，跳过{}", objectName);
+        }
+    }
+
+    /**
+     * 为已生成变体的图片填充缩略图和压缩图地址，一次Redis请求查询所有图片
+     * @param items
+     * @param image 取原图地址
+     * @param thumb 设置缩略图地址
+     * @param medium 设置压缩图地址
+     */
+    public <T> void fill(List<T> items, Function<T, String> image, BiConsumer<T, String> thumb, BiConsumer<T, String> medium) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (T item : items) {
+            String name = objectName(image.apply(item));
+            if (name != null) {
+                names.add(name);
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (String name : names) {
+            keys.add(READY_KEY + name);
+        }
+        Set<String> ready = new LinkedHashSet<>();
+        try {
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            int i = 0;
+            for (String name : names) {
+                if (values != null && values.get(i++) != null) {
+                    ready.add(name);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("查询图片变体标记失败：{}", e.getMessage());
+            return;
+        }
+        for (T item : items) {
+            String name = objectName(image.apply(item));
+            if (name != null && ready.contains(name)) {
+                thumb.accept(item, objectStore.getUrl(variantName(name, THUMB)));
+                medium.accept(item, objectStore.getUrl(variantName(name, MEDIUM)));
+            }
+        }
+    }
+
+    /**
+     * 读取原图，按宽度生成缩略图和压缩图并上传
+     */
+    private void generate(String objectName) {
+        long start = System.currentTimeMillis();
+        try {
+            BufferedImage original = read(objectName);
+            if (original == null) {
+                return;
+            }
+            upload(variantName(objectName, THUMB), resize(original, imageVariantProperties.getThumbWidth()));
+            upload(variantName(objectName, MEDIUM), resize(original, imageVariantProperties.getMediumWidth()));
+            stringRedisTemplate.opsForValue().set(READY_KEY + objectName, "1");
+            Set<String> cacheKeys = stringRedisTemplate.keys(DISH_CACHE_PATTERN);
+            if (cacheKeys != null && !cacheKeys.isEmpty()) {
+                stringRedisTemplate.delete(cacheKeys);
+            }
+            log.info("图片{}的变体生成完成，耗时{}ms", objectName, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("图片{}的变体生成失败：{}", objectName, e.getMessage());
+        }
+    }
+
+    /**
+     * 解码原图；原图远大于目标尺寸时按间隔采样解码，减少内存占用
+     * @return 不是可识别的图片或像素过多时返回null
+     */
+    private BufferedImage read(String objectName) throws IOException {
+        try (InputStream in = objectStore.download(objectName);
+             ImageInputStream imageIn = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = imageIn == null ? null : ImageIO.getImageReaders(imageIn);
+            if (readers == null || !readers.hasNext()) {
+                log.info("{}不是可识别的图片，跳过生成变体", objectName);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageIn, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > imageVariantProperties.getMaxPixels()) {
+                    log.warn("图片{}尺寸{}x{}过大，跳过生成变体", objectName, width, height);
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, width / (imageVariantProperties.getMediumWidth() * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 等比缩放到指定宽度，不放大；透明背景填充为白色
+     */
+    private static BufferedImage resize(BufferedImage source, int targetWidth) {
+        int width = Math.min(targetWidth, source.getWidth());
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * 按配置的质量编码为JPEG并上传
+     */
+    private void upload(String objectName, BufferedImage image) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(buffer)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(imageVariantProperties.getQuality());
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        byte[] bytes = buffer.toByteArray();
+        objectStore.upload(new ByteArrayInputStream(bytes), bytes.length, objectName, "image/jpeg");
+    }
+
+    /**
+     * 从图片地址中取出对象名称（最后一个/之后的部分）
+     */
+    private static String objectName(String url) {
+        if (url == null || url.isEmpty()) {
+            return null;
+        }
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    private static String variantName(String objectName, String suffix) {
+        int dot = objectName.lastIndexOf('.');
+        return (dot > 0 ? objectName.substring(0, dot) : objectName) + suffix + VARIANT_EXTENSION;
+    }
+}
@@ -51,6 +51,7 @@ public class JwtTokenAdminInterceptor implements HandlerInterceptor {
             Long empId = Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
             log.info("当前员工id：", empId);
             BaseContext.setCurrentId(empId);    // 将empId存放到线程的存储空间中，后续调用
+            BaseContext.setCurrentActor(BaseContext.EMPLOYEE);
             //3、通过，放行
             return true;
         } catch (Exception ex) {
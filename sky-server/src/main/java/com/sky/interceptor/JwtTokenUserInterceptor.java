@@ -52,6 +52,7 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
             Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
             log.info("当前用户id：{}", userId);
             BaseContext.setCurrentId(userId);    // 将UserId存放到线程的存储空间中，后续调用
+            BaseContext.setCurrentActor(BaseContext.USER);
             //3、通过，放行
             return true;
         } catch (Exception ex) {
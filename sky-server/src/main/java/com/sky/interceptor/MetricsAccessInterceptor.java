@@ -0,0 +1,43 @@
+package com.sky.interceptor;
+
+import com.sky.properties.MetricsProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Prometheus指标接口的访问控制：来源地址在白名单中，或请求头携带配置的令牌才放行，否则响应403
+ * 来源地址取自连接本身，不信任X-Forwarded-For等可伪造的请求头
+ */
+@Component
+@Slf4j
+public class MetricsAccessInterceptor implements HandlerInterceptor {
+
+    private static final String BEARER = "Bearer ";
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (metricsProperties.getPrometheusAllowedAddresses().contains(request.getRemoteAddr())) {
+            return true;
+        }
+        String token = metricsProperties.getPrometheusToken();
+        String authorization = request.getHeader("Authorization");
+        if (StringUtils.hasText(token) && authorization != null && authorization.startsWith(BEARER)
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+        log.warn("拒绝来自{}的指标请求", request.getRemoteAddr());
+        response.setStatus(403);
+        return false;
+    }
+}
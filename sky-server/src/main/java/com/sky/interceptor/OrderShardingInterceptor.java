@@ -0,0 +1,526 @@
+package com.sky.interceptor;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.sky.datasource.OrderShardRouter;
+import com.sky.dto.DailyBusinessDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import com.sky.vo.OrderOverViewVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.managed.ManagedTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MyBatis插件：按OrderShardRouter的规则把订单、订单明细和订单事件的语句路由到对应分片
+ * 能确定分片的语句（按用户、订单id、订单号）只在一个分片执行，其余语句在所有分片执行后合并结果
+ * 按用户的分页查询在存在启用分库前的订单时，同时在0号分片执行
+ * 同一事务中只允许修改一个分片上的订单数据，修改第二个分片时直接报错，避免各分片分别提交后数据不一致
+ * 注册在最内层，SQL统计和分页COUNT缓存看到的是合并后的结果
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Slf4j
+public class OrderShardingInterceptor implements Interceptor {
+
+    private static final String ORDER_NAMESPACE = "com.sky.mapper.OrderMapper.";
+    private static final String ORDER_DETAIL_NAMESPACE = "com.sky.mapper.OrderDetailMapper.";
+    private static final String ORDER_EVENT_NAMESPACE = "com.sky.mapper.OrderEventMapper.";
+    // 事务资源的key，值为当前事务已修改的分片号
+    private static final Object WRITTEN_SHARD = new Object();
+    // PageHelper分页参数名
+    private static final String PAGE_FIRST = "First_PageHelper";
+    private static final String PAGE_SECOND = "Second_PageHelper";
+    private static final int TOP_SIZE = 10;
+    // 限制返回条数的Mapper参数名
+    private static final String LIMIT = "limit";
+    // 按用户查询订单的语句，需要同时查询0号分片上启用分库前的订单
+    private static final Set<String> USER_STATEMENTS = new HashSet<>(Arrays.asList(
+            "OrderMapper.pageQuery", "OrderMapper.pageQuery_COUNT",
+            "OrderMapper.pageArchiveQuery", "OrderMapper.pageArchiveQuery_COUNT",
+            "OrderEventMapper.getDoneByUserSince"));
+
+    private static final Comparator<Orders> ORDER_TIME_DESC = Comparator
+            .comparing(Orders::getOrderTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Orders::getId, Comparator.nullsLast(Comparator.reverseOrder()));
+    private static final Comparator<OrderEvent> DISPATCH_TIME_ASC = Comparator
+            .comparing(OrderEvent::getDispatchTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(OrderEvent::getId);
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    // 语句id -> 是否返回单个数值
+    private final Map<String, Boolean> scalars = new ConcurrentHashMap<>();
+    // 语句id -> Mapper方法是否只有一个limit参数
+    private final Map<String, Boolean> limitOnly = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        String id = ms.getId();
+        if (orderShardRouter.getShardCount() == 1 || !(id.startsWith(ORDER_NAMESPACE)
+                || id.startsWith(ORDER_DETAIL_NAMESPACE) || id.startsWith(ORDER_EVENT_NAMESPACE))) {
+            return invocation.proceed();
+        }
+        boolean update = "update".equals(invocation.getMethod().getName());
+
+        // 分发器、断线补发指定了发件箱分片时直接使用
+        Integer eventShard = id.startsWith(ORDER_EVENT_NAMESPACE) ? orderShardRouter.getEventShard() : null;
+        Integer shard = eventShard != null ? eventShard : route(ms, invocation.getArgs()[1]);
+        if (shard == null) {
+            List<Integer> shards = allShards();
+            if (update) {
+                checkWrite(shards);
+            }
+            return scatter(invocation, shards);
+        }
+        if (eventShard == null && shard != 0 && orderShardRouter.isLegacyOnPrimary()
+                && USER_STATEMENTS.contains(SqlMetricsInterceptor.shortId(id))) {
+            // 启用分库前的订单及其事件留在0号分片，按用户查询时同时查询0号分片
+            return scatter(invocation, Arrays.asList(0, shard));
+        }
+        if (update) {
+            checkWrite(Collections.singletonList(shard));
+        }
+        return shard == 0 ? invocation.proceed() : execute(shard, invocation);
+    }
+
+    private List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>();
+        for (int shard = 0; shard < orderShardRouter.getShardCount(); shard++) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    /**
+     * 确定语句所在的分片，无法确定时返回null
+     */
+    private Integer route(MappedStatement ms, Object parameter) {
+        String statementId = SqlMetricsInterceptor.shortId(ms.getId());
+        switch (statementId) {
+            case "OrderMapper.insert":
+                return orderShardRouter.shardOfUser(((Orders) parameter).getUserId());
+            case "OrderMapper.pageQuery":
+            case "OrderMapper.pageQuery_COUNT":
+            case "OrderMapper.pageArchiveQuery":
+            case "OrderMapper.pageArchiveQuery_COUNT":
+                // 分页查询的参数已被PageHelper转换为Map
+                Long userId = (Long) property(ms, parameter, "userId");
+                return userId == null ? null : orderShardRouter.shardOfUser(userId);
+            case "OrderMapper.getByNumber":
+                return orderShardRouter.shardOfNumber((String) parameter);
+            case "OrderMapper.update":
+                Long orderId = ((Orders) parameter).getId();
+                return orderId == null ? null : orderShardRouter.shardOfOrderId(orderId);
+            case "OrderMapper.transition":
+                Orders target = (Orders) ((Map<?, ?>) parameter).get("orders");
+                return target.getId() != null ? orderShardRouter.shardOfOrderId(target.getId())
+                        : orderShardRouter.shardOfNumber(target.getNumber());
+            case "OrderMapper.getById":
+            case "OrderMapper.getArchiveById":
+            case "OrderDetailMapper.getByOrderId":
+            case "OrderDetailMapper.getArchiveByOrderId":
+                return orderShardRouter.shardOfOrderId((Long) parameter);
+            case "OrderDetailMapper.insertBatch":
+                List<?> list = (List<?>) ((Map<?, ?>) parameter).get("list");
+                return list.isEmpty() ? 0 : orderShardRouter.shardOfOrderId(((OrderDetail) list.get(0)).getOrderId());
+            case "OrderMapper.insertArchive":
+            case "OrderMapper.deleteByIds":
+            case "OrderDetailMapper.insertArchiveByOrderIds":
+            case "OrderDetailMapper.deleteByOrderIds":
+                // 归档按分片分批，同一批订单在同一分片
+                List<?> ids = (List<?>) ((Map<?, ?>) parameter).get("list");
+                return ids.isEmpty() ? 0 : orderShardRouter.shardOfOrderId((Long) ids.get(0));
+            case "OrderEventMapper.insert":
+                OrderEvent orderEvent = (OrderEvent) parameter;
+                Integer eventShard = orderShardRouter.shardOfOrder(orderEvent.getOrderId(), orderEvent.getOrderNumber());
+                return eventShard == null ? 0 : eventShard;
+            case "OrderEventMapper.getDoneByUserSince":
+                return orderShardRouter.shardOfUser((Long) property(ms, parameter, "userId"));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 在指定的分片上执行并合并结果
+     */
+    private Object scatter(Invocation invocation, List<Integer> shards) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        String statementId = SqlMetricsInterceptor.shortId(ms.getId());
+
+        // 各分片只取前10名时合并后的排名不准确，改为查询各分片全部商品的销量，合并后再取前10名
+        if (statementId.equals("OrderMapper.getSalesTop10")) {
+            replaceStatement(invocation, ORDER_NAMESPACE + "getSales");
+        }
+
+        // 分页查询在每个分片上取前(起始行 + 页大小)条，合并排序后再截取当前页
+        Page<?> page = PageHelper.getLocalPage();
+        boolean paged = page != null && args[1] instanceof Map && ((Map<?, ?>) args[1]).containsKey(PAGE_SECOND);
+        if (paged) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> paramMap = (Map<String, Object>) args[1];
+            paramMap.put(PAGE_FIRST, 0L);
+            paramMap.put(PAGE_SECOND, (int) (page.getStartRow() + page.getPageSize()));
+        }
+
+        List<Object> results = new ArrayList<>();
+        for (int shard : shards) {
+            results.add(shard == 0 ? invocation.proceed() : execute(shard, invocation));
+        }
+
+        if ("update".equals(invocation.getMethod().getName())) {
+            int rows = 0;
+            for (Object result : results) {
+                rows += (Integer) result;
+            }
+            return rows;
+        }
+
+        List<Object> merged = new ArrayList<>();
+        for (Object result : results) {
+            merged.addAll((List<?>) result);
+        }
+        if (statementId.equals("OrderMapper.getSalesTop10")) {
+            return mergeSales(merged, TOP_SIZE);
+        }
+        if (statementId.equals("OrderMapper.getSales")) {
+            return mergeSales(merged, Integer.MAX_VALUE);
+        }
+        if (statementId.equals("OrderMapper.getBusinessStatistics")) {
+            return mergeBusinessStatistics(merged);
+        }
+        if (statementId.equals("OrderMapper.getOrderOverView")) {
+            return mergeOrderOverView(merged);
+        }
+        if (ms.getId().endsWith("_COUNT") || isScalar(ms.getId())) {
+            return sum(merged);
+        }
+        // 每个分片各返回最多limit条，合并后按limit截取
+        Integer limit = limit(ms, args[1]);
+        if (!merged.isEmpty() && merged.get(0) instanceof Orders) {
+            Integer seekLimit = (Integer) property(ms, args[1], "seekLimit");
+            return mergeOrders(merged, seekLimit != null ? seekLimit : limit, paged ? page : null);
+        }
+        if (statementId.equals("OrderEventMapper.getDoneByUserSince")) {
+            return mergeEvents(merged, limit);
+        }
+        return limit == null || merged.size() <= limit ? merged : new ArrayList<>(merged.subList(0, limit));
+    }
+
+    /**
+     * 各分片的订单事件按分发时间、事件id合并，再按条数截取
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> mergeEvents(List<Object> merged, Integer limit) {
+        ((List<OrderEvent>) (List<?>) merged).sort(DISPATCH_TIME_ASC);
+        return limit == null || merged.size() <= limit ? merged : new ArrayList<>(merged.subList(0, limit));
+    }
+
+    /**
+     * 订单按下单时间、id倒序合并，再按分页、游标或limit的条数截取
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> mergeOrders(List<Object> merged, Integer limit, Page<?> page) {
+        ((List<Orders>) (List<?>) merged).sort(ORDER_TIME_DESC);
+        int from = 0;
+        int to = merged.size();
+        if (page != null) {
+            from = (int) Math.min(page.getStartRow(), to);
+            to = Math.min(from + page.getPageSize(), to);
+        } else if (limit != null) {
+            to = Math.min(limit, to);
+        }
+        return new ArrayList<>(merged.subList(from, to));
+    }
+
+    /**
+     * 各分片全部商品的销量按商品名称合并，按销量倒序取前limit名
+     */
+    private List<GoodsSalesDTO> mergeSales(List<Object> merged, int limit) {
+        Map<String, Integer> sales = new LinkedHashMap<>();
+        for (Object item : merged) {
+            GoodsSalesDTO dto = (GoodsSalesDTO) item;
+            sales.merge(dto.getName(), dto.getNumber(), Integer::sum);
+        }
+        List<GoodsSalesDTO> list = new ArrayList<>();
+        sales.forEach((name, number) -> list.add(new GoodsSalesDTO(name, number)));
+        list.sort(Comparator.comparing(GoodsSalesDTO::getNumber).reversed());
+        return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+    }
+
+    /**
+     * 各分片的营业数据求和
+     */
+    private List<DailyBusinessDTO> mergeBusinessStatistics(List<Object> merged) {
+        DailyBusinessDTO total = DailyBusinessDTO.builder()
+                .orderCount(0).validOrderCount(0).turnover(0.0).build();
+        for (Object item : merged) {
+            DailyBusinessDTO dto = (DailyBusinessDTO) item;
+            total.setOrderCount(total.getOrderCount() + dto.getOrderCount());
+            total.setValidOrderCount(total.getValidOrderCount() + dto.getValidOrderCount());
+            total.setTurnover(total.getTurnover() + dto.getTurnover());
+        }
+        return new ArrayList<>(Collections.singletonList(total));
+    }
+
+    /**
+     * 各分片的各状态订单数求和
+     */
+    private List<OrderOverViewVO> mergeOrderOverView(List<Object> merged) {
+        OrderOverViewVO total = new OrderOverViewVO(0, 0, 0, 0, 0);
+        for (Object item : merged) {
+            OrderOverViewVO vo = (OrderOverViewVO) item;
+            total.setWaitingOrders(total.getWaitingOrders() + vo.getWaitingOrders());
+            total.setDeliveredOrders(total.getDeliveredOrders() + vo.getDeliveredOrders());
+            total.setCompletedOrders(total.getCompletedOrders() + vo.getCompletedOrders());
+            total.setCancelledOrders(total.getCancelledOrders() + vo.getCancelledOrders());
+            total.setAllOrders(total.getAllOrders() + vo.getAllOrders());
+        }
+        return new ArrayList<>(Collections.singletonList(total));
+    }
+
+    /**
+     * 读取参数对象（实体或Map）的属性，不存在时返回null
+     */
+    private static Object property(MappedStatement ms, Object parameter, String name) {
+        if (parameter == null) {
+            return null;
+        }
+        MetaObject metaObject = ms.getConfiguration().newMetaObject(parameter);
+        return metaObject.hasGetter(name) ? metaObject.getValue(name) : null;
+    }
+
+    /**
+     * 读取Mapper方法的limit参数，没有时返回null
+     * 方法只有一个参数时MyBatis直接传入参数值，需要按方法的参数名判断
+     */
+    private Integer limit(MappedStatement ms, Object parameter) {
+        if (parameter instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) parameter;
+            return map.containsKey(LIMIT) ? (Integer) map.get(LIMIT) : null;
+        }
+        if (parameter instanceof Integer && limitOnly.computeIfAbsent(ms.getId(), id -> {
+            Method method = mapperMethod(id);
+            return method != null && method.getParameterCount() == 1
+                    && LIMIT.equals(method.getParameters()[0].getName());
+        })) {
+            return (Integer) parameter;
+        }
+        return null;
+    }
+
+    /**
+     * Mapper方法是否返回单个数值（如count、sum），这类结果需要求和而不是拼接
+     */
+    private boolean isScalar(String statementId) {
+        return scalars.computeIfAbsent(statementId, id -> {
+            Method method = mapperMethod(id);
+            return method != null && Number.class.isAssignableFrom(method.getReturnType());
+        });
+    }
+
+    /**
+     * 语句对应的Mapper方法，不存在时返回null
+     */
+    private static Method mapperMethod(String statementId) {
+        int index = statementId.lastIndexOf('.');
+        try {
+            for (Method method : Class.forName(statementId.substring(0, index)).getMethods()) {
+                if (method.getName().equals(statementId.substring(index + 1))) {
+                    return method;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            log.debug("Mapper接口{}不存在", statementId.substring(0, index));
+        }
+        return null;
+    }
+
+    /**
+     * 数值结果求和，保持原来的类型；各分片都没有结果时返回空列表
+     */
+    private static List<Object> sum(List<Object> merged) {
+        Number first = null;
+        BigDecimal total = BigDecimal.ZERO;
+        for (Object item : merged) {
+            if (item != null) {
+                first = first == null ? (Number) item : first;
+                total = total.add(new BigDecimal(item.toString()));
+            }
+        }
+        if (first == null) {
+            return new ArrayList<>();
+        }
+        Object value;
+        if (first instanceof Integer) {
+            value = total.intValue();
+        } else if (first instanceof Long) {
+            value = total.longValue();
+        } else if (first instanceof Double) {
+            value = total.doubleValue();
+        } else {
+            value = total;
+        }
+        return new ArrayList<>(Collections.singletonList(value));
+    }
+
+    /**
+     * 改为执行同一Mapper中参数相同的另一条语句，已生成的SQL和缓存key一并替换
+     */
+    private static void replaceStatement(Invocation invocation, String statementId) {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = ((MappedStatement) args[0]).getConfiguration().getMappedStatement(statementId);
+        args[0] = ms;
+        if (args.length == 6) {
+            BoundSql boundSql = ms.getBoundSql(args[1]);
+            args[4] = ((Executor) invocation.getTarget()).createCacheKey(ms, args[1], (RowBounds) args[2], boundSql);
+            args[5] = boundSql;
+        }
+    }
+
+    /**
+     * 在1号及之后的分片上执行语句
+     */
+    private Object execute(int shard, Invocation invocation) throws SQLException {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        DataSource dataSource = orderShardRouter.getDataSource(shard);
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        Connection connection = inTransaction ? transactionalConnection(dataSource) : dataSource.getConnection();
+        Executor executor = new SimpleExecutor(ms.getConfiguration(), new ManagedTransaction(connection, false));
+        try {
+            if ("update".equals(invocation.getMethod().getName())) {
+                return executor.update(ms, args[1]);
+            }
+            if (args.length == 6) {
+                return executor.query(ms, args[1], (RowBounds) args[2], (ResultHandler<?>) args[3],
+                        (CacheKey) args[4], (BoundSql) args[5]);
+            }
+            return executor.query(ms, args[1], (RowBounds) args[2], (ResultHandler<?>) args[3]);
+        } finally {
+            executor.close(false);
+            if (!inTransaction) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 当前事务修改订单数据时检查分片：同一事务只能修改一个分片，其他分片上只能查询
+     * 订单、明细和订单事件在同一分片，这些修改随该分片同时提交或回滚；主库上的其他数据（如购物车）在分片之后提交
+     */
+    private void checkWrite(List<Integer> shards) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Integer written = (Integer) TransactionSynchronizationManager.getResource(WRITTEN_SHARD);
+        for (int shard : shards) {
+            if (written == null) {
+                written = shard;
+                TransactionSynchronizationManager.bindResource(WRITTEN_SHARD, shard);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(WRITTEN_SHARD);
+                    }
+                });
+            } else if (written != shard) {
+                throw new IllegalStateException("同一事务中不能修改多个分片的订单数据：" + written + "号、" + shard + "号分片");
+            }
+        }
+    }
+
+    /**
+     * 当前事务在该分片上的连接，事务提交前一并提交，否则回滚
+     * 各分片依次提交，checkWrite保证只有一个分片有修改，提交顺序不影响订单数据的一致性
+     */
+    private Connection transactionalConnection(DataSource dataSource) throws SQLException {
+        ShardConnection shardConnection = (ShardConnection) TransactionSynchronizationManager.getResource(dataSource);
+        if (shardConnection != null) {
+            return shardConnection.connection;
+        }
+        Connection connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        ShardConnection holder = new ShardConnection(connection);
+        TransactionSynchronizationManager.bindResource(dataSource, holder);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                try {
+                    connection.commit();
+                    holder.committed = true;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("订单分片提交失败", e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(dataSource);
+                try {
+                    if (!holder.committed) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(true);
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("订单分片连接释放失败：{}", e.getMessage());
+                }
+            }
+        });
+        return connection;
+    }
+
+    private static class ShardConnection {
+        private final Connection connection;
+        private boolean committed;
+
+        ShardConnection(Connection connection) {
+            this.connection = connection;
+        }
+    }
+}
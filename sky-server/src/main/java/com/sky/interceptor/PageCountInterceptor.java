@@ -0,0 +1,202 @@
+package com.sky.interceptor;
+
+import com.sky.datasource.OrderShardRouter;
+import com.sky.properties.PageCountProperties;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * MyBatis插件：按配置的策略获取PageHelper分页查询的总数，避免每次翻页都执行COUNT
+ * 分页插件最后注册、位于最外层，其生成的“原语句id_COUNT”语句会经过本插件
+ * 缓存在各实例内存中，只有本实例的增删改会使其失效，其它实例修改后最长在ttl内返回旧的总数
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Slf4j
+public class PageCountInterceptor implements Interceptor {
+
+    private static final String COUNT_SUFFIX = "_COUNT";
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\bfrom\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+    private static final String TABLE_ROWS_SQL =
+            "select table_rows from information_schema.tables where table_schema = database() and table_name = ?";
+    // 分库时分布在各分片上的表，主数据源的统计信息只包含0号分片的行数
+    private static final Set<String> SHARDED_TABLES = new HashSet<>(Arrays.asList(
+            "orders", "orders_archive", "order_detail", "order_detail_archive", "order_event"));
+
+    @Autowired
+    private PageCountProperties pageCountProperties;
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    // Mapper命名空间 -> (COUNT语句|SQL|参数 -> 总数)，该Mapper执行增删改时整体失效
+    private final Map<String, Map<String, CachedCount>> counts = new ConcurrentHashMap<>();
+    // 表名 -> 估算行数
+    private final Map<String, CachedCount> estimates = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        if ("update".equals(invocation.getMethod().getName())) {
+            try {
+                return invocation.proceed();
+            } finally {
+                invalidate(namespace(ms.getId()));
+            }
+        }
+
+        String id = ms.getId();
+        if (!id.endsWith(COUNT_SUFFIX)) {
+            return invocation.proceed();
+        }
+        String statementId = SqlMetricsInterceptor.shortId(id.substring(0, id.length() - COUNT_SUFFIX.length()));
+        PageCountProperties.Strategy strategy = pageCountProperties.getStrategies().get(statementId);
+        if (strategy == null || strategy == PageCountProperties.Strategy.EXACT) {
+            return invocation.proceed();
+        }
+
+        Object parameter = args[1];
+        BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+        long now = System.currentTimeMillis();
+
+        // 没有任何查询条件时，大表直接返回估算行数
+        if (strategy == PageCountProperties.Strategy.ESTIMATE && boundSql.getParameterMappings().isEmpty()) {
+            Long estimate = estimate((Executor) invocation.getTarget(), boundSql.getSql(), now);
+            if (estimate != null) {
+                return Collections.singletonList(estimate);
+            }
+        }
+
+        Map<String, CachedCount> namespaceCounts = counts.computeIfAbsent(namespace(id), key -> new ConcurrentHashMap<>());
+        String key = id + '|' + boundSql.getSql() + '|'
+                + SqlMetricsInterceptor.parameterValues(ms.getConfiguration(), boundSql, parameter);
+        CachedCount cached = namespaceCounts.get(key);
+        if (cached != null && cached.expireAt > now) {
+            return Collections.singletonList(cached.count);
+        }
+
+        Object result = invocation.proceed();
+        if (result instanceof List && !((List<?>) result).isEmpty() && ((List<?>) result).get(0) instanceof Number) {
+            if (namespaceCounts.size() >= pageCountProperties.getCapacity()) {
+                namespaceCounts.clear();
+            }
+            long count = ((Number) ((List<?>) result).get(0)).longValue();
+            namespaceCounts.put(key, new CachedCount(count, now + pageCountProperties.getTtl()));
+        }
+        return result;
+    }
+
+    /**
+     * 取COUNT语句主表的估算行数，小于阈值或无法估算时返回null，由调用方改为精确查询
+     * 只适用于单表查询
+     */
+    private Long estimate(Executor executor, String countSql, long now) {
+        Matcher matcher = TABLE_PATTERN.matcher(countSql);
+        if (!matcher.find()) {
+            return null;
+        }
+        String table = matcher.group(1).toLowerCase();
+        if (orderShardRouter.getShardCount() > 1 && SHARDED_TABLES.contains(table)) {
+            return null;
+        }
+        CachedCount cached = estimates.get(table);
+        if (cached == null || cached.expireAt <= now) {
+            cached = new CachedCount(tableRows(executor, table), now + pageCountProperties.getTtl());
+            estimates.put(table, cached);
+        }
+        return cached.count >= pageCountProperties.getEstimateMinRows() ? cached.count : null;
+    }
+
+    /**
+     * 读取InnoDB统计信息中的表行数，无法获取时返回-1
+     */
+    private long tableRows(Executor executor, String table) {
+        try {
+            // 使用当前会话的连接，不关闭
+            Connection connection = executor.getTransaction().getConnection();
+            try (PreparedStatement ps = connection.prepareStatement(TABLE_ROWS_SQL)) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getLong(1);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.debug("获取表{}的估算行数失败：{}", table, e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * 使Mapper的缓存总数失效：立即失效一次，本事务内的查询不会取到修改前的总数；
+     * 事务提交后再失效一次，清除事务未提交期间其它查询按旧数据缓存的总数
+     */
+    private void invalidate(String namespace) {
+        counts.remove(namespace);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Set<String> namespaces = (Set<String>) TransactionSynchronizationManager.getResource(counts);
+        if (namespaces == null) {
+            Set<String> written = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(counts, written);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    written.forEach(counts::remove);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(counts);
+                }
+            });
+            namespaces = written;
+        }
+        namespaces.add(namespace);
+    }
+
+    private static String namespace(String id) {
+        return id.substring(0, id.lastIndexOf('.'));
+    }
+
+    @AllArgsConstructor
+    private static class CachedCount {
+        private final long count;
+        private final long expireAt;
+    }
+}
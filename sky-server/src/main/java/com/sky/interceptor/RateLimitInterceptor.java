@@ -0,0 +1,65 @@
+package com.sky.interceptor;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.annotation.RateLimit;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.properties.RateLimitProperties;
+import com.sky.ratelimit.RateLimiter;
+import com.sky.result.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 接口限流的拦截器，注册在令牌校验之后，按当前用户限制带@RateLimit注解的方法，超出时响应429
+ */
+@Component
+@Slf4j
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!rateLimitProperties.isEnabled() || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        RateLimit rateLimit = ((HandlerMethod) handler).getMethodAnnotation(RateLimit.class);
+        if (rateLimit == null) {
+            return true;
+        }
+
+        double permitsPerSecond = rateLimit.permitsPerSecond();
+        int burst = rateLimit.burst();
+        RateLimitProperties.Limit limit = rateLimitProperties.getLimits().get(rateLimit.value());
+        if (limit != null && limit.getPermitsPerSecond() > 0) {
+            permitsPerSecond = limit.getPermitsPerSecond();
+            burst = limit.getBurst();
+        }
+        Long currentId = BaseContext.getCurrentId();
+        String key = currentId != null ? currentId.toString() : request.getRemoteAddr();
+
+        long wait = rateLimiter.acquire(rateLimit.value(), key, permitsPerSecond, burst);
+        if (wait == 0) {
+            return true;
+        }
+        log.info("{}调用{}过于频繁，{}ms后可重试", key, rateLimit.value(), wait / 1000);
+        response.setStatus(TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", String.valueOf((wait + 999_999) / 1_000_000));
+        response.setContentType("application/json;charset=UTF-8");
+        response.getOutputStream().write(JSON.toJSONString(Result.error(MessageConstant.TOO_MANY_REQUESTS))
+                .getBytes(StandardCharsets.UTF_8));
+        return false;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sky.interceptor;
+
+import com.sky.datasource.ReplicaRouting;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * MyBatis插件：insert、update、delete语句执行成功后记录当前用户的写入时间，之后一段时间内的查询走主库（读自己的写）
+ * 所有非查询语句都经过Executor.update，不依赖Mapper方法的命名（如transition、claim）
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class ReplicaWriteInterceptor implements Interceptor {
+
+    @Autowired
+    private ReplicaRouting replicaRouting;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        replicaRouting.markWrite();
+        return result;
+    }
+}
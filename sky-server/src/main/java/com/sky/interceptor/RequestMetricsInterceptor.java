@@ -0,0 +1,83 @@
+package com.sky.interceptor;
+
+import com.sky.metrics.RequestMetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 接口请求统计的拦截器：记录每个Controller方法的耗时、并发数、错误数和执行的SQL条数
+ * 需要注册在jwt拦截器之前，令牌校验失败（401）也会被统计
+ * 错误数包括4xx/5xx响应、未处理的异常，以及以200响应返回的业务失败（Result.code不为1，由ResultMetricsAdvice标记）
+ */
+@Component
+@Slf4j
+public class RequestMetricsInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".start";
+    private static final String STATS_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".stats";
+    private static final String ERROR_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".error";
+
+    @Autowired
+    private RequestMetricsRegistry requestMetricsRegistry;
+
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 异步请求的二次分发已经在首次分发时统计过
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : request.getRequestURI();
+        RequestMetricsRegistry.EndpointStats stats =
+                requestMetricsRegistry.endpoint(group((HandlerMethod) handler), request.getMethod(), uri);
+        stats.begin();
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        request.setAttribute(STATS_ATTRIBUTE, stats);
+        RequestMetricsRegistry.beginStatementCount();
+        return true;
+    }
+
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        finish(request, response.getStatus() >= 400 || ex != null || request.getAttribute(ERROR_ATTRIBUTE) != null);
+    }
+
+    /**
+     * 标记当前请求失败，用于响应码为200的业务失败
+     * @param request
+     */
+    public static void markError(HttpServletRequest request) {
+        request.setAttribute(ERROR_ATTRIBUTE, Boolean.TRUE);
+    }
+
+    /**
+     * 异步请求（如SSE）在Controller方法返回时结束统计，长连接的持续时间不计入接口耗时
+     */
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        finish(request, false);
+    }
+
+    private void finish(HttpServletRequest request, boolean error) {
+        Object stats = request.getAttribute(STATS_ATTRIBUTE);
+        if (stats == null) {
+            return;
+        }
+        request.removeAttribute(STATS_ATTRIBUTE);
+        long micros = (System.nanoTime() - (Long) request.getAttribute(START_ATTRIBUTE)) / 1000;
+        ((RequestMetricsRegistry.EndpointStats) stats).end(micros, RequestMetricsRegistry.endStatementCount(), error);
+    }
+
+    /**
+     * 按Controller所在的包区分管理端、用户端等接口分组
+     */
+    private static String group(HandlerMethod handlerMethod) {
+        String packageName = handlerMethod.getBeanType().getPackage().getName();
+        return packageName.substring(packageName.lastIndexOf('.') + 1);
+    }
+}
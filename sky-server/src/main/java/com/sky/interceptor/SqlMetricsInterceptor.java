@@ -0,0 +1,186 @@
+package com.sky.interceptor;
+
+import com.sky.metrics.RequestMetricsRegistry;
+import com.sky.metrics.SqlMetricsRegistry;
+import com.sky.properties.MetricsProperties;
+import com.sky.vo.SlowSqlVO;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.scripting.defaults.DefaultParameterHandler;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MyBatis插件：统计每条Mapper语句的耗时和行数，捕获慢SQL及其绑定参数，并对慢查询采样执行EXPLAIN
+ * 分页插件的COUNT语句会以“原语句id_COUNT”单独统计
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+@Slf4j
+public class SqlMetricsInterceptor implements Interceptor {
+
+    @Autowired
+    private SqlMetricsRegistry sqlMetricsRegistry;
+    @Autowired
+    private MetricsProperties metricsProperties;
+    @Autowired
+    private DataSource dataSource;
+
+    // EXPLAIN在独立线程中用独立连接执行，队列满时直接丢弃，不影响业务请求
+    private final ThreadPoolExecutor explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), runnable -> {
+        Thread thread = new Thread(runnable, "sql-explain");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        String statementId = shortId(ms.getId());
+
+        long start = System.nanoTime();
+        Object result = null;
+        boolean success = false;
+        try {
+            result = invocation.proceed();
+            success = true;
+            return result;
+        } finally {
+            long micros = (System.nanoTime() - start) / 1000;
+            long rows = rows(result);
+            sqlMetricsRegistry.record(statementId, micros, rows, success);
+            RequestMetricsRegistry.countStatement();
+            if (micros >= metricsProperties.getSqlSlowThreshold() * 1000) {
+                captureSlow(ms, statementId, args, micros, rows);
+            }
+        }
+    }
+
+    /**
+     * 记录慢SQL，查询语句按比例采样执行计划
+     */
+    private void captureSlow(MappedStatement ms, String statementId, Object[] args, long micros, long rows) {
+        try {
+            Object parameter = args[1];
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : ms.getBoundSql(parameter);
+            SlowSqlVO slowSqlVO = SlowSqlVO.builder()
+                    .statementId(statementId)
+                    .sql(boundSql.getSql().replaceAll("\\s+", " ").trim())
+                    .parameters(parameterValues(ms.getConfiguration(), boundSql, parameter))
+                    .elapsedMillis(micros / 1000.0)
+                    .rows(rows)
+                    .executeTime(LocalDateTime.now())
+                    .build();
+            sqlMetricsRegistry.recordSlow(slowSqlVO);
+            log.warn("慢SQL {} 耗时{}ms：{} 参数：{}", statementId, slowSqlVO.getElapsedMillis(),
+                    slowSqlVO.getSql(), slowSqlVO.getParameters());
+
+            if (ms.getSqlCommandType() == SqlCommandType.SELECT
+                    && ThreadLocalRandom.current().nextDouble() < metricsProperties.getSqlExplainSampleRate()) {
+                explainExecutor.execute(() -> slowSqlVO.setExplain(explain(ms, boundSql, parameter)));
+            }
+        } catch (Exception e) {
+            log.debug("慢SQL捕获失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 使用独立连接执行EXPLAIN，参数绑定方式与MyBatis一致
+     */
+    private List<Map<String, Object>> explain(MappedStatement ms, BoundSql boundSql, Object parameter) {
+        List<Map<String, Object>> plan = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN " + boundSql.getSql())) {
+            new DefaultParameterHandler(ms, parameter, boundSql).setParameters(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        row.put(metaData.getColumnLabel(i), rs.getObject(i));
+                    }
+                    plan.add(row);
+                }
+            }
+        } catch (Exception e) {
+            log.debug("EXPLAIN执行失败：{}", e.getMessage());
+        }
+        return plan;
+    }
+
+    /**
+     * 按MyBatis的取值规则解析绑定参数
+     */
+    static List<String> parameterValues(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<String> values = new ArrayList<>();
+        MetaObject metaObject = parameter == null ? null : configuration.newMetaObject(parameter);
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                value = metaObject.getValue(property);
+            }
+            values.add(String.valueOf(value));
+        }
+        return values;
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        return 0;
+    }
+
+    /**
+     * com.sky.mapper.OrderMapper.countByMap -> OrderMapper.countByMap
+     */
+    static String shortId(String id) {
+        int last = id.lastIndexOf('.');
+        int previous = last > 0 ? id.lastIndexOf('.', last - 1) : -1;
+        return id.substring(previous + 1);
+    }
+}
@@ -5,6 +5,7 @@ import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
+import com.sky.vo.DishOverViewVO;
 import com.sky.vo.DishVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
@@ -88,4 +89,27 @@ public interface DishMapper {
      * @return
      */
     Integer countByMap(HashMap<Object, Object> map);
+
+    /**
+     * 统计已启售和已停售的菜品数量
+     * @return
+     */
+    @Select("select coalesce(sum(case when status = 1 then 1 else 0 end), 0) sold, " +
+            "coalesce(sum(case when status = 0 then 1 else 0 end), 0) discontinued from dish")
+    DishOverViewVO getOverView();
+
+    /**
+     * 查询所有菜品的id和名称，用于构建搜索索引
+     * @return
+     */
+    @Select("select id, name from dish")
+    List<Dish> listIdAndName();
+
+    /**
+     * 根据id集合查询菜品
+     * @param ids
+     * @param status 为null时不限制状态
+     * @return
+     */
+    List<Dish> getByIds(List<Long> ids, Integer status);
 }
@@ -22,4 +22,24 @@ public interface OrderDetailMapper {
      */
     @Select("select * from order_detail where order_id = #{orderId}")
     List<OrderDetail> getByOrderId(Long orderId);
+
+    /**
+     * 根据订单id从归档表查询明细
+     * @param orderId
+     * @return
+     */
+    @Select("select * from order_detail_archive where order_id = #{orderId}")
+    List<OrderDetail> getArchiveByOrderId(Long orderId);
+
+    /**
+     * 将订单的明细复制到归档表
+     * @param orderIds
+     */
+    void insertArchiveByOrderIds(List<Long> orderIds);
+
+    /**
+     * 根据订单id批量删除明细
+     * @param orderIds
+     */
+    void deleteByOrderIds(List<Long> orderIds);
 }
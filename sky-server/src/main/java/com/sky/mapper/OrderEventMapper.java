@@ -0,0 +1,116 @@
+package com.sky.mapper;
+
+import com.sky.entity.OrderEvent;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface OrderEventMapper {
+
+    /**
+     * 写入订单事件
+     * @param orderEvent
+     */
+    @Insert("insert into order_event (event_type, order_id, user_id, order_number, order_status, status, attempts, next_retry_time, create_time)" +
+            " values (#{eventType}, #{orderId}, #{userId}, #{orderNumber}, #{orderStatus}, #{status}, #{attempts}, #{nextRetryTime}, #{createTime})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insert(OrderEvent orderEvent);
+
+    /**
+     * 查询已到分发时间的待分发事件id，按写入顺序
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select id from order_event where status = 0 and next_retry_time <= #{now} order by id limit #{limit}")
+    List<Long> getDueIds(LocalDateTime now, int limit);
+
+    /**
+     * 领取一批到期的待分发事件：写入领取标记和分发时间，处理次数加1，下次分发时间推迟到租约结束
+     * 其他线程或实例已领取的事件不会被重复领取
+     * @param ids
+     * @param token
+     * @param now
+     * @param leaseUntil
+     * @return 领取成功的条数
+     */
+    @Update("<script>update order_event set claim_token = #{token}, attempts = attempts + 1, next_retry_time = #{leaseUntil}," +
+            " dispatch_time = #{now}" +
+            " where status = 0 and next_retry_time &lt;= #{now} and id in" +
+            " <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int claim(List<Long> ids, String token, LocalDateTime now, LocalDateTime leaseUntil);
+
+    /**
+     * 根据领取标记查询事件
+     * @param token
+     * @return
+     */
+    @Select("select * from order_event where claim_token = #{token} order by id")
+    List<OrderEvent> getByClaimToken(String token);
+
+    /**
+     * 保存分发前补全的订单id、用户id和订单号
+     * @param orderEvent
+     */
+    @Update("update order_event set order_id = #{orderId}, user_id = #{userId}, order_number = #{orderNumber} where id = #{id}")
+    void updateOrder(OrderEvent orderEvent);
+
+    /**
+     * 查询用户在指定事件之后已分发的订单事件，用于断线重连后补发；只用于没有分发时间的历史事件
+     * @param userId
+     * @param afterId
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_event where user_id = #{userId} and id > #{afterId} and status = 1 order by id limit #{limit}")
+    List<OrderEvent> getDoneByUserAfter(Long userId, Long afterId, int limit);
+
+    /**
+     * 查询用户在指定时间之后分发的订单事件，按分发顺序，用于断线重连后补发
+     * @param userId
+     * @param since
+     * @param limit
+     * @return
+     */
+    @Select("select * from order_event where user_id = #{userId} and dispatch_time >= #{since} and status = 1" +
+            " order by dispatch_time, id limit #{limit}")
+    List<OrderEvent> getDoneByUserSince(Long userId, LocalDateTime since, int limit);
+
+    /**
+     * 查询事件的分发时间
+     * @param id
+     * @return 事件不存在或没有分发时间时返回null
+     */
+    @Select("select dispatch_time from order_event where id = #{id}")
+    LocalDateTime getDispatchTime(Long id);
+
+    /**
+     * 批量标记为已分发
+     * @param ids
+     */
+    @Update("<script>update order_event set status = 1 where id in" +
+            " <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    void markDone(List<Long> ids);
+
+    /**
+     * 更新分发失败的事件：安排下次分发或标记为重试次数用尽，同时记录已成功处理的处理器
+     * @param orderEvent
+     */
+    @Update("update order_event set status = #{status}, next_retry_time = #{nextRetryTime}, handled = #{handled} where id = #{id}")
+    void updateRetry(OrderEvent orderEvent);
+
+    /**
+     * 删除创建时间早于指定时间的已分发事件
+     * @param createTime
+     * @return
+     */
+    @Delete("delete from order_event where status = 1 and create_time < #{createTime}")
+    int deleteDoneBefore(LocalDateTime createTime);
+}
@@ -1,12 +1,14 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
 import com.sky.entity.Orders;
+import com.sky.vo.OrderOverViewVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
-import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -34,6 +36,15 @@ public interface OrderMapper {
      */
     void update(Orders orders);
 
+    /**
+     * 订单状态变更：仅当订单当前状态在fromStatus中时更新，一次完成检查和修改
+     * @param orders 目标状态及需要修改的字段，按id定位，id为空时按订单号定位；包含用户id时只更新该用户的订单
+     * @param fromStatus 允许的原状态
+     * @param refundFrom 从该状态变更时支付状态改为退款，为null表示不修改
+     * @return 更新的行数，0表示订单不存在或状态不允许
+     */
+    int transition(Orders orders, List<Integer> fromStatus, Integer refundFrom);
+
     /**
      * 历史订单分页查询
      * @param ordersPageQueryDTO
@@ -41,6 +52,13 @@ public interface OrderMapper {
      */
     Page<Orders> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 归档订单分页查询，条件与pageQuery相同
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    Page<Orders> pageArchiveQuery(OrdersPageQueryDTO ordersPageQueryDTO);
+
     /**
      * 根据id查询订单
      * @param id
@@ -50,13 +68,12 @@ public interface OrderMapper {
     Orders getById(Long id);
 
     /**
-     * 用于替换微信支付更新数据库状态的问题
-     * @param orderStatus
-     * @param orderPaidStatus
+     * 根据id查询归档订单
+     * @param id
+     * @return
      */
-    @Update("update orders set status = #{orderStatus},pay_status = #{orderPaidStatus} ,checkout_time = #{check_out_time} " +
-            "where number = #{orderNumber}")
-    void updateStatus(Integer orderStatus, Integer orderPaidStatus, LocalDateTime check_out_time, String orderNumber);
+    @Select("select * from orders_archive where id = #{id}")
+    Orders getArchiveById(Long id);
 
     /**
      * 根据状态统计订单数量
@@ -66,6 +83,14 @@ public interface OrderMapper {
     @Select("select count(id) from orders where status = #{status}")
     Integer countStatus(Integer status);
 
+    /**
+     * 查询进行中（待接单、已接单、派送中）的订单，按下单时间倒序
+     * @param limit
+     * @return
+     */
+    @Select("select * from orders where status in (2, 3, 4) order by order_time desc, id desc limit #{limit}")
+    List<Orders> getActive(int limit);
+
     /**
      * 根据订单状态和下单时间查询订单
      * @param status
@@ -93,7 +118,71 @@ public interface OrderMapper {
      * 统计指定时间区间内的销量排名
      * @param begin
      * @param end
+     * @param archive 是否合并归档表
+     * @return
+     */
+    List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end, boolean archive);
+
+    /**
+     * 统计指定时间区间内各商品的销量，不截取排名；分库时各分片的结果合并后再取前10名
+     * @param begin
+     * @param end
+     * @param archive 是否合并归档表
+     * @return
+     */
+    List<GoodsSalesDTO> getSales(LocalDateTime begin, LocalDateTime end, boolean archive);
+
+    /**
+     * 查询指定时间区间内已完成订单的明细（订单id、商品名称和数量）
+     * @param begin
+     * @param end
+     * @param archive 是否合并归档表
+     * @return
+     */
+    List<OrderDetail> getCompletedDetails(LocalDateTime begin, LocalDateTime end, boolean archive);
+
+    /**
+     * 按天分组统计订单总数、有效订单数和营业额
+     * @param begin
+     * @param end
+     * @param archive 是否合并归档表
+     * @return
+     */
+    List<DailyBusinessDTO> getDailyStatistics(LocalDateTime begin, LocalDateTime end, boolean archive);
+
+    /**
+     * 统计时间段内的订单总数、有效订单数和营业额
+     * @param begin
+     * @param end
+     * @param archive 是否合并归档表
      * @return
      */
-    List<GoodsSalesDTO> getSalesTop10(LocalDateTime begin, LocalDateTime end);
+    DailyBusinessDTO getBusinessStatistics(LocalDateTime begin, LocalDateTime end, boolean archive);
+
+    /**
+     * 统计指定时间之后各状态的订单数
+     * @param begin
+     * @return
+     */
+    OrderOverViewVO getOrderOverView(LocalDateTime begin);
+
+    /**
+     * 查询可以归档的订单id：已完成或已取消，且下单时间早于指定时间
+     * @param orderTime
+     * @param limit
+     * @return
+     */
+    List<Long> getColdOrderIds(LocalDateTime orderTime, int limit);
+
+    /**
+     * 将订单复制到归档表
+     * @param ids
+     */
+    void insertArchive(List<Long> ids);
+
+    /**
+     * 根据id批量删除订单
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
 }
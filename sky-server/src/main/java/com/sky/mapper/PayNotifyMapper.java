@@ -0,0 +1,60 @@
+package com.sky.mapper;
+
+import com.sky.entity.PayNotify;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface PayNotifyMapper {
+
+    /**
+     * 保存支付回调，交易号重复时抛出DuplicateKeyException
+     * @param payNotify
+     */
+    @Insert("insert into pay_notify (transaction_id, out_trade_no, status, attempts, next_retry_time, create_time, update_time)" +
+            " values (#{transactionId}, #{outTradeNo}, #{status}, #{attempts}, #{nextRetryTime}, #{createTime}, #{updateTime})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    void insert(PayNotify payNotify);
+
+    /**
+     * 根据id查询支付回调
+     * @param id
+     * @return
+     */
+    @Select("select * from pay_notify where id = #{id}")
+    PayNotify getById(Long id);
+
+    /**
+     * 查询已到处理时间的待处理回调id
+     * @param now
+     * @param limit
+     * @return
+     */
+    @Select("select id from pay_notify where status = 0 and next_retry_time <= #{now} order by next_retry_time limit #{limit}")
+    List<Long> getDueIds(LocalDateTime now, int limit);
+
+    /**
+     * 领取一条到期的待处理回调：处理次数加1，并把下次处理时间推迟到租约结束，多个线程或实例只有一个能领取成功
+     * @param id
+     * @param now
+     * @param leaseUntil
+     * @return 领取成功时为1
+     */
+    @Update("update pay_notify set attempts = attempts + 1, next_retry_time = #{leaseUntil}, update_time = #{now}" +
+            " where id = #{id} and status = 0 and next_retry_time <= #{now}")
+    int claim(Long id, LocalDateTime now, LocalDateTime leaseUntil);
+
+    /**
+     * 更新处理结果
+     * @param payNotify
+     */
+    @Update("update pay_notify set status = #{status}, next_retry_time = #{nextRetryTime}, last_error = #{lastError}," +
+            " update_time = #{updateTime} where id = #{id}")
+    void updateResult(PayNotify payNotify);
+}
@@ -7,6 +7,7 @@ import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishItemVO;
+import com.sky.vo.SetmealOverViewVO;
 import com.sky.vo.SetmealVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
@@ -81,4 +82,27 @@ public interface SetmealMapper {
      * @return
      */
     Integer countByMap(HashMap<Object, Object> map);
+
+    /**
+     * 统计已启售和已停售的套餐数量
+     * @return
+     */
+    @Select("select coalesce(sum(case when status = 1 then 1 else 0 end), 0) sold, " +
+            "coalesce(sum(case when status = 0 then 1 else 0 end), 0) discontinued from setmeal")
+    SetmealOverViewVO getOverView();
+
+    /**
+     * 查询所有套餐的id和名称，用于构建搜索索引
+     * @return
+     */
+    @Select("select id, name from setmeal")
+    List<Setmeal> listIdAndName();
+
+    /**
+     * 根据id集合查询套餐
+     * @param ids
+     * @param status 为null时不限制状态
+     * @return
+     */
+    List<Setmeal> getByIds(List<Long> ids, Integer status);
 }
@@ -1,10 +1,13 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 
 @Mapper
 public interface UserMapper {
@@ -33,4 +36,12 @@ public interface UserMapper {
      * @return
      */
     Integer getByMap(HashMap<Object, Object> map);
+
+    /**
+     * 按天分组统计新增用户数
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessDTO> countByDay(LocalDateTime begin, LocalDateTime end);
 }
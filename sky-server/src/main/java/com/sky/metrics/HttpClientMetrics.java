@@ -0,0 +1,72 @@
+package com.sky.metrics;
+
+import com.sky.utils.HttpClientUtil;
+import com.sky.utils.LatencyHistogram;
+import com.sky.vo.HttpClientStatsVO;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 外部Http请求的连接池状态和耗时统计
+ */
+@Component
+public class HttpClientMetrics {
+
+    @Autowired
+    private HttpClientUtil httpClientUtil;
+
+    /**
+     * 当前的统计数据
+     * @return
+     */
+    public HttpClientStatsVO stats() {
+        PoolStats pool = httpClientUtil.getPoolStats();
+        LatencyHistogram latency = httpClientUtil.getLatency();
+        return HttpClientStatsVO.builder()
+                .leased(pool.getLeased())
+                .available(pool.getAvailable())
+                .pending(pool.getPending())
+                .max(pool.getMax())
+                .asyncQueued(httpClientUtil.getAsyncQueueSize())
+                .count(latency.getCount())
+                .errors(httpClientUtil.getErrors())
+                .rejected(httpClientUtil.getRejected())
+                .meanMillis(latency.getMean() / 1000.0)
+                .p50Millis(latency.getValueAtPercentile(50) / 1000.0)
+                .p99Millis(latency.getValueAtPercentile(99) / 1000.0)
+                .maxMillis(latency.getMax() / 1000.0)
+                .build();
+    }
+
+    /**
+     * 以Prometheus文本格式输出
+     * @param sb
+     */
+    public void writePrometheus(StringBuilder sb) {
+        PoolStats pool = httpClientUtil.getPoolStats();
+        sb.append("# HELP sky_http_client_connections 外部Http连接池的连接数\n");
+        sb.append("# TYPE sky_http_client_connections gauge\n");
+        sb.append("sky_http_client_connections{state=\"leased\"} ").append(pool.getLeased()).append('\n');
+        sb.append("sky_http_client_connections{state=\"available\"} ").append(pool.getAvailable()).append('\n');
+        sb.append("sky_http_client_connections{state=\"pending\"} ").append(pool.getPending()).append('\n');
+        sb.append("sky_http_client_connections{state=\"max\"} ").append(pool.getMax()).append('\n');
+
+        LatencyHistogram latency = httpClientUtil.getLatency();
+        sb.append("# HELP sky_http_client_request_duration_seconds 外部Http请求耗时\n");
+        sb.append("# TYPE sky_http_client_request_duration_seconds summary\n");
+        for (double quantile : new double[]{0.5, 0.99}) {
+            sb.append("sky_http_client_request_duration_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(latency.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+        }
+        sb.append("sky_http_client_request_duration_seconds_sum ").append(latency.getSum() / 1e6).append('\n');
+        sb.append("sky_http_client_request_duration_seconds_count ").append(latency.getCount()).append('\n');
+
+        sb.append("# HELP sky_http_client_errors_total 失败的外部Http请求数\n");
+        sb.append("# TYPE sky_http_client_errors_total counter\n");
+        sb.append("sky_http_client_errors_total ").append(httpClientUtil.getErrors()).append('\n');
+        sb.append("# HELP sky_http_client_rejected_total 线程池已满被拒绝的异步请求数\n");
+        sb.append("# TYPE sky_http_client_rejected_total counter\n");
+        sb.append("sky_http_client_rejected_total ").append(httpClientUtil.getRejected()).append('\n');
+    }
+}
@@ -0,0 +1,73 @@
+package com.sky.metrics;
+
+import com.sky.entity.OrderEvent;
+import com.sky.event.OrderEventHandler;
+import com.sky.utils.LatencyHistogram;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订单事件计数：作为事件处理器按类型统计分发次数和写入到分发的延迟，另外统计重试和放弃的次数
+ */
+@Component
+public class OrderEventMetrics implements OrderEventHandler {
+
+    // 事件类型 -> 分发次数
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+    // 事件写入到分发的延迟，单位微秒
+    private final LatencyHistogram delay = new LatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Override
+    public void handle(OrderEvent orderEvent) {
+        counts.computeIfAbsent(orderEvent.getEventType(), key -> new LongAdder()).increment();
+        delay.record(Math.max(0, Duration.between(orderEvent.getCreateTime(), LocalDateTime.now()).toNanos() / 1000));
+    }
+
+    /**
+     * 记录一次分发失败后的重试
+     */
+    public void retried() {
+        retries.increment();
+    }
+
+    /**
+     * 记录一次重试次数用尽
+     */
+    public void failed() {
+        failures.increment();
+    }
+
+    /**
+     * 以Prometheus文本格式输出
+     * @param sb
+     */
+    public void writePrometheus(StringBuilder sb) {
+        sb.append("# HELP sky_order_events_total 已分发的订单事件数\n");
+        sb.append("# TYPE sky_order_events_total counter\n");
+        counts.forEach((type, count) -> sb.append("sky_order_events_total{type=\"").append(type).append("\"} ")
+                .append(count.sum()).append('\n'));
+
+        sb.append("# HELP sky_order_event_delay_seconds 订单事件从写入到分发的延迟\n");
+        sb.append("# TYPE sky_order_event_delay_seconds summary\n");
+        for (double quantile : new double[]{0.5, 0.99}) {
+            sb.append("sky_order_event_delay_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(delay.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+        }
+        sb.append("sky_order_event_delay_seconds_sum ").append(delay.getSum() / 1e6).append('\n');
+        sb.append("sky_order_event_delay_seconds_count ").append(delay.getCount()).append('\n');
+
+        sb.append("# HELP sky_order_event_retries_total 分发失败后重试的订单事件数\n");
+        sb.append("# TYPE sky_order_event_retries_total counter\n");
+        sb.append("sky_order_event_retries_total ").append(retries.sum()).append('\n');
+        sb.append("# HELP sky_order_event_failures_total 重试次数用尽的订单事件数\n");
+        sb.append("# TYPE sky_order_event_failures_total counter\n");
+        sb.append("sky_order_event_failures_total ").append(failures.sum()).append('\n');
+    }
+}
@@ -0,0 +1,209 @@
+package com.sky.metrics;
+
+import com.sky.utils.LatencyHistogram;
+import com.sky.vo.RequestStatsVO;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按接口汇总请求耗时、并发数、错误数和每个请求执行的SQL条数
+ */
+@Component
+public class RequestMetricsRegistry {
+
+    // 每个请求执行的SQL条数分桶（Prometheus的le标签）
+    private static final long[] STATEMENT_BUCKETS = {1, 2, 5, 10, 20, 50, 100};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // 当前线程所处理请求的SQL计数，由SqlMetricsInterceptor累加
+    private static final ThreadLocal<int[]> STATEMENT_COUNTER = new ThreadLocal<>();
+
+    // group|method|uri -> 统计数据
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * 开始统计当前线程的SQL条数
+     */
+    public static void beginStatementCount() {
+        STATEMENT_COUNTER.set(new int[1]);
+    }
+
+    /**
+     * 当前线程执行了一条SQL，不在请求中时忽略
+     */
+    public static void countStatement() {
+        int[] counter = STATEMENT_COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+    }
+
+    /**
+     * 结束统计并返回当前线程执行的SQL条数
+     * @return
+     */
+    public static int endStatementCount() {
+        int[] counter = STATEMENT_COUNTER.get();
+        STATEMENT_COUNTER.remove();
+        return counter == null ? 0 : counter[0];
+    }
+
+    /**
+     * 获取接口的统计对象
+     * @param group
+     * @param method
+     * @param uri
+     * @return
+     */
+    public EndpointStats endpoint(String group, String method, String uri) {
+        return endpoints.computeIfAbsent(group + '|' + method + '|' + uri, key -> new EndpointStats(group, method, uri));
+    }
+
+    /**
+     * 所有接口的统计数据，按请求次数倒序
+     * @return
+     */
+    public List<RequestStatsVO> endpoints() {
+        List<RequestStatsVO> list = new ArrayList<>();
+        for (EndpointStats stats : endpoints.values()) {
+            LatencyHistogram latency = stats.latency;
+            list.add(RequestStatsVO.builder()
+                    .group(stats.group)
+                    .method(stats.method)
+                    .uri(stats.uri)
+                    .count(latency.getCount())
+                    .errors(stats.errors.sum())
+                    .inFlight(stats.inFlight.get())
+                    .meanStatements(stats.statements.getMean())
+                    .meanMillis(latency.getMean() / 1000.0)
+                    .p50Millis(latency.getValueAtPercentile(50) / 1000.0)
+                    .p99Millis(latency.getValueAtPercentile(99) / 1000.0)
+                    .p999Millis(latency.getValueAtPercentile(99.9) / 1000.0)
+                    .maxMillis(latency.getMax() / 1000.0)
+                    .build());
+        }
+        list.sort(Comparator.comparing(RequestStatsVO::getCount).reversed());
+        return list;
+    }
+
+    /**
+     * 以Prometheus文本格式输出
+     * @param sb
+     */
+    public void writePrometheus(StringBuilder sb) {
+        sb.append("# HELP sky_http_request_duration_seconds 接口请求耗时\n");
+        sb.append("# TYPE sky_http_request_duration_seconds summary\n");
+        for (EndpointStats stats : endpoints.values()) {
+            String labels = stats.labels();
+            for (double quantile : QUANTILES) {
+                sb.append("sky_http_request_duration_seconds{").append(labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(stats.latency.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+            }
+            sb.append("sky_http_request_duration_seconds_sum{").append(labels).append("} ")
+                    .append(stats.latency.getSum() / 1e6).append('\n');
+            sb.append("sky_http_request_duration_seconds_count{").append(labels).append("} ")
+                    .append(stats.latency.getCount()).append('\n');
+        }
+
+        sb.append("# HELP sky_http_requests_in_flight 正在处理的请求数\n");
+        sb.append("# TYPE sky_http_requests_in_flight gauge\n");
+        for (EndpointStats stats : endpoints.values()) {
+            sb.append("sky_http_requests_in_flight{").append(stats.labels()).append("} ")
+                    .append(stats.inFlight.get()).append('\n');
+        }
+
+        sb.append("# HELP sky_http_request_errors_total 失败的请求数（含以200响应返回的业务失败）\n");
+        sb.append("# TYPE sky_http_request_errors_total counter\n");
+        for (EndpointStats stats : endpoints.values()) {
+            sb.append("sky_http_request_errors_total{").append(stats.labels()).append("} ")
+                    .append(stats.errors.sum()).append('\n');
+        }
+
+        sb.append("# HELP sky_http_request_db_statements 每个请求执行的SQL条数\n");
+        sb.append("# TYPE sky_http_request_db_statements histogram\n");
+        for (EndpointStats stats : endpoints.values()) {
+            String labels = stats.labels();
+            for (long bucket : STATEMENT_BUCKETS) {
+                sb.append("sky_http_request_db_statements_bucket{").append(labels)
+                        .append(",le=\"").append(bucket).append("\"} ")
+                        .append(stats.statements.getCountAtOrBelow(bucket)).append('\n');
+            }
+            sb.append("sky_http_request_db_statements_bucket{").append(labels).append(",le=\"+Inf\"} ")
+                    .append(stats.statements.getCount()).append('\n');
+            sb.append("sky_http_request_db_statements_sum{").append(labels).append("} ")
+                    .append(stats.statements.getSum()).append('\n');
+            sb.append("sky_http_request_db_statements_count{").append(labels).append("} ")
+                    .append(stats.statements.getCount()).append('\n');
+        }
+    }
+
+    /**
+     * 清空统计数据（正在处理的请求数保留）
+     */
+    public void reset() {
+        for (EndpointStats stats : endpoints.values()) {
+            stats.latency.reset();
+            stats.statements.reset();
+            stats.errors.reset();
+        }
+    }
+
+    /**
+     * Prometheus标签值转义
+     * @param value
+     * @return
+     */
+    public static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 单个接口的统计数据
+     */
+    public static class EndpointStats {
+        private final String group;
+        private final String method;
+        private final String uri;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram statements = new LatencyHistogram();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder errors = new LongAdder();
+
+        EndpointStats(String group, String method, String uri) {
+            this.group = group;
+            this.method = method;
+            this.uri = uri;
+        }
+
+        public void begin() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * 请求结束
+         * @param micros 耗时，单位微秒
+         * @param statementCount 执行的SQL条数
+         * @param error 是否失败
+         */
+        public void end(long micros, int statementCount, boolean error) {
+            inFlight.decrementAndGet();
+            latency.record(micros);
+            statements.record(statementCount);
+            if (error) {
+                errors.increment();
+            }
+        }
+
+        private String labels() {
+            return "group=\"" + escape(group) + "\",method=\"" + escape(method) + "\",uri=\"" + escape(uri) + "\"";
+        }
+    }
+}
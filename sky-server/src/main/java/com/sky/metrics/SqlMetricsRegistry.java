@@ -0,0 +1,144 @@
+package com.sky.metrics;
+
+import com.sky.properties.MetricsProperties;
+import com.sky.utils.LatencyHistogram;
+import com.sky.vo.SlowSqlVO;
+import com.sky.vo.SqlStatementStatsVO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按Mapper语句汇总SQL执行耗时、行数，并保存最近的慢SQL
+ */
+@Component
+public class SqlMetricsRegistry {
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    // 语句id -> 统计数据
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+    // 最近的慢SQL，新的在前
+    private final Deque<SlowSqlVO> slowQueries = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger slowQuerySize = new AtomicInteger();
+
+    /**
+     * 记录一次执行
+     * @param statementId
+     * @param micros 耗时，单位微秒
+     * @param rows 返回或影响的行数
+     * @param success 是否执行成功
+     */
+    public void record(String statementId, long micros, long rows, boolean success) {
+        StatementStats stats = statements.computeIfAbsent(statementId, key -> new StatementStats());
+        stats.latency.record(micros);
+        if (success) {
+            stats.rows.add(rows);
+            long max = stats.maxRows.get();
+            while (rows > max && !stats.maxRows.compareAndSet(max, rows)) {
+                max = stats.maxRows.get();
+            }
+        } else {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * 保存慢SQL，超出容量时丢弃最旧的记录
+     * @param slowSqlVO
+     */
+    public void recordSlow(SlowSqlVO slowSqlVO) {
+        slowQueries.addFirst(slowSqlVO);
+        if (slowQuerySize.incrementAndGet() > metricsProperties.getSqlSlowCapacity()) {
+            if (slowQueries.pollLast() != null) {
+                slowQuerySize.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 所有语句的统计数据，按累计耗时倒序
+     * @return
+     */
+    public List<SqlStatementStatsVO> statements() {
+        List<SqlStatementStatsVO> list = new ArrayList<>();
+        statements.forEach((statementId, stats) -> {
+            LatencyHistogram latency = stats.latency;
+            long count = latency.getCount();
+            list.add(SqlStatementStatsVO.builder()
+                    .statementId(statementId)
+                    .count(count)
+                    .errors(stats.errors.sum())
+                    .totalRows(stats.rows.sum())
+                    .maxRows(stats.maxRows.get())
+                    .totalMillis(latency.getSum() / 1000.0)
+                    .meanMillis(latency.getMean() / 1000.0)
+                    .p50Millis(latency.getValueAtPercentile(50) / 1000.0)
+                    .p99Millis(latency.getValueAtPercentile(99) / 1000.0)
+                    .p999Millis(latency.getValueAtPercentile(99.9) / 1000.0)
+                    .maxMillis(latency.getMax() / 1000.0)
+                    .build());
+        });
+        list.sort(Comparator.comparing(SqlStatementStatsVO::getTotalMillis).reversed());
+        return list;
+    }
+
+    /**
+     * 最近的慢SQL
+     * @return
+     */
+    public List<SlowSqlVO> slowQueries() {
+        return new ArrayList<>(slowQueries);
+    }
+
+    /**
+     * 以Prometheus文本格式输出
+     * @param sb
+     */
+    public void writePrometheus(StringBuilder sb) {
+        sb.append("# HELP sky_sql_statement_duration_seconds Mapper语句执行耗时\n");
+        sb.append("# TYPE sky_sql_statement_duration_seconds summary\n");
+        statements.forEach((statementId, stats) -> {
+            String labels = "statement=\"" + RequestMetricsRegistry.escape(statementId) + "\"";
+            for (double quantile : new double[]{0.5, 0.99}) {
+                sb.append("sky_sql_statement_duration_seconds{").append(labels)
+                        .append(",quantile=\"").append(quantile).append("\"} ")
+                        .append(stats.latency.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+            }
+            sb.append("sky_sql_statement_duration_seconds_sum{").append(labels).append("} ")
+                    .append(stats.latency.getSum() / 1e6).append('\n');
+            sb.append("sky_sql_statement_duration_seconds_count{").append(labels).append("} ")
+                    .append(stats.latency.getCount()).append('\n');
+        });
+    }
+
+    /**
+     * 清空统计数据
+     */
+    public void reset() {
+        statements.clear();
+        slowQueries.clear();
+        slowQuerySize.set(0);
+    }
+
+    /**
+     * 单条语句的统计数据
+     */
+    private static class StatementStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final AtomicLong maxRows = new AtomicLong();
+        private final LongAdder errors = new LongAdder();
+    }
+}
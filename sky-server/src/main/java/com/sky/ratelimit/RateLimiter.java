@@ -0,0 +1,104 @@
+package com.sky.ratelimit;
+
+import com.sky.properties.RateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶限流，按GCRA实现：每个键只保存“理论到达时间”（令牌桶恰好补满的时刻），
+ * 本次请求的理论到达时间减去突发容忍时间仍晚于当前时间则拒绝，等价于容量为burst、每秒补充permitsPerSecond个令牌的令牌桶
+ * local模式在本实例内存中计数；redis模式用Lua脚本在Redis中原子地计算，多个实例共用限额
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private static final String KEY_PREFIX = "rate:";
+    private static final String LOCAL_MODE = "local";
+    // Redis异常时回退到本地计数，告警日志最多每10秒一条
+    private static final long WARN_INTERVAL_MILLIS = 10_000;
+
+    // KEYS[1] 限流键，ARGV 当前时间、发放间隔、突发容忍时间（微秒）；返回需要等待的微秒数，0表示通过
+    private static final DefaultRedisScript<Long> SCRIPT = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[1])\n" +
+            "local interval = tonumber(ARGV[2])\n" +
+            "local tolerance = tonumber(ARGV[3])\n" +
+            "local tat = tonumber(redis.call('GET', KEYS[1]) or '0')\n" +
+            "if tat < now then tat = now end\n" +
+            "local allowAt = tat - tolerance\n" +
+            "if now < allowAt then return allowAt - now end\n" +
+            "local newTat = tat + interval\n" +
+            "redis.call('SET', KEYS[1], string.format('%.0f', newTat), 'PX', math.ceil((newTat - now) / 1000) + 1)\n" +
+            "return 0", Long.class);
+
+    @Autowired
+    private RateLimitProperties rateLimitProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    // 限流键 -> 理论到达时间（微秒）
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private volatile long lastWarn;
+
+    /**
+     * 尝试获取一次调用许可
+     * @param name 限流名称
+     * @param key 调用方标识
+     * @param permitsPerSecond 每秒补充的次数
+     * @param burst 允许的突发次数
+     * @return 需要等待的微秒数，0表示通过
+     */
+    public long acquire(String name, String key, double permitsPerSecond, int burst) {
+        long interval = (long) (1_000_000 / permitsPerSecond);
+        long tolerance = interval * Math.max(burst - 1, 0);
+        String bucketKey = KEY_PREFIX + name + ":" + key;
+        if (!LOCAL_MODE.equals(rateLimitProperties.getMode())) {
+            try {
+                Long wait = stringRedisTemplate.execute(SCRIPT, Collections.singletonList(bucketKey),
+                        String.valueOf(System.currentTimeMillis() * 1000), String.valueOf(interval), String.valueOf(tolerance));
+                return wait == null ? 0 : wait;
+            } catch (RuntimeException e) {
+                long now = System.currentTimeMillis();
+                if (now - lastWarn > WARN_INTERVAL_MILLIS) {
+                    lastWarn = now;
+                    log.warn("Redis限流失败，改为本实例计数：{}", e.getMessage());
+                }
+            }
+        }
+        return acquireLocal(bucketKey, interval, tolerance);
+    }
+
+    private long acquireLocal(String bucketKey, long interval, long tolerance) {
+        AtomicLong tat = buckets.computeIfAbsent(bucketKey, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime() / 1000;
+        while (true) {
+            long current = tat.get();
+            long base = Math.max(current, now);
+            long allowAt = base - tolerance;
+            if (now < allowAt) {
+                return allowAt - now;
+            }
+            if (tat.compareAndSet(current, base + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 每分钟清理已补满的本地令牌桶，避免长期不活跃的用户占用内存
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime() / 1000;
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() < now);
+    }
+}
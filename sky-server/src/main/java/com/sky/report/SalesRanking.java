@@ -0,0 +1,322 @@
+package com.sky.report;
+
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import com.sky.event.OrderEventHandler;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 销量排名：按下单日期为每天维护一个商品销量的有序集合，订单完成时累加
+ * 区间排名由各天的有序集合合并得到，RECENT_DAYS天之前的日期合并结果缓存一段时间；
+ * 最近几天的数据仍会变化（派送中订单次日自动完成、凌晨重建），与当天一起每次查询时合并，不缓存
+ * 某天的有序集合不存在时从数据库重建，Redis不可用时回退到数据库查询
+ * 每天另有一个已计入的订单id集合，订单只在首次加入集合时累加，事件重复分发不会重复计数
+ * 重建时先加锁，从数据库查询销量和已完成订单id写入临时键，再原子地替换正式的键；
+ * 重建期间完成的订单先记录在待累加的哈希中，替换时补充累加其中不在数据库结果里的订单
+ */
+@Component
+@Slf4j
+public class SalesRanking implements OrderEventHandler {
+
+    private static final String DAY_KEY = "sales:day:";
+    private static final String BUILT_KEY = "sales:built:";
+    private static final String COUNTED_KEY = "sales:counted:";
+    private static final String PENDING_KEY = "sales:pending:";
+    private static final String LOCK_KEY = "sales:lock:";
+    private static final String RANGE_KEY = "sales:range:";
+    private static final int TOP_SIZE = 10;
+    // 每天的有序集合保留天数，过期后按需从数据库重建
+    private static final long DAY_TTL_DAYS = 90;
+    // 缓存的合并结果只包含这些天之前的日期
+    private static final long RECENT_DAYS = 2;
+    // 合并结果的缓存时间
+    private static final long RANGE_TTL_MINUTES = 60;
+    // 重建锁的过期时间，重建超时后替换会被放弃
+    private static final long LOCK_TTL_SECONDS = 60;
+    // 写入临时集合时每批的元素个数
+    private static final int BATCH_SIZE = 1000;
+
+    // KEYS 重建标记、重建锁、已计入集合、销量集合、待累加哈希，ARGV 订单id、待累加过期秒数、商品名称和数量交替
+    // 返回1表示已累加，0表示已计入过或当天尚未重建（重建时会从数据库得到），2表示正在重建、已记入待累加
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[2]) == 1 then\n" +
+            "  redis.call('HSET', KEYS[5], ARGV[1], cjson.encode({unpack(ARGV, 3)}))\n" +
+            "  redis.call('EXPIRE', KEYS[5], ARGV[2])\n" +
+            "  return 2\n" +
+            "end\n" +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+            "if redis.call('SADD', KEYS[3], ARGV[1]) == 0 then return 0 end\n" +
+            "for i = 3, #ARGV, 2 do redis.call('ZINCRBY', KEYS[4], ARGV[i + 1], ARGV[i]) end\n" +
+            "return 1", Long.class);
+
+    // KEYS 重建锁、临时销量集合、临时已计入集合、销量集合、已计入集合、重建标记、待累加哈希，ARGV 锁标识、过期秒数
+    // 仍持有锁时补充累加待累加的订单，再用临时键替换正式的键并设置重建标记；返回1表示替换成功，0表示锁已失效
+    private static final DefaultRedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then\n" +
+            "  redis.call('DEL', KEYS[2], KEYS[3])\n" +
+            "  return 0\n" +
+            "end\n" +
+            "local pending = redis.call('HGETALL', KEYS[7])\n" +
+            "for i = 1, #pending, 2 do\n" +
+            "  if redis.call('SADD', KEYS[3], pending[i]) == 1 then\n" +
+            "    local lines = cjson.decode(pending[i + 1])\n" +
+            "    for j = 1, #lines, 2 do redis.call('ZINCRBY', KEYS[2], lines[j + 1], lines[j]) end\n" +
+            "  end\n" +
+            "end\n" +
+            "for i = 2, 3 do\n" +
+            "  if redis.call('EXISTS', KEYS[i]) == 1 then\n" +
+            "    redis.call('RENAME', KEYS[i], KEYS[i + 2])\n" +
+            "    redis.call('EXPIRE', KEYS[i + 2], ARGV[2])\n" +
+            "  else\n" +
+            "    redis.call('DEL', KEYS[i + 2])\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('SET', KEYS[6], '1', 'EX', ARGV[2])\n" +
+            "redis.call('DEL', KEYS[7], KEYS[1])\n" +
+            "return 1", Long.class);
+
+    // KEYS[1] 重建锁，ARGV[1] 锁标识；只释放自己持有的锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    /**
+     * 订单完成事件，查询下单时间后累加销量
+     * @param orderEvent
+     */
+    @Override
+    public void handle(OrderEvent orderEvent) {
+        if (!OrderEvent.COMPLETED.equals(orderEvent.getEventType()) || orderEvent.getOrderId() == null) {
+            return;
+        }
+        Orders orders = orderMapper.getById(orderEvent.getOrderId());
+        if (orders != null) {
+            orderCompleted(orders);
+        }
+    }
+
+    /**
+     * 订单完成，累加下单当天的商品销量；在事务中时提交后再累加
+     * 当天尚未重建时不累加，之后的重建从数据库查询时已包含该订单
+     * @param orders 需要包含id和下单时间
+     */
+    public void orderCompleted(Orders orders) {
+        Long orderId = orders.getId();
+        LocalDate date = orders.getOrderTime().toLocalDate();
+        Runnable increment = () -> {
+            try {
+                List<String> args = new ArrayList<>();
+                args.add(String.valueOf(orderId));
+                args.add(String.valueOf(LOCK_TTL_SECONDS * 2));
+                for (OrderDetail orderDetail : orderDetailMapper.getByOrderId(orderId)) {
+                    args.add(orderDetail.getName());
+                    args.add(String.valueOf(orderDetail.getNumber()));
+                }
+                stringRedisTemplate.execute(INCREMENT_SCRIPT,
+                        Arrays.asList(BUILT_KEY + date, LOCK_KEY + date, COUNTED_KEY + date, DAY_KEY + date, PENDING_KEY + date),
+                        args.toArray());
+            } catch (RuntimeException e) {
+                // 累加失败时删除重建标记，下次查询从数据库重建
+                log.warn("累加订单{}的销量失败：{}", orderId, e.getMessage());
+                deleteQuietly(BUILT_KEY + date);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment.run();
+                }
+            });
+        } else {
+            increment.run();
+        }
+    }
+
+    /**
+     * 统计指定日期区间内的销量排名前10
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<GoodsSalesDTO> top10(LocalDate begin, LocalDate end) {
+        try {
+            return top(begin, end);
+        } catch (RuntimeException e) {
+            log.warn("从Redis查询销量排名失败，改为查询数据库：{}", e.getMessage());
+            return orderMapper.getSalesTop10(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX),
+                    orderArchiveService.reachesArchive(LocalDateTime.of(begin, LocalTime.MIN)));
+        }
+    }
+
+    /**
+     * 每日凌晨1点半（派送中订单自动完成之后），让最近几天的数据在下次查询时从数据库重建，修正累加失败造成的遗漏
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void invalidateRecentDays() {
+        LocalDate today = LocalDate.now();
+        for (long days = 1; days <= RECENT_DAYS; days++) {
+            deleteQuietly(BUILT_KEY + today.minusDays(days));
+        }
+    }
+
+    private List<GoodsSalesDTO> top(LocalDate begin, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        if (end.isAfter(today)) {
+            end = today;
+        }
+        List<String> keys = new ArrayList<>();
+        // 较早的日期使用缓存的合并结果，最近几天和当天的数据单独合并
+        LocalDate cachedEnd = today.minusDays(RECENT_DAYS + 1);
+        LocalDate closedEnd = end.isBefore(cachedEnd) ? end : cachedEnd;
+        if (!begin.isAfter(closedEnd)) {
+            keys.add(closedRange(begin, closedEnd));
+        }
+        for (LocalDate date = begin.isAfter(closedEnd) ? begin : closedEnd.plusDays(1); !date.isAfter(end); date = date.plusDays(1)) {
+            keys.add(dayKey(date));
+        }
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (keys.size() == 1) {
+            return read(keys.get(0));
+        }
+        String temp = RANGE_KEY + "tmp:" + UUID.randomUUID();
+        try {
+            stringRedisTemplate.opsForZSet().unionAndStore(keys.get(0), keys.subList(1, keys.size()), temp);
+            return read(temp);
+        } finally {
+            stringRedisTemplate.delete(temp);
+        }
+    }
+
+    /**
+     * RECENT_DAYS天之前的日期区间的合并结果
+     */
+    private String closedRange(LocalDate begin, LocalDate end) {
+        String key = RANGE_KEY + begin + ":" + end;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(key))) {
+            return key;
+        }
+        List<String> dayKeys = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            dayKeys.add(dayKey(date));
+        }
+        stringRedisTemplate.opsForZSet().unionAndStore(dayKeys.get(0), dayKeys.subList(1, dayKeys.size()), key);
+        stringRedisTemplate.expire(key, RANGE_TTL_MINUTES, TimeUnit.MINUTES);
+        return key;
+    }
+
+    /**
+     * 某一天的有序集合，不存在时从数据库重建；其他请求正在重建时抛出异常，由调用方回退到数据库查询
+     */
+    private String dayKey(LocalDate date) {
+        String key = DAY_KEY + date;
+        String builtKey = BUILT_KEY + date;
+        if (Boolean.TRUE.equals(stringRedisTemplate.hasKey(builtKey))) {
+            return key;
+        }
+        String lockKey = LOCK_KEY + date;
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL_SECONDS, TimeUnit.SECONDS))) {
+            throw new IllegalStateException(date + "的销量排名正在重建");
+        }
+        String tempKey = key + ":tmp:" + token;
+        String tempCountedKey = COUNTED_KEY + date + ":tmp:" + token;
+        try {
+            LocalDateTime begin = LocalDateTime.of(date, LocalTime.MIN);
+            LocalDateTime end = LocalDateTime.of(date, LocalTime.MAX);
+            boolean archive = orderArchiveService.reachesArchive(begin);
+            // 销量和已计入的订单id来自同一次查询，重建期间完成的订单要么在查询结果中，要么在替换时补充累加
+            Map<String, Integer> sales = new HashMap<>();
+            Set<Long> idSet = new LinkedHashSet<>();
+            for (OrderDetail orderDetail : orderMapper.getCompletedDetails(begin, end, archive)) {
+                sales.merge(orderDetail.getName(), orderDetail.getNumber(), Integer::sum);
+                idSet.add(orderDetail.getOrderId());
+            }
+            if (!sales.isEmpty()) {
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                sales.forEach((name, number) -> tuples.add(new DefaultTypedTuple<>(name, number.doubleValue())));
+                stringRedisTemplate.opsForZSet().add(tempKey, tuples);
+            }
+            List<Long> ids = new ArrayList<>(idSet);
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+                String[] members = new String[batch.size()];
+                for (int i = 0; i < members.length; i++) {
+                    members[i] = String.valueOf(batch.get(i));
+                }
+                stringRedisTemplate.opsForSet().add(tempCountedKey, members);
+            }
+            Long replaced = stringRedisTemplate.execute(REPLACE_SCRIPT,
+                    Arrays.asList(lockKey, tempKey, tempCountedKey, key, COUNTED_KEY + date, builtKey, PENDING_KEY + date),
+                    token, String.valueOf(TimeUnit.DAYS.toSeconds(DAY_TTL_DAYS)));
+            if (!Long.valueOf(1).equals(replaced)) {
+                throw new IllegalStateException(date + "的销量排名重建超时");
+            }
+            return key;
+        } catch (RuntimeException e) {
+            deleteQuietly(tempKey);
+            deleteQuietly(tempCountedKey);
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            throw e;
+        }
+    }
+
+    private List<GoodsSalesDTO> read(String key) {
+        List<GoodsSalesDTO> list = new ArrayList<>();
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().reverseRangeWithScores(key, 0, TOP_SIZE - 1);
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                list.add(new GoodsSalesDTO(tuple.getValue(), tuple.getScore().intValue()));
+            }
+        }
+        return list;
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            stringRedisTemplate.delete(key);
+        } catch (RuntimeException e) {
+            log.warn("删除{}失败：{}", key, e.getMessage());
+        }
+    }
+}
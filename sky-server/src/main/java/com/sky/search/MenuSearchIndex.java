@@ -0,0 +1,324 @@
+package com.sky.search;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.MenuSearchProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 菜品、套餐名称的搜索索引
+ * 启动后全量加载，管理端增删改在事务提交后增量更新，每次更新分配一个递增的版本号
+ * redis模式下版本号在Redis中分配并通过发布订阅发给所有实例（包括本实例），各实例按版本号顺序应用；
+ * 本实例已应用的版本落后于Redis中的版本（更新尚未收到或丢失）时搜索返回null，调用方回退到数据库模糊查询，
+ * 发现版本不连续时立即全量重建；local模式下版本号只在本实例内递增，只能单实例部署
+ * 重建期间收到的更新先暂存，构建完成后补到新索引上再替换，不会丢失
+ */
+@Component
+@Slf4j
+public class MenuSearchIndex {
+
+    private static final String LOCAL_MODE = "local";
+    private static final String VERSION_KEY = "menu-search:version";
+    private static final String CHANNEL = "menu-search:change";
+    private static final String DISH = "dish";
+    private static final String SETMEAL = "setmeal";
+
+    // KEYS 版本号，ARGV 消息中版本号之前和之后的部分、发布的频道；返回分配的版本号
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('INCR', KEYS[1])\n" +
+            "redis.call('PUBLISH', ARGV[3], ARGV[1] .. version .. ARGV[2])\n" +
+            "return version", Long.class);
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private MenuSearchProperties menuSearchProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    // 未加载完成时为null，调用方回退到数据库模糊查询
+    private volatile NgramIndex dishIndex;
+    private volatile NgramIndex setmealIndex;
+    // 索引已应用的更新版本
+    private volatile long version;
+    // local模式下分配的版本号
+    private long sequence;
+    // 重建期间收到的更新，不在重建时为null
+    private List<JSONObject> pending;
+    // 同一时间只有一个重建
+    private final Object rebuildLock = new Object();
+
+    // redis模式下订阅更新的监听容器，单线程按发布顺序应用
+    private RedisMessageListenerContainer listenerContainer;
+    private ThreadPoolTaskExecutor listenerExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (isLocal()) {
+            log.warn("搜索索引为local模式，增量更新只在本实例内生效，只能单实例部署");
+            return;
+        }
+        listenerExecutor = new ThreadPoolTaskExecutor();
+        listenerExecutor.setCorePoolSize(1);
+        listenerExecutor.setMaxPoolSize(1);
+        listenerExecutor.setThreadNamePrefix("menu-search-");
+        listenerExecutor.setDaemon(true);
+        listenerExecutor.initialize();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.setTaskExecutor(listenerExecutor);
+        listenerContainer.addMessageListener((message, pattern) ->
+                receive(JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8))), new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+            listenerExecutor.shutdown();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * 全量重建，先取当前版本再查询数据库，之后的更新暂存并在构建完成后补上，再整体替换
+     * 更新在事务提交后才分配版本，不大于当前版本的更新已包含在查询结果中
+     */
+    @Scheduled(cron = "0 0/10 * * * ?")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            long base;
+            NgramIndex dishes = new NgramIndex();
+            NgramIndex setmeals = new NgramIndex();
+            try {
+                base = currentVersion();
+                for (Dish dish : dishMapper.listIdAndName()) {
+                    dishes.put(dish.getId(), dish.getName());
+                }
+                for (Setmeal setmeal : setmealMapper.listIdAndName()) {
+                    setmeals.put(setmeal.getId(), setmeal.getName());
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                // 补上重建期间的更新，版本不连续时停在缺失之前，搜索回退到数据库直到下次重建
+                long applied = base;
+                for (JSONObject change : pending) {
+                    long changeVersion = change.getLongValue("version");
+                    if (changeVersion > base) {
+                        apply(change, dishes, setmeals);
+                        if (changeVersion == applied + 1) {
+                            applied = changeVersion;
+                        }
+                    }
+                }
+                pending = null;
+                dishIndex = dishes;
+                setmealIndex = setmeals;
+                version = applied;
+            }
+            log.info("菜品、套餐搜索索引重建完成：菜品{}个，套餐{}个，版本{}，耗时{}ms",
+                    dishes.size(), setmeals.size(), version, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 按名称搜索菜品
+     * @param name
+     * @param limit 0表示不限制
+     * @return 排序后的菜品id，索引未加载、可能过期或匹配的菜品超过上限时返回null
+     */
+    public List<Long> searchDishes(String name, int limit) {
+        return search(dishIndex, name, limit);
+    }
+
+    /**
+     * 按名称搜索套餐
+     * @param name
+     * @param limit 0表示不限制
+     * @return 排序后的套餐id，索引未加载、可能过期或匹配的套餐超过上限时返回null
+     */
+    public List<Long> searchSetmeals(String name, int limit) {
+        return search(setmealIndex, name, limit);
+    }
+
+    public void putDish(Long id, String name) {
+        afterCommit(() -> publish(DISH, Collections.singletonList(id), name));
+    }
+
+    public void removeDishes(List<Long> ids) {
+        afterCommit(() -> publish(DISH, ids, null));
+    }
+
+    public void putSetmeal(Long id, String name) {
+        afterCommit(() -> publish(SETMEAL, Collections.singletonList(id), name));
+    }
+
+    public void removeSetmeals(List<Long> ids) {
+        afterCommit(() -> publish(SETMEAL, ids, null));
+    }
+
+    private List<Long> search(NgramIndex index, String name, int limit) {
+        if (index == null || stale()) {
+            return null;
+        }
+        List<Long> ids = index.search(name, limit);
+        return ids.size() > menuSearchProperties.getMaxIds() ? null : ids;
+    }
+
+    /**
+     * 本实例的索引是否落后于已提交的更新，Redis不可用时无法判断，按过期处理
+     */
+    private boolean stale() {
+        if (isLocal()) {
+            return false;
+        }
+        try {
+            return currentVersion() > version;
+        } catch (RuntimeException e) {
+            log.warn("读取搜索索引版本失败，回退到数据库查询：{}", e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * 分配版本号并发给所有实例；redis模式下由订阅者应用，包括本实例
+     * 发布失败时其它实例的索引保持过期，搜索回退到数据库直到下次重建
+     * @param type 菜品或套餐
+     * @param ids
+     * @param name 为null表示删除
+     */
+    private void publish(String type, List<Long> ids, String name) {
+        // 更新消息：version type ids name，分配版本时插入到消息开头
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", type);
+        map.put("ids", ids);
+        map.put("name", name);
+        String prefix = "{\"version\":";
+        String suffix = "," + JSON.toJSONString(map).substring(1);
+
+        if (isLocal()) {
+            synchronized (this) {
+                receive(JSON.parseObject(prefix + (++sequence) + suffix));
+            }
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(PUBLISH_SCRIPT, Collections.singletonList(VERSION_KEY), prefix, suffix, CHANNEL);
+        } catch (RuntimeException e) {
+            log.warn("发布搜索索引更新失败：{} {}", type, ids, e);
+        }
+    }
+
+    /**
+     * 按版本顺序应用一条更新：重建期间暂存，已应用的忽略，版本不连续时全量重建
+     */
+    private void receive(JSONObject change) {
+        long changeVersion = change.getLongValue("version");
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(change);
+                return;
+            }
+            // 索引尚未加载时忽略，加载时先取版本再查询数据库，已包含这条更新
+            if (changeVersion <= version || dishIndex == null) {
+                return;
+            }
+            if (changeVersion == version + 1) {
+                apply(change, dishIndex, setmealIndex);
+                version = changeVersion;
+                return;
+            }
+        }
+        // 有更新未收到，在监听线程上重建，之后的消息在重建完成后按版本继续应用
+        log.info("搜索索引版本不连续：已应用{}，收到{}，全量重建", version, changeVersion);
+        rebuild();
+    }
+
+    private static void apply(JSONObject change, NgramIndex dishes, NgramIndex setmeals) {
+        NgramIndex index = DISH.equals(change.getString("type")) ? dishes : setmeals;
+        String name = change.getString("name");
+        for (Long id : change.getJSONArray("ids").toJavaList(Long.class)) {
+            if (name == null) {
+                index.remove(id);
+            } else {
+                index.put(id, name);
+            }
+        }
+    }
+
+    private boolean isLocal() {
+        return LOCAL_MODE.equals(menuSearchProperties.getMode());
+    }
+
+    private long currentVersion() {
+        if (isLocal()) {
+            synchronized (this) {
+                return sequence;
+            }
+        }
+        String value = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * 在事务中时等提交后再更新索引，避免回滚的数据被搜到
+     */
+    private static void afterCommit(Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+}
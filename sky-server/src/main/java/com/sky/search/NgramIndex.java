@@ -0,0 +1,161 @@
+package com.sky.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 名称的n-gram倒排索引：按单字和相邻两字（bigram）建立倒排表，支持任意子串查询
+ * 中文按字切分，英文统一转小写后同样按字符切分，空白字符忽略
+ * 写操作串行，读操作无锁
+ */
+public class NgramIndex {
+
+    // gram -> 名称中包含该gram的id集合
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    // id -> 规范化后的名称
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * 新增或更新名称
+     * @param id
+     * @param name
+     */
+    public synchronized void put(Long id, String name) {
+        remove(id);
+        String normalized = normalize(name);
+        names.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    /**
+     * 删除名称
+     * @param id
+     */
+    public synchronized void remove(Long id) {
+        String normalized = names.remove(id);
+        if (normalized == null) {
+            return;
+        }
+        for (String gram : grams(normalized)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 查询名称包含关键字的id，按匹配程度排序：完全相同、匹配位置靠前、名称较短的在前
+     * @param keyword
+     * @param limit 最多返回条数，0表示不限制
+     * @return
+     */
+    public List<Long> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 只需遍历最短的倒排表，再用子串匹配排除只包含部分gram的名称
+        Set<Long> candidates = null;
+        for (String gram : queryGrams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            if (candidates == null || ids.size() < candidates.size()) {
+                candidates = ids;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        for (Long id : candidates) {
+            String name = names.get(id);
+            int position = name == null ? -1 : name.indexOf(query);
+            if (position >= 0) {
+                matches.add(new Match(id, name.equals(query) ? 0 : 1, position, name.length()));
+            }
+        }
+        matches.sort(Comparator.comparingInt((Match match) -> match.exact)
+                .thenComparingInt(match -> match.position)
+                .thenComparingInt(match -> match.length)
+                .thenComparingLong(match -> match.id));
+
+        int size = limit > 0 ? Math.min(limit, matches.size()) : matches.size();
+        List<Long> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(matches.get(i).id);
+        }
+        return result;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 建索引时的gram：所有单字和相邻两字
+     */
+    private static List<String> grams(String text) {
+        List<String> grams = new ArrayList<>(text.length() * 2);
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询时的gram：单字关键字用单字，否则用相邻两字
+     */
+    private static List<String> queryGrams(String query) {
+        if (query.length() == 1) {
+            return Collections.singletonList(query);
+        }
+        List<String> grams = new ArrayList<>(query.length() - 1);
+        for (int i = 0; i + 1 < query.length(); i++) {
+            grams.add(query.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static class Match {
+        private final Long id;
+        private final int exact;
+        private final int position;
+        private final int length;
+
+        Match(Long id, int exact, int position, int length) {
+            this.id = id;
+            this.exact = exact;
+            this.position = position;
+            this.length = length;
+        }
+    }
+}
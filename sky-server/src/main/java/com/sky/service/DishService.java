@@ -55,4 +55,11 @@ public interface DishService {
      * @return
      */
     List<DishVO> listWithFlavor(Dish dish);
+
+    /**
+     * 按名称搜索起售中的菜品和口味
+     * @param name
+     * @return
+     */
+    List<DishVO> search(String name);
 }
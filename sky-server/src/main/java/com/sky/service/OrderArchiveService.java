@@ -0,0 +1,27 @@
+package com.sky.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderArchiveService {
+
+    /**
+     * 将一批订单及其明细移入归档表
+     * @param orderIds
+     */
+    void archive(List<Long> orderIds);
+
+    /**
+     * 是否启用了归档，启用后历史订单查询需要合并归档表
+     * @return
+     */
+    boolean isEnabled();
+
+    /**
+     * 下单时间不早于begin的查询是否可能涉及归档数据
+     * @param begin 为null表示不限开始时间
+     * @return
+     */
+    boolean reachesArchive(LocalDateTime begin);
+
+}
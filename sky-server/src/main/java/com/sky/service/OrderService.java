@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.entity.Orders;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -34,9 +35,10 @@ public interface OrderService {
      * @param page
      * @param pageSize
      * @param status
+     * @param cursor 游标分页的继续令牌，为null时按页码分页
      * @return
      */
-    PageResult pageQuery4User(int page, int pageSize, Integer status);
+    PageResult pageQuery4User(int page, int pageSize, Integer status, String cursor);
 
     /**
      * 查询订单详情
@@ -105,4 +107,12 @@ public interface OrderService {
      * @param id
      */
     void reminder(Long id);
+
+    /**
+     * 定时任务按状态机变更订单状态，状态变更和订单事件在同一事务中写入
+     * @param transition
+     * @param orders 需要修改的字段，按id定位
+     * @return 状态已被其他操作修改时返回false
+     */
+    boolean autoTransition(OrderTransition transition, Orders orders);
 }
@@ -0,0 +1,45 @@
+package com.sky.service;
+
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 订单状态机：每种操作允许的原状态、目标状态和对应的订单事件
+ * 状态变更通过OrderMapper.transition以“where status in (原状态)”的条件更新一次完成，
+ * 并发操作只有一个能成功，不会互相覆盖
+ */
+@Getter
+public enum OrderTransition {
+
+    PAY(Arrays.asList(Orders.PENDING_PAYMENT), Orders.TO_BE_CONFIRMED, null, OrderEvent.PAID),
+    CONFIRM(Arrays.asList(Orders.TO_BE_CONFIRMED), Orders.CONFIRMED, null, OrderEvent.CONFIRMED),
+    REJECT(Arrays.asList(Orders.TO_BE_CONFIRMED), Orders.CANCELLED, null, OrderEvent.REJECTED),
+    DELIVER(Arrays.asList(Orders.CONFIRMED), Orders.DELIVERY_IN_PROGRESS, null, OrderEvent.DELIVERY),
+    COMPLETE(Arrays.asList(Orders.DELIVERY_IN_PROGRESS), Orders.COMPLETED, null, OrderEvent.COMPLETED),
+    // 用户只能取消待付款、待接单的订单，待接单（已支付）的订单同时改为退款
+    USER_CANCEL(Arrays.asList(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED), Orders.CANCELLED, Orders.TO_BE_CONFIRMED, OrderEvent.CANCELLED),
+    ADMIN_CANCEL(Arrays.asList(Orders.PENDING_PAYMENT, Orders.TO_BE_CONFIRMED, Orders.CONFIRMED, Orders.DELIVERY_IN_PROGRESS),
+            Orders.CANCELLED, null, OrderEvent.CANCELLED),
+    TIMEOUT_CANCEL(Arrays.asList(Orders.PENDING_PAYMENT), Orders.CANCELLED, null, OrderEvent.CANCELLED);
+
+    // 允许的原状态
+    private final List<Integer> from;
+    // 目标状态
+    private final Integer to;
+    // 从该状态变更时支付状态改为退款，为null表示不修改
+    private final Integer refundFrom;
+    // 变更成功后写入的订单事件类型
+    private final String eventType;
+
+    OrderTransition(List<Integer> from, Integer to, Integer refundFrom, String eventType) {
+        this.from = Collections.unmodifiableList(from);
+        this.to = to;
+        this.refundFrom = refundFrom;
+        this.eventType = eventType;
+    }
+}
@@ -5,6 +5,8 @@ import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 
 public interface ReportService {
@@ -40,4 +42,12 @@ public interface ReportService {
      * @return
      */
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
+
+    /**
+     * 导出运营数据报表
+     * @param begin
+     * @param end
+     * @param out
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException;
 }
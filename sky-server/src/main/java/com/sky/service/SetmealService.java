@@ -62,4 +62,11 @@ public interface SetmealService {
      * @return
      */
     List<DishItemVO> getDishItemById(Long id);
+
+    /**
+     * 按名称搜索起售中的套餐
+     * @param name
+     * @return
+     */
+    List<Setmeal> search(String name);
 }
@@ -4,6 +4,7 @@ import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceVO;
 import java.time.LocalDateTime;
 
 public interface WorkspaceService {
@@ -34,4 +35,12 @@ public interface WorkspaceService {
      */
     SetmealOverViewVO getSetmealOverView();
 
+    /**
+     * 并行查询工作台的全部数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    WorkspaceVO getAll(LocalDateTime begin, LocalDateTime end);
+
 }
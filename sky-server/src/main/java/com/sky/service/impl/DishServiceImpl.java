@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadReplica;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -9,10 +10,12 @@ import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
 import com.sky.exception.DeletionNotAllowedException;
+import com.sky.image.ImageVariants;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
+import com.sky.search.MenuSearchIndex;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
@@ -24,7 +27,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -36,6 +42,13 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Autowired
     private SetmealDishMapper setmealDishMapper;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+    @Autowired
+    private ImageVariants imageVariants;
+
+    // 用户端搜索最多返回的菜品数
+    private static final int SEARCH_LIMIT = 20;
 
     /**
      * 新增菜品和对应的口味数据
@@ -74,6 +87,7 @@ public class DishServiceImpl implements DishService {
             dishFlavorMapper.insertBatch(flavors);
         }
 
+        menuSearchIndex.putDish(dishId, dish.getName());
     }
 
     /**
@@ -82,7 +96,22 @@ public class DishServiceImpl implements DishService {
      * @return
      */
     @Override
+    @ReadReplica
     public PageResult pageQuery(DishPageQueryDTO dishPageQueryDTO) {
+        // 按名称查询时先从搜索索引取出菜品id，避免全表模糊匹配；索引返回null时仍按名称模糊查询
+        dishPageQueryDTO.setIds(null);
+        String name = dishPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            List<Long> ids = menuSearchIndex.searchDishes(name, 0);
+            if (ids != null) {
+                if (ids.isEmpty()) {
+                    return new PageResult(0, Collections.emptyList());
+                }
+                dishPageQueryDTO.setIds(ids);
+                dishPageQueryDTO.setName(null);
+            }
+        }
+
         PageHelper.startPage(dishPageQueryDTO.getPage(), dishPageQueryDTO.getPageSize());
 
         // 调用mapper进行分页查询，注意泛型不是Dish，为了适应接口（有categoryName的属性），使用VO类型
@@ -91,6 +120,7 @@ public class DishServiceImpl implements DishService {
         // 把page对象加工处理成PageResult对象
         long total = page.getTotal();
         List<DishVO> records = page.getResult();
+        fillImageVariants(records);
 
         return new PageResult(total, records);
     }
@@ -124,6 +154,8 @@ public class DishServiceImpl implements DishService {
         // 优化：直接根据id集合批量删除，避免发送过多的sql语句而引发性能问题
         dishMapper.deleteBatchByIds(ids);   // sql: delete from dish where id in (?,?,?)
         dishFlavorMapper.deleteBatchByDishIds(ids); // sql: delete from dish_flavor where dish_id in (?,?,?)
+
+        menuSearchIndex.removeDishes(ids);
     }
 
     /**
@@ -141,6 +173,7 @@ public class DishServiceImpl implements DishService {
         DishVO dishVO = new DishVO();
         BeanUtils.copyProperties(dish, dishVO);
         dishVO.setFlavors(dishFlavors);
+        fillImageVariants(Collections.singletonList(dishVO));
         return dishVO;
     }
 
@@ -164,6 +197,10 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.insertBatch(flavors);
         }
+
+        if (dish.getName() != null) {
+            menuSearchIndex.putDish(dish.getId(), dish.getName());
+        }
     }
 
     /**
@@ -201,7 +238,62 @@ public class DishServiceImpl implements DishService {
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
         }
+        fillImageVariants(dishVOList);
+
+        return dishVOList;
+    }
+
+    /**
+     * 按名称搜索起售中的菜品和口味，按匹配程度排序
+     * @param name
+     * @return
+     */
+    @ReadReplica
+    public List<DishVO> search(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = menuSearchIndex.searchDishes(name, 0);
+        List<Dish> dishList;
+        if (ids == null) {
+            // 索引未加载、可能过期或匹配过多，回退到数据库模糊查询
+            dishList = dishMapper.list(Dish.builder().name(name).status(StatusConstant.ENABLE).build());
+        } else if (ids.isEmpty()) {
+            return Collections.emptyList();
+        } else {
+            Map<Long, Dish> dishMap = dishMapper.getByIds(ids, StatusConstant.ENABLE).stream()
+                    .collect(Collectors.toMap(Dish::getId, Function.identity()));
+            dishList = ids.stream().map(dishMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+        if (dishList.size() > SEARCH_LIMIT) {
+            dishList = dishList.subList(0, SEARCH_LIMIT);
+        }
+        if (dishList.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 一次查出所有菜品的口味
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper
+                .getByDishIds(dishList.stream().map(Dish::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
+        List<DishVO> dishVOList = new ArrayList<>();
+        for (Dish d : dishList) {
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(d, dishVO);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
+            dishVOList.add(dishVO);
+        }
+        fillImageVariants(dishVOList);
         return dishVOList;
     }
+
+    /**
+     * 填充菜品图片的缩略图和压缩图地址
+     * @param dishVOList
+     */
+    private void fillImageVariants(List<DishVO> dishVOList) {
+        imageVariants.fill(dishVOList, DishVO::getImage, DishVO::setImageThumb, DishVO::setImageMedium);
+    }
 }
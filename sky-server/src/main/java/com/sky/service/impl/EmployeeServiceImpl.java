@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadReplica;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.PasswordConstant;
 import com.sky.constant.StatusConstant;
@@ -102,6 +103,7 @@ public class EmployeeServiceImpl implements EmployeeService {
      * @return 分页查询封装类
      */
     @Override
+    @ReadReplica
     public PageResult pageQuery(EmployeePageQueryDTO employeePageQueryDTO) {
         /*
          底层通过MySQL的limit关键字来实现分页查询
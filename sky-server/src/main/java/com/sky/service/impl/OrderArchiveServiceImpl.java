@@ -0,0 +1,58 @@
+package com.sky.service.impl;
+
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ArchiveProperties;
+import com.sky.service.OrderArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Slf4j
+public class OrderArchiveServiceImpl implements OrderArchiveService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderDetailMapper orderDetailMapper;
+    @Autowired
+    private ArchiveProperties archiveProperties;
+
+    /**
+     * 将一批订单及其明细移入归档表，先复制再删除，同一事务内完成
+     * 分库后同一批订单需在同一分片，按第一个订单id路由
+     * @param orderIds
+     */
+    @Override
+    @Transactional
+    public void archive(List<Long> orderIds) {
+        orderDetailMapper.insertArchiveByOrderIds(orderIds);
+        orderMapper.insertArchive(orderIds);
+        orderDetailMapper.deleteByOrderIds(orderIds);
+        orderMapper.deleteByIds(orderIds);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return archiveProperties.isEnabled();
+    }
+
+    /**
+     * 归档表中只有下单时间早于(当前时间 - 归档天数)的订单，查询区间晚于该时间线时无需合并归档表
+     * 注意：调大归档天数后，之前归档的订单可能晚于新的时间线
+     * @param begin
+     * @return
+     */
+    @Override
+    public boolean reachesArchive(LocalDateTime begin) {
+        if (!archiveProperties.isEnabled()) {
+            return false;
+        }
+        return begin == null || begin.isBefore(LocalDateTime.now().minusDays(archiveProperties.getDays()));
+    }
+}
@@ -1,38 +1,44 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.xiaoymin.knife4j.core.util.CollectionUtils;
+import com.sky.annotation.ReadReplica;
 import com.sky.constant.MessageConstant;
 import com.sky.context.BaseContext;
+import com.sky.datasource.OrderShardRouter;
 import com.sky.dto.*;
 import com.sky.entity.*;
+import com.sky.event.OrderEventPublisher;
 import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
 import com.sky.result.PageResult;
+import com.sky.service.OrderArchiveService;
 import com.sky.service.OrderService;
+import com.sky.service.OrderTransition;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -52,7 +58,17 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private UserMapper userMapper;
     @Autowired
-    private WebSocketServer webSocketServer;
+    private OrderEventPublisher orderEventPublisher;
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+
+    private static final Comparator<Orders> ORDER_TIME_DESC = Comparator
+            .comparing(Orders::getOrderTime, Comparator.reverseOrder())
+            .thenComparing(Orders::getId, Comparator.reverseOrder());
+    // 继续令牌中表示包含匹配的标记
+    private static final String INFIX_CURSOR_FLAG = "i";
 
     /**
      * 用户下单
@@ -82,7 +98,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setId(orderShardRouter.orderId(userId));
+        orders.setNumber(orderShardRouter.orderNumber(userId));
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
@@ -97,6 +114,7 @@ public class OrderServiceImpl implements OrderService {
             orderDetailList.add(orderDetail);
         }
         orderDetailMapper.insertBatch(orderDetailList);
+        orderEventPublisher.publish(OrderEvent.SUBMITTED, orders, Orders.PENDING_PAYMENT);
         // 清空当前用户的购物车
         shoppingCartMapper.deleteByUserId(userId);
         // 封装VO返回结果
@@ -115,6 +133,7 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersPaymentDTO
      * @return
      */
+    @Transactional
     public OrderPaymentVO payment(OrdersPaymentDTO ordersPaymentDTO) throws Exception {
         // 当前登录用户id
         Long userId = BaseContext.getCurrentId();
@@ -137,53 +156,36 @@ public class OrderServiceImpl implements OrderService {
         OrderPaymentVO vo = jsonObject.toJavaObject(OrderPaymentVO.class);
         vo.setPackageStr(jsonObject.getString("package"));
 
-        //为替代微信支付成功后的数据库订单状态更新，多定义一个方法进行修改
-        Integer OrderPaidStatus = Orders.PAID; //支付状态，已支付
-        Integer OrderStatus = Orders.TO_BE_CONFIRMED;  //订单状态，待接单
-
-        //发现没有将支付时间 check_out属性赋值，所以在这里更新
-        LocalDateTime check_out_time = LocalDateTime.now();
-
-        //获取订单号码
-        String orderNumber = ordersPaymentDTO.getOrderNumber();
-
-        log.info("调用updateStatus，用于替换微信支付更新数据库状态的问题");
-        orderMapper.updateStatus(OrderStatus, OrderPaidStatus, check_out_time, orderNumber);
-
-        // 由于跳过了支付，所以直接在最后调用 支付成功 的方法
-        paySuccess(orderNumber);
+        // 由于跳过了支付，直接调用 支付成功 的方法修改订单状态、支付状态和结账时间
+        paySuccess(ordersPaymentDTO.getOrderNumber());
 
         return vo;
     }
 
     /**
-     * 支付成功，修改订单状态
+     * 支付成功，修改订单状态，来单提醒由订单事件异步推送
+     * 支付回调可能重复通知，订单已支付时直接返回成功
      *
      * @param outTradeNo
      */
+    @Transactional
     public void paySuccess(String outTradeNo) {
-
-        // 根据订单号查询订单
-        Orders ordersDB = orderMapper.getByNumber(outTradeNo);
-
-        // 根据订单id更新订单的状态、支付方式、支付状态、结账时间
+        // 根据订单号更新待付款订单的状态、支付状态、结账时间
         Orders orders = Orders.builder()
-                .id(ordersDB.getId())
-                .status(Orders.TO_BE_CONFIRMED)
+                .number(outTradeNo)
                 .payStatus(Orders.PAID)
                 .checkoutTime(LocalDateTime.now())
                 .build();
-
-        orderMapper.update(orders);
-
-        // 通过websocket向客户端浏览器推送消息：type orderId content
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("type", 1); // 1表示来单提醒 2表示客户催单
-        map.put("orderId", orders.getId());
-        map.put("content", "订单号：" + outTradeNo);
-        // 将map转为json类型
-        String jsonString = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(jsonString);
+        try {
+            transition(OrderTransition.PAY, orders);
+        } catch (OrderBusinessException e) {
+            // 订单已不是待付款：支付状态不是未支付说明之前的通知已处理（之后可能已接单、取消或退款）
+            Orders ordersDB = orderMapper.getByNumber(outTradeNo);
+            if (ordersDB == null || Orders.UN_PAID.equals(ordersDB.getPayStatus())) {
+                throw e;
+            }
+            log.info("订单{}已支付，忽略重复的支付成功通知", outTradeNo);
+        }
     }
 
     /**
@@ -194,35 +196,181 @@ public class OrderServiceImpl implements OrderService {
      * @param status
      * @return
      */
-    public PageResult pageQuery4User(int pageNum, int pageSize, Integer status) {
-        // 设置分页
-        PageHelper.startPage(pageNum, pageSize);
-
+    @ReadReplica
+    public PageResult pageQuery4User(int pageNum, int pageSize, Integer status, String cursor) {
         OrdersPageQueryDTO ordersPageQueryDTO = new OrdersPageQueryDTO();
         ordersPageQueryDTO.setUserId(BaseContext.getCurrentId());
         ordersPageQueryDTO.setStatus(status);
+        ordersPageQueryDTO.setPageSize(pageSize);
+        ordersPageQueryDTO.setCursor(cursor);
+
+        // 游标分页：小程序下拉加载，耗时与历史订单数量无关
+        if (cursor != null) {
+            return seekPageQuery(ordersPageQueryDTO, this::pageQueryWithArchive, this::getOrderVOListWithDetails);
+        }
+
+        applyCursor(ordersPageQueryDTO);
+        // 启用归档后，热表和归档表各取前(页码 * 页大小)条合并，再截取当前页
+        if (orderArchiveService.isEnabled()) {
+            int page = Math.max(pageNum, 1);
+            ordersPageQueryDTO.setSeekLimit(page * pageSize);
+            List<Orders> ordersList = pageQueryWithArchive(ordersPageQueryDTO);
+            ordersPageQueryDTO.setSeekLimit(null);
+            long total = PageHelper.count(() -> orderMapper.pageQuery(ordersPageQueryDTO))
+                    + PageHelper.count(() -> orderMapper.pageArchiveQuery(ordersPageQueryDTO));
+            int from = Math.min((page - 1) * pageSize, ordersList.size());
+            return new PageResult(total, getOrderVOListWithDetails(ordersList.subList(from, ordersList.size())));
+        }
+
+        // 设置分页
+        PageHelper.startPage(pageNum, pageSize);
 
         // 分页条件查询
         Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
 
         List<OrderVO> list = new ArrayList();
-
-        // 查询出订单明细，并封装入OrderVO进行响应
         if (page != null && page.getTotal() > 0) {
-            for (Orders orders : page) {
-                Long orderId = orders.getId();// 订单id
+            list = getOrderVOListWithDetails(page);
+        }
+        return new PageResult(page.getTotal(), list);
+    }
 
-                // 查询订单明细
-                List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+    /**
+     * 查询出订单明细，并封装入OrderVO进行响应
+     * @param ordersList
+     * @return
+     */
+    private List<OrderVO> getOrderVOListWithDetails(List<Orders> ordersList) {
+        List<OrderVO> list = new ArrayList<>();
+        for (Orders orders : ordersList) {
+            Long orderId = orders.getId();// 订单id
 
-                OrderVO orderVO = new OrderVO();
-                BeanUtils.copyProperties(orders, orderVO);
-                orderVO.setOrderDetailList(orderDetails);
+            // 查询订单明细
+            List<OrderDetail> orderDetails = getOrderDetails(orderId);
+
+            OrderVO orderVO = new OrderVO();
+            BeanUtils.copyProperties(orders, orderVO);
+            orderVO.setOrderDetailList(orderDetails);
+
+            list.add(orderVO);
+        }
+        return list;
+    }
+
+    /**
+     * 查询订单明细，热表中没有时查询归档表
+     * @param orderId
+     * @return
+     */
+    private List<OrderDetail> getOrderDetails(Long orderId) {
+        List<OrderDetail> orderDetails = orderDetailMapper.getByOrderId(orderId);
+        if (orderDetails.isEmpty() && orderArchiveService.isEnabled()) {
+            orderDetails = orderDetailMapper.getArchiveByOrderId(orderId);
+        }
+        return orderDetails;
+    }
+
+    /**
+     * 按(下单时间, id)倒序查询热表，必要时合并归档表，最多返回seekLimit条
+     * 热表已取满且最后一条晚于归档时间线时，归档表中不会有排在前面的订单，不再查询归档表
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private List<Orders> pageQueryWithArchive(OrdersPageQueryDTO ordersPageQueryDTO) {
+        List<Orders> ordersList = orderMapper.pageQuery(ordersPageQueryDTO);
+        int limit = ordersPageQueryDTO.getSeekLimit();
+        if (!orderArchiveService.isEnabled() || ordersList.size() >= limit
+                && !orderArchiveService.reachesArchive(ordersList.get(limit - 1).getOrderTime())) {
+            return ordersList;
+        }
+        List<Orders> archiveList = orderMapper.pageArchiveQuery(ordersPageQueryDTO);
+        if (archiveList.isEmpty()) {
+            return ordersList;
+        }
+        List<Orders> merged = new ArrayList<>(ordersList);
+        merged.addAll(archiveList);
+        merged.sort(ORDER_TIME_DESC);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    /**
+     * 游标分页：按(下单时间, id)倒序从上一页最后一条之后开始查询，不执行COUNT，total固定为-1
+     * 多查一条用于判断是否还有下一页
+     * @param ordersPageQueryDTO
+     * @param query 按seekLimit条数查询订单
+     * @param converter 订单列表转换为响应数据
+     * @return
+     */
+    private PageResult seekPageQuery(OrdersPageQueryDTO ordersPageQueryDTO, Function<OrdersPageQueryDTO, List<Orders>> query,
+                                     Function<List<Orders>, List<OrderVO>> converter) {
+        applyCursor(ordersPageQueryDTO);
+        int pageSize = ordersPageQueryDTO.getPageSize() > 0 ? ordersPageQueryDTO.getPageSize() : 10;
+        ordersPageQueryDTO.setSeekLimit(pageSize + 1);
+
+        List<Orders> ordersList = query.apply(ordersPageQueryDTO);
+        if (ordersList.isEmpty() && ordersPageQueryDTO.getSeekOrderTime() == null && useInfix(ordersPageQueryDTO)) {
+            ordersList = query.apply(ordersPageQueryDTO);
+        }
+        String next = null;
+        if (ordersList.size() > pageSize) {
+            ordersList = ordersList.subList(0, pageSize);
+            next = encodeCursor(ordersList.get(pageSize - 1), ordersPageQueryDTO.getInfix());
+        }
+        return new PageResult(-1, converter.apply(ordersList), next);
+    }
 
-                list.add(orderVO);
+    /**
+     * 将继续令牌解析为游标条件，非游标分页时清空游标条件
+     * @param ordersPageQueryDTO
+     */
+    private static void applyCursor(OrdersPageQueryDTO ordersPageQueryDTO) {
+        ordersPageQueryDTO.setSeekOrderTime(null);
+        ordersPageQueryDTO.setSeekId(null);
+        ordersPageQueryDTO.setSeekLimit(null);
+        ordersPageQueryDTO.setInfix(null);
+        String cursor = ordersPageQueryDTO.getCursor();
+        if (cursor == null || cursor.isEmpty()) {
+            return;
+        }
+        try {
+            String[] values = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            ordersPageQueryDTO.setSeekOrderTime(LocalDateTime.parse(values[0]));
+            ordersPageQueryDTO.setSeekId(Long.valueOf(values[1]));
+            if (values.length > 2 && INFIX_CURSOR_FLAG.equals(values[2])) {
+                ordersPageQueryDTO.setInfix(true);
             }
+        } catch (RuntimeException e) {
+            throw new OrderBusinessException(MessageConstant.PAGE_CURSOR_INVALID);
         }
-        return new PageResult(page.getTotal(), list);
+    }
+
+    /**
+     * 以本页最后一条订单生成继续令牌，包含匹配的查询在令牌中加上标记，后续页保持同样的匹配方式
+     * @param orders
+     * @param infix
+     * @return
+     */
+    private static String encodeCursor(Orders orders, Boolean infix) {
+        String value = orders.getOrderTime() + "," + orders.getId();
+        if (Boolean.TRUE.equals(infix)) {
+            value += "," + INFIX_CURSOR_FLAG;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 按订单号、手机号的前缀或后缀没有查到订单时，改为包含匹配（中间的片段），需要重新查询时返回true
+     * 包含匹配不走索引，只在前缀、后缀都没有匹配时使用
+     * @param ordersPageQueryDTO
+     * @return
+     */
+    private static boolean useInfix(OrdersPageQueryDTO ordersPageQueryDTO) {
+        if (Boolean.TRUE.equals(ordersPageQueryDTO.getInfix())
+                || !StringUtils.hasText(ordersPageQueryDTO.getNumber()) && !StringUtils.hasText(ordersPageQueryDTO.getPhone())) {
+            return false;
+        }
+        ordersPageQueryDTO.setInfix(true);
+        return true;
     }
 
     /**
@@ -232,10 +380,13 @@ public class OrderServiceImpl implements OrderService {
      */
     @Override
     public OrderVO details(Long id) {
-        // 根据id查询订单
+        // 根据id查询订单，热表中没有时查询归档表
         Orders orders = orderMapper.getById(id);
+        if (orders == null && orderArchiveService.isEnabled()) {
+            orders = orderMapper.getArchiveById(id);
+        }
         // 查询该订单对应的菜品或套餐明细
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orders.getId());
+        List<OrderDetail> orderDetailList = getOrderDetails(orders.getId());
         // 将该订单详情封装到VO并返回
         OrderVO orderVO = new OrderVO();
         BeanUtils.copyProperties(orders, orderVO);
@@ -248,41 +399,23 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     @Override
+    @Transactional
     public void userCancelById(Long id) throws Exception {
-        // 根据id查询订单
-        Orders ordersDB = orderMapper.getById(id);
-
-        // 校验订单是否存在
-        if (ordersDB == null) {
-            throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
-        }
-
-        // 订单状态：1待付款、2待接单、3已接单、4派送中、5已完成、6已取消
-        if (ordersDB.getStatus() > 2) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-        Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-
-        // 订单处于待接单状态下取消，需要进行退款
-        if (ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            //调用微信支付退款接口
+        // 只能取消本人待付款、待接单的订单；待接单状态下取消需要进行退款，支付状态在同一条语句中按原状态改为退款
+        //调用微信支付退款接口
 //            weChatPayUtil.refund(
 //                    ordersDB.getNumber(), //商户订单号
 //                    ordersDB.getNumber(), //商户退款单号
 //                    new BigDecimal(0.01),//退款金额，单位 元
 //                    new BigDecimal(0.01));//原订单金额
 
-            //支付状态修改为 退款
-            orders.setPayStatus(Orders.REFUND);
-        }
-
         // 更新订单状态、取消原因、取消时间
-        orders.setStatus(Orders.CANCELLED);
+        Orders orders = new Orders();
+        orders.setId(id);
+        orders.setUserId(BaseContext.getCurrentId());
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        transition(OrderTransition.USER_CANCEL, orders);
     }
 
     /**
@@ -294,7 +427,7 @@ public class OrderServiceImpl implements OrderService {
         // 查询当前用户的id
         Long userId = BaseContext.getCurrentId();
         // 根据订单id查询当前订单详情
-        List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(id);
+        List<OrderDetail> orderDetailList = getOrderDetails(id);
         // 将订单详情对象转换为购物车对象
         List<ShoppingCart> shoppingCartList = orderDetailList.stream().map(x -> {
             ShoppingCart shoppingCart = new ShoppingCart();
@@ -314,9 +447,19 @@ public class OrderServiceImpl implements OrderService {
      * @return
      */
     @Override
+    @ReadReplica
     public PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO) {
+        if (ordersPageQueryDTO.getCursor() != null) {
+            return seekPageQuery(ordersPageQueryDTO, orderMapper::pageQuery, this::getOrderVOList);
+        }
+
+        applyCursor(ordersPageQueryDTO);
         PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
         Page<Orders> page = orderMapper.pageQuery(ordersPageQueryDTO);
+        if (page.getTotal() == 0 && useInfix(ordersPageQueryDTO)) {
+            PageHelper.startPage(ordersPageQueryDTO.getPage(), ordersPageQueryDTO.getPageSize());
+            page = orderMapper.pageQuery(ordersPageQueryDTO);
+        }
 
         // 部分订单状态，需要额外返回订单菜品信息，将Orders转化为OrderVO
         List<OrderVO> orderVOList = getOrderVOList(page);
@@ -324,11 +467,10 @@ public class OrderServiceImpl implements OrderService {
         return new PageResult(page.getTotal(), orderVOList);
     }
 
-    private List<OrderVO> getOrderVOList(Page<Orders> page) {
+    private List<OrderVO> getOrderVOList(List<Orders> ordersList) {
         // 需要返回订单菜品信息，自定义OrderVO响应结果
         List<OrderVO> orderVOList = new ArrayList<>();
 
-        List<Orders> ordersList = page.getResult();
         if (!CollectionUtils.isEmpty(ordersList)) {
             for (Orders orders : ordersList) {
                 OrderVO orderVO = new OrderVO();
@@ -385,13 +527,13 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersConfirmDTO
      */
     @Override
+    @Transactional
     public void confirm(OrdersConfirmDTO ordersConfirmDTO) {
-        Long id = ordersConfirmDTO.getId();
+        // 只有处于待接单（2）状态的订单才能接单
         Orders orders = Orders.builder()
-                .id(id)
-                .status(Orders.CONFIRMED)
+                .id(ordersConfirmDTO.getId())
                 .build();
-        orderMapper.update(orders);
+        transition(OrderTransition.CONFIRM, orders);
     }
 
     /**
@@ -399,13 +541,9 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersRejectionDTO
      */
     @Override
+    @Transactional
     public void rejection(OrdersRejectionDTO ordersRejectionDTO) {
-        Long id = ordersRejectionDTO.getId();
-        Orders ordersDB = orderMapper.getById(id);
         // 只有处于待接单（2）状态的订单才能被拒单
-        if (ordersDB == null || !ordersDB.getStatus().equals(Orders.TO_BE_CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
 
         /*
         //支付状态
@@ -423,12 +561,10 @@ public class OrderServiceImpl implements OrderService {
 
         // 拒单需要退款，根据订单id更新订单状态、拒单原因、取消时间
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        orders.setStatus(Orders.CANCELLED);
+        orders.setId(ordersRejectionDTO.getId());
         orders.setRejectionReason(ordersRejectionDTO.getRejectionReason());
         orders.setCancelTime(LocalDateTime.now());
-
-        orderMapper.update(orders);
+        transition(OrderTransition.REJECT, orders);
     }
 
     /**
@@ -436,15 +572,15 @@ public class OrderServiceImpl implements OrderService {
      * @param ordersCancelDTO
      */
     @Override
+    @Transactional
     public void cancel(OrdersCancelDTO ordersCancelDTO) {
-        Long id = ordersCancelDTO.getId();
+        // 已完成、已取消的订单不能再取消
         Orders orders = Orders.builder()
-                .id(id)
-                .status(Orders.CANCELLED)
+                .id(ordersCancelDTO.getId())
                 .build();
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        transition(OrderTransition.ADMIN_CANCEL, orders);
     }
 
     /**
@@ -452,18 +588,12 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     @Override
+    @Transactional
     public void delivery(Long id) {
-        Orders ordersDB = orderMapper.getById(id);
-        if (ordersDB == null || !Objects.equals(ordersDB.getStatus(), Orders.CONFIRMED)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-
-//        orders.setStatus(Orders.DELIVERY_IN_PROGRESS); myMethod
+        // 只有已接单（3）的订单才能派送，更新订单状态,状态转为派送中
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        // 更新订单状态,状态转为派送中
-        orders.setStatus(Orders.DELIVERY_IN_PROGRESS);
-        orderMapper.update(orders);
+        orders.setId(id);
+        transition(OrderTransition.DELIVER, orders);
     }
 
     /**
@@ -471,23 +601,17 @@ public class OrderServiceImpl implements OrderService {
      * @param id
      */
     @Override
+    @Transactional
     public void complete(Long id) {
-        Orders ordersDB = orderMapper.getById(id);
-        if (ordersDB == null || !Objects.equals(ordersDB.getStatus(), Orders.DELIVERY_IN_PROGRESS)) {
-            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
-        }
-//        orders.setStatus(Orders.COMPLETED);
-//        orders.setDeliveryTime(LocalDateTime.now());
+        // 只有派送中（4）的订单才能完成，更新订单状态,状态转为完成；销量排名由订单完成事件累加
         Orders orders = new Orders();
-        orders.setId(ordersDB.getId());
-        // 更新订单状态,状态转为完成
-        orders.setStatus(Orders.COMPLETED);
+        orders.setId(id);
         orders.setDeliveryTime(LocalDateTime.now());
-        orderMapper.update(orders);
+        transition(OrderTransition.COMPLETE, orders);
     }
 
     /**
-     * 用户催单
+     * 用户催单，催单提醒由订单事件异步推送
      * @param id
      */
     @Override
@@ -497,13 +621,41 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
 
-        // 通过websocket向客户端浏览器推送消息：type orderId content
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("type", 2); // 1表示来单提醒 2表示客户催单
-        map.put("orderId", id);
-        map.put("content", "订单号：" + ordersDB.getNumber());
-        // 将map转为json类型
-        String jsonString = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(jsonString);
+        orderEventPublisher.publish(OrderEvent.REMINDER, ordersDB, ordersDB.getStatus());
+    }
+
+    /**
+     * 定时任务按状态机变更订单状态，状态已被其他操作修改时跳过
+     * @param transition
+     * @param orders
+     * @return
+     */
+    @Override
+    @Transactional
+    public boolean autoTransition(OrderTransition transition, Orders orders) {
+        orders.setStatus(transition.getTo());
+        if (orderMapper.transition(orders, transition.getFrom(), transition.getRefundFrom()) == 0) {
+            return false;
+        }
+        orderEventPublisher.publish(transition.getEventType(), orders, transition.getTo());
+        return true;
+    }
+
+    /**
+     * 按状态机变更订单状态并写入订单事件，一条语句完成状态检查和更新
+     * @param transition
+     * @param orders 需要修改的字段，按id定位（id为空时按订单号）
+     */
+    private void transition(OrderTransition transition, Orders orders) {
+        orders.setStatus(transition.getTo());
+        if (orderMapper.transition(orders, transition.getFrom(), transition.getRefundFrom()) == 0) {
+            // 更新失败时再查询一次，区分订单不存在和状态不允许
+            Orders ordersDB = orders.getId() != null ? orderMapper.getById(orders.getId()) : orderMapper.getByNumber(orders.getNumber());
+            if (ordersDB == null || (orders.getUserId() != null && !orders.getUserId().equals(ordersDB.getUserId()))) {
+                throw new OrderBusinessException(MessageConstant.ORDER_NOT_FOUND);
+            }
+            throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
+        }
+        orderEventPublisher.publish(transition.getEventType(), orders, transition.getTo());
     }
 }
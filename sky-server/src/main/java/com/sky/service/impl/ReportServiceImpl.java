@@ -1,28 +1,45 @@
 package com.sky.service.impl;
 
+import com.sky.annotation.ReadReplica;
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.dto.GoodsSalesDTO;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.report.SalesRanking;
+import com.sky.service.OrderArchiveService;
 import com.sky.service.ReportService;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.BusinessDataVO;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
+@ReadReplica
 @Slf4j
 public class ReportServiceImpl implements ReportService {
 
@@ -30,6 +47,15 @@ public class ReportServiceImpl implements ReportService {
     private OrderMapper orderMapper;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+    @Autowired
+    private WorkspaceService workspaceService;
+    @Autowired
+    private SalesRanking salesRanking;
+
+    // SXSSF在内存中保留的行数
+    private static final int ROW_ACCESS_WINDOW = 100;
 
     /**
      * 统计指定时间内的营业额数据
@@ -60,6 +86,7 @@ public class ReportServiceImpl implements ReportService {
             HashMap<Object, Object> map = new HashMap<>();
             map.put("begin", beginTime);
             map.put("end", endTime);
+            map.put("archive", orderArchiveService.reachesArchive(beginTime));
             map.put("status", Orders.COMPLETED);
 
             Double turnover = orderMapper.sumByMap(map);
@@ -146,6 +173,7 @@ public class ReportServiceImpl implements ReportService {
             HashMap<Object, Object> map = new HashMap<>();
             map.put("begin", beginTime);
             map.put("end", endTime);
+            map.put("archive", orderArchiveService.reachesArchive(beginTime));
             Integer orderCount = orderMapper.countByMap(map);
             map.put("status", Orders.COMPLETED);
             Integer validOrderCount = orderMapper.countByMap(map);
@@ -183,9 +211,8 @@ public class ReportServiceImpl implements ReportService {
      */
     @Override
     public SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end) {
-        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
-        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
-        List<GoodsSalesDTO> salesTop10 = orderMapper.getSalesTop10(beginTime, endTime);
+        // 由每天的销量有序集合合并得到，不再对订单明细做全区间的关联分组
+        List<GoodsSalesDTO> salesTop10 = salesRanking.top10(begin, end);
 
         // 使用stream流来获取对应的list
         List<String> nameList = salesTop10.stream().map(GoodsSalesDTO::getName).collect(Collectors.toList());
@@ -196,4 +223,112 @@ public class ReportServiceImpl implements ReportService {
                 .numberList(StringUtils.join(numberList, ","))
                 .build();
     }
+
+    /**
+     * 导出运营数据报表：概览、每日明细、销量排名三个工作表
+     * 使用SXSSF流式写出，内存中只保留最近的ROW_ACCESS_WINDOW行，其余行写入压缩的临时文件
+     * 每日数据由一次按天分组的聚合查询得到，不再逐天查询
+     * @param begin
+     * @param end
+     * @param out
+     */
+    @Override
+    public void exportBusinessData(LocalDate begin, LocalDate end, OutputStream out) throws IOException {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+        boolean archive = orderArchiveService.reachesArchive(beginTime);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = headerStyle(workbook);
+            writeOverview(workbook.createSheet("概览"), headerStyle, begin, end,
+                    workspaceService.getBusinessData(beginTime, endTime));
+            writeDaily(workbook.createSheet("每日明细"), headerStyle, begin, end,
+                    getDailyBusinessData(beginTime, endTime, archive));
+            writeSalesTop(workbook.createSheet("销量排名"), headerStyle, salesRanking.top10(begin, end));
+            workbook.write(out);
+            out.flush();
+        } finally {
+            // 删除临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 按天合并订单和新增用户数据（订单分库时同一天会有多条记录）
+     */
+    private Map<LocalDate, DailyBusinessDTO> getDailyBusinessData(LocalDateTime begin, LocalDateTime end, boolean archive) {
+        Map<LocalDate, DailyBusinessDTO> daily = new HashMap<>();
+        for (DailyBusinessDTO dto : orderMapper.getDailyStatistics(begin, end, archive)) {
+            DailyBusinessDTO day = daily.computeIfAbsent(dto.getBusinessDate(), this::emptyDay);
+            day.setOrderCount(day.getOrderCount() + dto.getOrderCount());
+            day.setValidOrderCount(day.getValidOrderCount() + dto.getValidOrderCount());
+            day.setTurnover(day.getTurnover() + dto.getTurnover());
+        }
+        for (DailyBusinessDTO dto : userMapper.countByDay(begin, end)) {
+            daily.computeIfAbsent(dto.getBusinessDate(), this::emptyDay).setNewUsers(dto.getNewUsers());
+        }
+        return daily;
+    }
+
+    private DailyBusinessDTO emptyDay(LocalDate date) {
+        return new DailyBusinessDTO(date, 0, 0, 0.0, 0);
+    }
+
+    private void writeOverview(Sheet sheet, CellStyle headerStyle, LocalDate begin, LocalDate end, BusinessDataVO data) {
+        writeRow(sheet.createRow(0), headerStyle, "时间", begin + "至" + end);
+        writeRow(sheet.createRow(1), headerStyle, "营业额", "订单完成率", "新增用户数", "有效订单", "平均客单价");
+        writeRow(sheet.createRow(2), null, data.getTurnover(), data.getOrderCompletionRate(), data.getNewUsers(),
+                data.getValidOrderCount(), data.getUnitPrice());
+        sheet.setColumnWidth(1, 24 * 256);
+    }
+
+    private void writeDaily(Sheet sheet, CellStyle headerStyle, LocalDate begin, LocalDate end,
+                            Map<LocalDate, DailyBusinessDTO> daily) {
+        writeRow(sheet.createRow(0), headerStyle, "日期", "营业额", "订单总数", "有效订单", "订单完成率", "平均客单价", "新增用户数");
+        int rowNum = 1;
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessDTO day = daily.getOrDefault(date, emptyDay(date));
+            double completionRate = day.getOrderCount() == 0 ? 0.0 : day.getValidOrderCount().doubleValue() / day.getOrderCount();
+            double unitPrice = day.getValidOrderCount() == 0 ? 0.0 : day.getTurnover() / day.getValidOrderCount();
+            writeRow(sheet.createRow(rowNum++), null, date.toString(), day.getTurnover(), day.getOrderCount(),
+                    day.getValidOrderCount(), completionRate, unitPrice, day.getNewUsers());
+        }
+        sheet.setColumnWidth(0, 12 * 256);
+    }
+
+    private void writeSalesTop(Sheet sheet, CellStyle headerStyle, List<GoodsSalesDTO> salesTop) {
+        writeRow(sheet.createRow(0), headerStyle, "排名", "商品名称", "销量");
+        int rowNum = 1;
+        for (GoodsSalesDTO goods : salesTop) {
+            writeRow(sheet.createRow(rowNum), null, rowNum, goods.getName(), goods.getNumber());
+            rowNum++;
+        }
+        sheet.setColumnWidth(1, 24 * 256);
+    }
+
+    private static CellStyle headerStyle(Workbook workbook) {
+        Font font = workbook.createFont();
+        font.setBold(true);
+        CellStyle style = workbook.createCellStyle();
+        style.setFont(font);
+        return style;
+    }
+
+    private static void writeRow(Row row, CellStyle style, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            Cell cell = row.createCell(i);
+            Object value = values[i];
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else if (value != null) {
+                cell.setCellValue(value.toString());
+            }
+            if (style != null) {
+                cell.setCellStyle(style);
+            }
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.annotation.ReadReplica;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -11,10 +12,12 @@ import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.exception.SetmealEnableFailedException;
+import com.sky.image.ImageVariants;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.search.MenuSearchIndex;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -24,8 +27,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -36,6 +43,13 @@ public class SetmealServiceImpl implements SetmealService {
     private SetmealDishMapper setmealDishMapper;    // 套餐菜品关系表，存储套餐和菜品的关联关系
     @Autowired
     private DishMapper dishMapper;
+    @Autowired
+    private MenuSearchIndex menuSearchIndex;
+    @Autowired
+    private ImageVariants imageVariants;
+
+    // 用户端搜索最多返回的套餐数
+    private static final int SEARCH_LIMIT = 20;
 
     /**
      * 新增套餐，同时需要保存套餐和菜品的关联关系
@@ -63,6 +77,8 @@ public class SetmealServiceImpl implements SetmealService {
 
         // 保存套餐和菜品的关联关系
         setmealDishMapper.insertBatch(setmealDishes);
+
+        menuSearchIndex.putSetmeal(setmealId, setmeal.getName());
     }
 
     /**
@@ -71,7 +87,22 @@ public class SetmealServiceImpl implements SetmealService {
      * @return
      */
     @Override
+    @ReadReplica
     public PageResult pageQuery(SetmealPageQueryDTO setmealPageQueryDTO) {
+        // 按名称查询时先从搜索索引取出套餐id，避免全表模糊匹配；索引返回null时仍按名称模糊查询
+        setmealPageQueryDTO.setIds(null);
+        String name = setmealPageQueryDTO.getName();
+        if (name != null && !name.trim().isEmpty()) {
+            List<Long> ids = menuSearchIndex.searchSetmeals(name, 0);
+            if (ids != null) {
+                if (ids.isEmpty()) {
+                    return new PageResult(0, Collections.emptyList());
+                }
+                setmealPageQueryDTO.setIds(ids);
+                setmealPageQueryDTO.setName(null);
+            }
+        }
+
         PageHelper.startPage(setmealPageQueryDTO.getPage(), setmealPageQueryDTO.getPageSize());
 
         // 泛型不是Setmeal，为了适应接口（有categoryName属性），使用VO类型
@@ -79,6 +110,7 @@ public class SetmealServiceImpl implements SetmealService {
 
         long total = page.getTotal();
         List<SetmealVO> records = page.getResult();
+        fillImageVariants(records);
 
         return new PageResult(total, records);
     }
@@ -103,6 +135,8 @@ public class SetmealServiceImpl implements SetmealService {
             setmealMapper.deleteById(id);
             setmealDishMapper.deleteBySetmealId(id);
         }
+
+        menuSearchIndex.removeSetmeals(ids);
     }
 
     /**
@@ -120,6 +154,7 @@ public class SetmealServiceImpl implements SetmealService {
         SetmealVO setmealVO = new SetmealVO();
         BeanUtils.copyProperties(setmeal, setmealVO);
         setmealVO.setSetmealDishes(setmealDishes);
+        fillImageVariants(Collections.singletonList(setmealVO));
         return setmealVO;
     }
 
@@ -148,6 +183,10 @@ public class SetmealServiceImpl implements SetmealService {
 
         // 重新插入套餐和菜品的关联关系，操作setmeal_dish表，执行insert
         setmealDishMapper.insertBatch(setmealDishes);
+
+        if (setmeal.getName() != null) {
+            menuSearchIndex.putSetmeal(setmealId, setmeal.getName());
+        }
     }
 
     /**
@@ -195,4 +234,37 @@ public class SetmealServiceImpl implements SetmealService {
     public List<DishItemVO> getDishItemById(Long id) {
         return setmealMapper.getDishItemBySetmealId(id);
     }
+
+    /**
+     * 按名称搜索起售中的套餐，按匹配程度排序
+     * @param name
+     * @return
+     */
+    @ReadReplica
+    public List<Setmeal> search(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = menuSearchIndex.searchSetmeals(name, 0);
+        List<Setmeal> list;
+        if (ids == null) {
+            // 索引未加载、可能过期或匹配过多，回退到数据库模糊查询
+            list = setmealMapper.list(Setmeal.builder().name(name).status(StatusConstant.ENABLE).build());
+        } else if (ids.isEmpty()) {
+            return Collections.emptyList();
+        } else {
+            Map<Long, Setmeal> setmealMap = setmealMapper.getByIds(ids, StatusConstant.ENABLE).stream()
+                    .collect(Collectors.toMap(Setmeal::getId, Function.identity()));
+            list = ids.stream().map(setmealMap::get).filter(Objects::nonNull).collect(Collectors.toList());
+        }
+        return list.size() > SEARCH_LIMIT ? list.subList(0, SEARCH_LIMIT) : list;
+    }
+
+    /**
+     * 填充套餐图片的缩略图和压缩图地址
+     * @param setmealVOList
+     */
+    private void fillImageVariants(List<SetmealVO> setmealVOList) {
+        imageVariants.fill(setmealVOList, SetmealVO::getImage, SetmealVO::setImageThumb, SetmealVO::setImageMedium);
+    }
 }
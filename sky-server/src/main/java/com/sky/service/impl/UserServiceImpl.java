@@ -1,15 +1,12 @@
 package com.sky.service.impl;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONObject;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
-import com.sky.properties.WeChatProperties;
 import com.sky.service.UserService;
-import com.sky.utils.HttpClientUtil;
+import com.sky.wechat.WeChatLoginClient;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -18,20 +15,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
 
 @Service
 @Slf4j
 public class UserServiceImpl implements UserService {
 
-    // 微信服务接口地址
-    public static final String WX_LOGIN = "https://api.weixin.qq.com/sns/jscode2session";
-
-    @Autowired
-    private WeChatProperties weChatProperties;
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private WeChatLoginClient weChatLoginClient;
 
     /**
      * 用户微信登录
@@ -41,7 +33,7 @@ public class UserServiceImpl implements UserService {
     @Override
     public User wxLogin(UserLoginDTO userLoginDTO) {
         // 调用微信接口服务，获得当前微信用户的openid
-        String openid = getOpenid(userLoginDTO.getCode());
+        String openid = weChatLoginClient.getOpenid(userLoginDTO.getCode());
 
         // 判断openid是否为空，如果为空则表示登录失败，抛出业务异常
         if (openid == null || openid.equals("")) {
@@ -63,23 +55,4 @@ public class UserServiceImpl implements UserService {
 
         return user;
     }
-
-    /**
-     * 调用微信接口服务，获得当前微信用户的openid
-     * @param code
-     * @return
-     */
-    private String getOpenid(String code) {
-        Map<String, String> map = new HashMap<String, String>();
-        map.put("appid", weChatProperties.getAppid());
-        map.put("secret", weChatProperties.getSecret());
-        map.put("js_code", code);
-        map.put("grant_type", "authorization_code");
-
-        String json = HttpClientUtil.doGet(WX_LOGIN, map);  // 返回json格式的字符串，需要拿到其中的openid
-        JSONObject jsonObject = JSON.parseObject(json);
-        String openid = jsonObject.getString("openid");
-
-        return openid;
-    }
 }
@@ -1,36 +1,69 @@
 package com.sky.service.impl;
 
-import com.sky.constant.StatusConstant;
-import com.sky.entity.Orders;
+import com.sky.annotation.ReadReplica;
+import com.sky.context.BaseContext;
+import com.sky.datasource.ReplicaRouting;
+import com.sky.dto.DailyBusinessDTO;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.OrderArchiveService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
 import com.sky.vo.OrderOverViewVO;
 import com.sky.vo.SetmealOverViewVO;
+import com.sky.vo.WorkspaceVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 @Service
+@ReadReplica
 @Slf4j
 public class WorkspaceServiceImpl implements WorkspaceService {
 
+    // 工作台的数据项：今日数据、订单管理、菜品总览、套餐总览
+    private static final int PANEL_COUNT = 4;
+
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
-    private UserMapper userMapper;
-    @Autowired
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+    @Autowired
+    private ReplicaRouting replicaRouting;
+
+    // 并行查询工作台各项数据的线程池，每项一个线程；队列满时由调用线程自己执行
+    private final ThreadPoolExecutor panelExecutor = new ThreadPoolExecutor(PANEL_COUNT, PANEL_COUNT,
+            0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(PANEL_COUNT * 16), new ThreadFactory() {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "workspace-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, new ThreadPoolExecutor.CallerRunsPolicy());
 
     /**
      * 根据时间段统计营业数据
@@ -47,20 +80,18 @@ public class WorkspaceServiceImpl implements WorkspaceService {
          * 新增用户：当日新增用户的数量
          */
 
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("begin",begin);
-        map.put("end",end);
-
-        //查询总订单数
-        Integer totalOrderCount = orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
-        //营业额
-        Double turnover = orderMapper.sumByMap(map);
-        turnover = turnover == null? 0.0 : turnover;
-
-        //有效订单数
-        Integer validOrderCount = orderMapper.countByMap(map);
+        //订单总数、有效订单数和营业额由一条语句统计
+        DailyBusinessDTO statistics = orderMapper.getBusinessStatistics(begin, end,
+                orderArchiveService.reachesArchive(begin));
+        Integer totalOrderCount = statistics.getOrderCount();
+        Integer validOrderCount = statistics.getValidOrderCount();
+        Double turnover = statistics.getTurnover();
+
+        //新增用户数从user表按天统计后求和，user表不分片
+        Integer newUsers = 0;
+        for (DailyBusinessDTO dto : userMapper.countByDay(begin, end)) {
+            newUsers += dto.getNewUsers();
+        }
 
         Double unitPrice = 0.0;
 
@@ -72,9 +103,6 @@ public class WorkspaceServiceImpl implements WorkspaceService {
             unitPrice = turnover / validOrderCount;
         }
 
-        //新增用户数
-        Integer newUsers = userMapper.getByMap(map);
-
         return BusinessDataVO.builder()
                 .turnover(turnover)
                 .validOrderCount(validOrderCount)
@@ -91,36 +119,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("begin", LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status", Orders.TO_BE_CONFIRMED);
-
-        //待接单
-        Integer waitingOrders = orderMapper.countByMap(map);
-
-        //待派送
-        map.put("status", Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.countByMap(map);
-
-        //已完成
-        map.put("status", Orders.COMPLETED);
-        Integer completedOrders = orderMapper.countByMap(map);
-
-        //已取消
-        map.put("status", Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.countByMap(map);
-
-        //全部订单
-        map.put("status", null);
-        Integer allOrders = orderMapper.countByMap(map);
-
-        return OrderOverViewVO.builder()
-                .waitingOrders(waitingOrders)
-                .deliveredOrders(deliveredOrders)
-                .completedOrders(completedOrders)
-                .cancelledOrders(cancelledOrders)
-                .allOrders(allOrders)
-                .build();
+        //今日待接单、待派送、已完成、已取消和全部订单数由一条语句统计
+        return orderMapper.getOrderOverView(LocalDateTime.now().with(LocalTime.MIN));
     }
 
     /**
@@ -129,17 +129,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public DishOverViewVO getDishOverView() {
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = dishMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = dishMapper.countByMap(map);
-
-        return DishOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        return dishMapper.getOverView();
     }
 
     /**
@@ -148,16 +138,80 @@ public class WorkspaceServiceImpl implements WorkspaceService {
      * @return
      */
     public SetmealOverViewVO getSetmealOverView() {
-        HashMap<Object, Object> map = new HashMap<>();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = setmealMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = setmealMapper.countByMap(map);
+        return setmealMapper.getOverView();
+    }
 
-        return SetmealOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
+    /**
+     * 并行查询工作台的全部数据，耗时取决于最慢的一项
+     *
+     * @param begin
+     * @param end
+     * @return
+     */
+    public WorkspaceVO getAll(LocalDateTime begin, LocalDateTime end) {
+        CompletableFuture<BusinessDataVO> businessData = supply(() -> getBusinessData(begin, end));
+        CompletableFuture<OrderOverViewVO> orderOverView = supply(this::getOrderOverView);
+        CompletableFuture<DishOverViewVO> dishOverView = supply(this::getDishOverView);
+        CompletableFuture<SetmealOverViewVO> setmealOverView = supply(this::getSetmealOverView);
+
+        return WorkspaceVO.builder()
+                .businessData(join(businessData))
+                .orderOverView(join(orderOverView))
+                .dishOverView(join(dishOverView))
+                .setmealOverView(join(setmealOverView))
                 .build();
     }
+
+    @PreDestroy
+    public void destroy() {
+        panelExecutor.shutdown();
+    }
+
+    /**
+     * 在工作台线程池中执行查询；工作线程不经过@ReadReplica切面，需要自己标记只读
+     */
+    private <T> CompletableFuture<T> supply(Supplier<T> query) {
+        Long currentId = BaseContext.getCurrentId();
+        String currentActor = BaseContext.getCurrentActor();
+        return CompletableFuture.supplyAsync(() -> {
+            boolean nested = replicaRouting.enterReadOnly();
+            Long previousId = BaseContext.getCurrentId();
+            String previousActor = BaseContext.getCurrentActor();
+            BaseContext.setCurrentId(currentId);
+            BaseContext.setCurrentActor(currentActor);
+            try {
+                return query.get();
+            } finally {
+                replicaRouting.exitReadOnly(nested);
+                restoreCurrent(previousId, previousActor);
+            }
+        }, panelExecutor);
+    }
+
+    private static void restoreCurrent(Long previousId, String previousActor) {
+        if (previousId == null) {
+            BaseContext.removeCurrentId();
+        } else {
+            BaseContext.setCurrentId(previousId);
+        }
+        if (previousActor == null) {
+            BaseContext.removeCurrentActor();
+        } else {
+            BaseContext.setCurrentActor(previousActor);
+        }
+    }
+
+    /**
+     * 等待查询结果，查询抛出的异常原样抛出
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,290 @@
+package com.sky.sse;
+
+import com.sky.datasource.OrderShardRouter;
+import com.sky.entity.OrderEvent;
+import com.sky.event.OrderEventHandler;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.properties.OrderTrackProperties;
+import com.sky.vo.OrderTrackVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 用户端订单跟踪：每个用户保持一个（或少量）Server-Sent Events连接，订单状态变更事件分发时推送给下单用户，
+ * 代替客户端轮询订单详情。事件id为发件箱中的事件id，客户端按事件id去重
+ * 分发线程只把消息放入各连接的待发送队列，由有界的推送线程池按顺序发送；待发送消息过多的慢连接直接关闭，由客户端重连补发
+ * 事件id在写入时分配，提交晚的事件可能id更小却更晚分发，因此断线重连时按Last-Event-ID对应事件的分发时间补发之后分发的事件
+ * 分库后事件与订单在同一分片，推送的事件id末两位为分片号
+ */
+@Component
+@Slf4j
+public class OrderTracker implements OrderEventHandler {
+
+    private static final String EVENT_NAME = "order";
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+    @Autowired
+    private OrderTrackProperties orderTrackProperties;
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    // 用户id -> 连接
+    private final Map<Long, List<Connection>> connections = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(orderTrackProperties.getSendThreads(), orderTrackProperties.getSendThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(orderTrackProperties.getSendQueueSize()), runnable -> {
+            Thread thread = new Thread(runnable, "order-track-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 建立订单跟踪连接，先登记再补发，补发与实时推送可能重复，客户端按事件id去重
+     * @param userId
+     * @param lastEventId 客户端收到的最后一个事件id，首次连接为null
+     * @return
+     */
+    public SseEmitter subscribe(Long userId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(orderTrackProperties.getTimeout());
+        Connection connection = new Connection(emitter);
+        List<Connection> list = connections.compute(userId, (key, current) -> {
+            List<Connection> userConnections = current == null ? new CopyOnWriteArrayList<>() : current;
+            userConnections.add(connection);
+            return userConnections;
+        });
+        while (list.size() > orderTrackProperties.getMaxConnectionsPerUser()) {
+            Connection oldest = list.remove(0);
+            synchronized (oldest) {
+                close(userId, oldest);
+            }
+        }
+        emitter.onCompletion(() -> remove(userId, connection));
+        emitter.onTimeout(() -> remove(userId, connection));
+        emitter.onError(e -> remove(userId, connection));
+
+        enqueue(userId, connection, SseEmitter.event().reconnectTime(orderTrackProperties.getReconnectTime()).comment("connected"));
+        if (lastEventId != null) {
+            for (OrderEvent orderEvent : replay(userId, lastEventId)) {
+                if (tracked(orderEvent)) {
+                    enqueue(userId, connection, event(orderEvent));
+                }
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * 订单状态变更，放入下单用户所有连接的待发送队列
+     * @param orderEvent
+     */
+    @Override
+    public void handle(OrderEvent orderEvent) {
+        if (!tracked(orderEvent) || orderEvent.getUserId() == null) {
+            return;
+        }
+        List<Connection> list = connections.get(orderEvent.getUserId());
+        if (list == null) {
+            return;
+        }
+        for (Connection connection : list) {
+            enqueue(orderEvent.getUserId(), connection, event(orderEvent));
+        }
+    }
+
+    /**
+     * 定时发送心跳，同时清理已断开的连接
+     */
+    @Scheduled(fixedDelayString = "${sky.order-track.heartbeat-interval:15000}")
+    public void heartbeat() {
+        connections.forEach((userId, list) -> {
+            for (Connection connection : list) {
+                enqueue(userId, connection, SseEmitter.event().comment("heartbeat"));
+            }
+        });
+    }
+
+    /**
+     * 当前的连接数
+     * @return
+     */
+    public int getConnections() {
+        int count = 0;
+        for (List<Connection> list : connections.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    /**
+     * 查询需要补发的事件：最后收到的事件有分发时间时按分发顺序补发，否则按事件id补发（只能在同一分片内比较）
+     */
+    private List<OrderEvent> replay(Long userId, Long lastEventId) {
+        int shard = orderShardRouter.shardOfPublicEventId(lastEventId);
+        long eventId = orderShardRouter.eventIdOf(lastEventId);
+        LocalDateTime dispatchTime = orderShardRouter.onEventShard(shard, () -> orderEventMapper.getDispatchTime(eventId));
+        if (dispatchTime == null) {
+            return orderShardRouter.onEventShard(shard, () ->
+                    orderEventMapper.getDoneByUserAfter(userId, eventId, orderTrackProperties.getReplayLimit()));
+        }
+        LocalDateTime since = dispatchTime.minus(orderTrackProperties.getReplayLookback(), ChronoUnit.MILLIS);
+        return orderEventMapper.getDoneByUserSince(userId, since, orderTrackProperties.getReplayLimit());
+    }
+
+    /**
+     * 放入连接的待发送队列，连接空闲时提交给推送线程；队列已满或推送线程池已满时关闭连接
+     */
+    private void enqueue(Long userId, Connection connection, SseEmitter.SseEventBuilder event) {
+        boolean submit;
+        synchronized (connection) {
+            if (connection.closed) {
+                return;
+            }
+            if (connection.pending.size() >= orderTrackProperties.getMaxPendingPerConnection()) {
+                log.info("用户{}的订单跟踪连接待发送消息过多，关闭连接", userId);
+                close(userId, connection);
+                return;
+            }
+            connection.pending.addLast(event);
+            submit = !connection.sending;
+            connection.sending = true;
+        }
+        if (submit) {
+            try {
+                executor.execute(() -> drain(userId, connection));
+            } catch (RejectedExecutionException e) {
+                log.info("订单跟踪推送线程池已满，关闭用户{}的连接", userId);
+                synchronized (connection) {
+                    connection.sending = false;
+                    close(userId, connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按顺序发送连接的待发送消息，发送失败时关闭连接，客户端重连后按Last-Event-ID补发
+     */
+    private void drain(Long userId, Connection connection) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            synchronized (connection) {
+                event = connection.pending.pollFirst();
+                if (event == null || connection.closed) {
+                    connection.sending = false;
+                    if (connection.closed) {
+                        complete(connection);
+                    }
+                    return;
+                }
+            }
+            try {
+                connection.emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                synchronized (connection) {
+                    connection.sending = false;
+                    close(userId, connection);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 关闭连接并丢弃待发送消息，调用方持有连接的锁
+     * 推送线程正在发送时由推送线程在发送结束后关闭，不让调用方（分发线程）等待慢连接
+     */
+    private void close(Long userId, Connection connection) {
+        connection.closed = true;
+        connection.pending.clear();
+        remove(userId, connection);
+        if (!connection.sending) {
+            complete(connection);
+        }
+    }
+
+    private void complete(Connection connection) {
+        try {
+            connection.emitter.complete();
+        } catch (IllegalStateException e) {
+            log.debug("订单跟踪连接已关闭：{}", e.getMessage());
+        }
+    }
+
+    private SseEmitter.SseEventBuilder event(OrderEvent orderEvent) {
+        OrderTrackVO orderTrackVO = OrderTrackVO.builder()
+                .orderId(orderEvent.getOrderId())
+                .orderNumber(orderEvent.getOrderNumber())
+                .eventType(orderEvent.getEventType())
+                .status(orderEvent.getOrderStatus())
+                .time(orderEvent.getCreateTime())
+                .build();
+        Integer shard = orderShardRouter.shardOfOrder(orderEvent.getOrderId(), orderEvent.getOrderNumber());
+        return SseEmitter.event()
+                .id(String.valueOf(orderShardRouter.publicEventId(orderEvent.getId(), shard == null ? 0 : shard)))
+                .name(EVENT_NAME)
+                .data(orderTrackVO, MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * 催单是用户自己发起的，不推送给用户
+     */
+    private boolean tracked(OrderEvent orderEvent) {
+        return !OrderEvent.REMINDER.equals(orderEvent.getEventType());
+    }
+
+    private void remove(Long userId, Connection connection) {
+        connections.computeIfPresent(userId, (key, list) -> {
+            list.remove(connection);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    /**
+     * 一个订单跟踪连接和它的待发送消息
+     */
+    private static class Connection {
+        private final SseEmitter emitter;
+        private final Deque<SseEmitter.SseEventBuilder> pending = new ArrayDeque<>();
+        // 是否已有推送线程在发送，保证同一连接的消息按顺序发送
+        private boolean sending;
+        private boolean closed;
+
+        private Connection(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
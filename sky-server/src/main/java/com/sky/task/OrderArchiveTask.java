@@ -0,0 +1,63 @@
+package com.sky.task;
+
+import com.sky.datasource.OrderShardRouter;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ArchiveProperties;
+import com.sky.service.OrderArchiveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 定时任务类，将冷订单移入归档表，使热表和索引保持在缓冲池能容纳的大小
+ */
+@Component
+@Slf4j
+public class OrderArchiveTask {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderArchiveService orderArchiveService;
+    @Autowired
+    private ArchiveProperties archiveProperties;
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * 每日凌晨3点，分批归档已完成、已取消的历史订单
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void archiveColdOrders() throws InterruptedException {
+        if (!archiveProperties.isEnabled()) {
+            return;
+        }
+        LocalDateTime orderTime = LocalDateTime.now().minusDays(archiveProperties.getDays());
+        log.info("开始归档{}之前的订单", orderTime);
+        int total = 0;
+        while (true) {
+            List<Long> ids = orderMapper.getColdOrderIds(orderTime, archiveProperties.getBatchSize());
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+            // 每个事务只归档同一分片上的订单，复制和删除在该分片上同时提交
+            Map<Integer, List<Long>> shards = new TreeMap<>();
+            for (Long id : ids) {
+                shards.computeIfAbsent(orderShardRouter.shardOfOrderId(id), shard -> new ArrayList<>()).add(id);
+            }
+            for (List<Long> shardIds : shards.values()) {
+                orderArchiveService.archive(shardIds);
+            }
+            total += ids.size();
+            Thread.sleep(archiveProperties.getBatchInterval());
+        }
+        log.info("订单归档完成，共归档{}个订单", total);
+    }
+}
@@ -2,6 +2,8 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderService;
+import com.sky.service.OrderTransition;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -20,6 +22,8 @@ public class OrderTask {
 
     @Autowired
     private OrderMapper orderMapper;
+    @Autowired
+    private OrderService orderService;
 
     /**
      * 处理超时订单的方法
@@ -32,10 +36,11 @@ public class OrderTask {
                 orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, LocalDateTime.now().plusMinutes(-15));
         if (ordersList != null && ordersList.size() > 0) {
             for (Orders order : ordersList) {
-                order.setStatus(Orders.CANCELLED);
-                order.setCancelReason("订单超时，自动取消");
-                order.setCancelTime(LocalDateTime.now());
-                orderMapper.update(order);
+                // 仍为待支付时才取消，查询之后刚支付成功的订单不受影响
+                Orders orders = target(order);
+                orders.setCancelReason("订单超时，自动取消");
+                orders.setCancelTime(LocalDateTime.now());
+                transition(OrderTransition.TIMEOUT_CANCEL, orders);
             }
         }
     }
@@ -50,10 +55,31 @@ public class OrderTask {
                 orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, LocalDateTime.now().plusMinutes(-60));
         if (ordersList != null && ordersList.size() > 0) {
             for (Orders order : ordersList) {
-                order.setStatus(Orders.COMPLETED);
-
-                orderMapper.update(order);
+                // 销量排名由订单完成事件累加
+                transition(OrderTransition.COMPLETE, target(order));
             }
         }
     }
+
+    /**
+     * 状态变更的定位条件，同时带上事件需要的用户id和订单号
+     */
+    private Orders target(Orders order) {
+        return Orders.builder()
+                .id(order.getId())
+                .userId(order.getUserId())
+                .number(order.getNumber())
+                .build();
+    }
+
+    /**
+     * 每个订单在单独的事务中变更状态并写入订单事件，一个订单失败不影响其余订单，下次执行时重试
+     */
+    private void transition(OrderTransition transition, Orders orders) {
+        try {
+            orderService.autoTransition(transition, orders);
+        } catch (RuntimeException e) {
+            log.error("订单{}的状态变更{}失败", orders.getId(), transition, e);
+        }
+    }
 }
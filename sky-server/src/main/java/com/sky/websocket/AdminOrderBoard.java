@@ -0,0 +1,303 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.entity.OrderEvent;
+import com.sky.entity.Orders;
+import com.sky.event.OrderEventHandler;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderBoardProperties;
+import com.sky.ratelimit.RateLimiter;
+import com.sky.vo.OrderStatisticsVO;
+import com.sky.vo.OrderSummaryVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 管理端订单看板：订单状态变更时通过websocket推送带序号的增量消息（订单摘要），浏览器在本地维护看板，
+ * 不再轮询订单统计和订单搜索接口
+ * 同步协议：连接后发送{"type":"snapshot"}获取快照（进行中的订单和各状态数量，附当前序号），之后只应用序号更大的增量；
+ * 发现序号不连续时发送{"type":"resync","seq":已收到的最大序号}，最近的增量仍在缓存中则补发，否则重新发送快照
+ * redis模式下序号和最近增量的缓存都在Redis中，分配序号、缓存和发布由一个脚本完成，各实例订阅后推送给本实例的浏览器，
+ * 无论事件由哪个实例分发，所有浏览器收到的增量和序号都一致；local模式下序号只在本实例内递增，只能单实例部署
+ * 快照查询数据库时不持有锁，查询期间产生的增量在快照之后补发，客户端按订单id覆盖，重复应用没有影响；
+ * 快照和补发请求按员工限流，超出的请求被忽略
+ */
+@Component
+@Slf4j
+public class AdminOrderBoard implements OrderEventHandler {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm";
+    private static final int DELTA = 3; // 3表示订单增量
+    private static final int SNAPSHOT = 4; // 4表示订单快照
+    private static final String SYNC_LIMIT = "order-board-sync";
+    private static final String LOCAL_MODE = "local";
+    private static final String SEQUENCE_KEY = "order-board:seq";
+    private static final String HISTORY_KEY = "order-board:history";
+    private static final String CHANNEL = "order-board:delta";
+
+    // KEYS 序号、最近增量的有序集合，ARGV 消息中序号之前和之后的部分、缓存的增量数、发布的频道；返回分配的序号
+    private static final DefaultRedisScript<Long> PUBLISH_SCRIPT = new DefaultRedisScript<>(
+            "local seq = redis.call('INCR', KEYS[1])\n" +
+            "local message = ARGV[1] .. seq .. ARGV[2]\n" +
+            "redis.call('ZADD', KEYS[2], seq, message)\n" +
+            "redis.call('ZREMRANGEBYRANK', KEYS[2], 0, -tonumber(ARGV[3]) - 1)\n" +
+            "redis.call('PUBLISH', ARGV[4], message)\n" +
+            "return seq", Long.class);
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderBoardProperties orderBoardProperties;
+    @Autowired
+    private RateLimiter rateLimiter;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisConnectionFactory redisConnectionFactory;
+
+    // local模式下最近的增量消息，序号连续递增；序号分配、缓存和推送在同一把锁内完成，保证各客户端收到的顺序与序号一致
+    private final Deque<Delta> history = new ArrayDeque<>();
+    private long sequence;
+
+    // redis模式下订阅增量的监听容器，单线程按发布顺序推送
+    private RedisMessageListenerContainer listenerContainer;
+    private ThreadPoolTaskExecutor listenerExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (isLocal()) {
+            log.warn("订单看板为local模式，序号只在本实例内递增，只能单实例部署");
+            return;
+        }
+        listenerExecutor = new ThreadPoolTaskExecutor();
+        listenerExecutor.setCorePoolSize(1);
+        listenerExecutor.setMaxPoolSize(1);
+        listenerExecutor.setThreadNamePrefix("order-board-");
+        listenerExecutor.setDaemon(true);
+        listenerExecutor.initialize();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.setTaskExecutor(listenerExecutor);
+        listenerContainer.addMessageListener((message, pattern) ->
+                push(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @PreDestroy
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+            listenerExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 订单状态变更，推送增量给所有通过令牌校验的商家端浏览器
+     * @param orderEvent
+     */
+    @Override
+    public void handle(OrderEvent orderEvent) {
+        // 催单不改变订单状态，由催单提醒单独推送
+        if (OrderEvent.REMINDER.equals(orderEvent.getEventType()) || orderEvent.getOrderId() == null) {
+            return;
+        }
+        Orders orders = orderMapper.getById(orderEvent.getOrderId());
+        OrderSummaryVO summary = orders != null ? summary(orders) : OrderSummaryVO.builder()
+                .id(orderEvent.getOrderId())
+                .number(orderEvent.getOrderNumber())
+                .status(orderEvent.getOrderStatus())
+                .build();
+
+        // 推送消息：seq type event order，分配序号时插入到消息开头
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", DELTA);
+        map.put("event", orderEvent.getEventType());
+        map.put("order", summary);
+        String prefix = "{\"seq\":";
+        String suffix = "," + JSON.toJSONStringWithDateFormat(map, DATE_FORMAT).substring(1);
+
+        if (!isLocal()) {
+            // 由订阅者推送，包括本实例
+            stringRedisTemplate.execute(PUBLISH_SCRIPT, Arrays.asList(SEQUENCE_KEY, HISTORY_KEY),
+                    prefix, suffix, String.valueOf(orderBoardProperties.getHistorySize()), CHANNEL);
+            return;
+        }
+        synchronized (this) {
+            long seq = ++sequence;
+            String message = prefix + seq + suffix;
+            history.addLast(new Delta(seq, message));
+            while (history.size() > orderBoardProperties.getHistorySize()) {
+                history.removeFirst();
+            }
+            webSocketServer.sendToAuthorizedClients(message);
+        }
+    }
+
+    /**
+     * 员工的快照、补发请求是否未超出限额
+     * @param empId
+     * @return
+     */
+    public boolean allowSync(Long empId) {
+        return rateLimiter.acquire(SYNC_LIMIT, String.valueOf(empId),
+                orderBoardProperties.getSyncPermitsPerSecond(), orderBoardProperties.getSyncBurst()) == 0;
+    }
+
+    /**
+     * 向指定客户端发送快照，先取当前序号再查询数据库
+     * @param sid
+     */
+    public void snapshot(String sid) {
+        long seq = currentSequence();
+
+        OrderStatisticsVO statistics = new OrderStatisticsVO();
+        statistics.setToBeConfirmed(orderMapper.countStatus(Orders.TO_BE_CONFIRMED));
+        statistics.setConfirmed(orderMapper.countStatus(Orders.CONFIRMED));
+        statistics.setDeliveryInProgress(orderMapper.countStatus(Orders.DELIVERY_IN_PROGRESS));
+
+        // 分库时各分片的结果合并后按下单时间倒序截取
+        List<OrderSummaryVO> orders = new ArrayList<>();
+        for (Orders item : orderMapper.getActive(orderBoardProperties.getSnapshotLimit())) {
+            orders.add(summary(item));
+        }
+
+        // 推送消息：type seq statistics orders
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", SNAPSHOT);
+        map.put("seq", seq);
+        map.put("statistics", statistics);
+        map.put("orders", orders);
+        String message = JSON.toJSONStringWithDateFormat(map, DATE_FORMAT);
+
+        // 快照之后补发查询期间产生的增量，之后的增量在释放锁后按序号推送
+        synchronized (this) {
+            webSocketServer.sendToClient(sid, message);
+            List<String> deltas = deltasAfter(seq);
+            if (deltas != null) {
+                for (String delta : deltas) {
+                    webSocketServer.sendToClient(sid, delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * 客户端发现序号不连续，补发序号之后的增量；缓存中已没有这些增量时发送快照
+     * @param sid
+     * @param seq 客户端收到的最大序号
+     */
+    public void resync(String sid, Long seq) {
+        if (seq != null) {
+            synchronized (this) {
+                List<String> deltas = deltasAfter(seq);
+                if (deltas != null) {
+                    for (String delta : deltas) {
+                        webSocketServer.sendToClient(sid, delta);
+                    }
+                    return;
+                }
+            }
+        }
+        snapshot(sid);
+    }
+
+    /**
+     * redis模式下收到发布的增量，推送给本实例的浏览器
+     */
+    private synchronized void push(String message) {
+        webSocketServer.sendToAuthorizedClients(message);
+    }
+
+    private boolean isLocal() {
+        return LOCAL_MODE.equals(orderBoardProperties.getMode());
+    }
+
+    private long currentSequence() {
+        if (isLocal()) {
+            synchronized (this) {
+                return sequence;
+            }
+        }
+        String value = stringRedisTemplate.opsForValue().get(SEQUENCE_KEY);
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * 序号之后缓存的增量消息，按序号排列
+     * @return 客户端的序号大于当前序号，或缓存中已没有紧接着的增量时返回null，需要发送快照
+     */
+    private List<String> deltasAfter(long seq) {
+        long current = currentSequence();
+        List<String> deltas = new ArrayList<>();
+        // 缓存中序号大于seq的第一条增量
+        long first = current + 1;
+        if (isLocal()) {
+            for (Delta delta : history) {
+                if (delta.seq > seq) {
+                    first = deltas.isEmpty() ? delta.seq : first;
+                    deltas.add(delta.message);
+                }
+            }
+        } else {
+            Set<ZSetOperations.TypedTuple<String>> tuples =
+                    stringRedisTemplate.opsForZSet().rangeByScoreWithScores(HISTORY_KEY, seq + 1, Double.POSITIVE_INFINITY);
+            if (tuples != null) {
+                for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                    first = deltas.isEmpty() ? tuple.getScore().longValue() : first;
+                    deltas.add(tuple.getValue());
+                }
+            }
+        }
+        if (seq > current || seq < current && first > seq + 1) {
+            return null;
+        }
+        return deltas;
+    }
+
+    private OrderSummaryVO summary(Orders orders) {
+        return OrderSummaryVO.builder()
+                .id(orders.getId())
+                .number(orders.getNumber())
+                .status(orders.getStatus())
+                .payStatus(orders.getPayStatus())
+                .orderTime(orders.getOrderTime())
+                .estimatedDeliveryTime(orders.getEstimatedDeliveryTime())
+                .build();
+    }
+
+    /**
+     * 一条已推送的增量消息
+     */
+    private static class Delta {
+        private final long seq;
+        private final String message;
+
+        private Delta(long seq, String message) {
+            this.seq = seq;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.properties.OrderEventProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 催单推送合并：同一订单的首次催单立即推送，之后窗口内的催单只计数，窗口结束时合并为一条带累计次数的推送
+ * 持续催单时每个窗口最多推送一次，推送次数和消息序列化不再随点击次数增长
+ */
+@Component
+public class ReminderCoalescer {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+    @Autowired
+    private OrderEventProperties orderEventProperties;
+
+    // 订单id -> 当前窗口
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "reminder-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 客户催单
+     * @param orderId
+     * @param orderNumber
+     */
+    public void remind(Long orderId, String orderNumber) {
+        boolean[] first = new boolean[1];
+        windows.compute(orderId, (id, window) -> {
+            if (window == null) {
+                first[0] = true;
+                return new Window(orderNumber);
+            }
+            window.pending++;
+            window.total++;
+            return window;
+        });
+        if (first[0]) {
+            send(orderId, orderNumber, 1);
+            scheduleClose(orderId);
+        }
+    }
+
+    /**
+     * 窗口结束：有新的催单时推送累计次数并开始下一个窗口，否则结束合并
+     */
+    private void close(Long orderId) {
+        int[] total = new int[1];
+        Window current = windows.computeIfPresent(orderId, (id, window) -> {
+            if (window.pending == 0) {
+                return null;
+            }
+            window.pending = 0;
+            total[0] = window.total;
+            return window;
+        });
+        if (current != null) {
+            send(orderId, current.orderNumber, total[0]);
+            scheduleClose(orderId);
+        }
+    }
+
+    private void scheduleClose(Long orderId) {
+        scheduler.schedule(() -> close(orderId), orderEventProperties.getReminderWindow(), TimeUnit.MILLISECONDS);
+    }
+
+    private void send(Long orderId, String orderNumber, int count) {
+        // 推送消息：type orderId content count
+        HashMap<Object, Object> map = new HashMap<>();
+        map.put("type", 2); // 1表示来单提醒 2表示客户催单
+        map.put("orderId", orderId);
+        map.put("content", "订单号：" + orderNumber);
+        map.put("count", count); // 本轮累计催单次数
+        webSocketServer.sendToAllClient(JSON.toJSONString(map));
+    }
+
+    /**
+     * 一个订单的合并窗口
+     */
+    private static class Window {
+        private final String orderNumber;
+        // 本窗口内尚未推送的催单次数
+        private int pending;
+        // 首次催单以来的累计次数
+        private int total = 1;
+
+        private Window(String orderNumber) {
+            this.orderNumber = orderNumber;
+        }
+    }
+}
@@ -1,43 +1,108 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import javax.websocket.HandshakeResponse;
 import javax.websocket.OnClose;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
+import javax.websocket.server.HandshakeRequest;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
+import javax.websocket.server.ServerEndpointConfig;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * WebSocket服务
+ * WebSocket服务：握手时校验管理端jwt令牌（请求头或token查询参数，浏览器的WebSocket无法设置请求头）
+ * 没有令牌或令牌无效的连接（旧版管理端）仍可接收来单、催单提醒，订单看板的增量、快照和补发只对通过校验的员工开放
  */
 @Component
-@ServerEndpoint("/ws/{sid}")
+@ServerEndpoint(value = "/ws/{sid}", configurator = WebSocketServer.AuthConfigurator.class)
+@Slf4j
 public class WebSocketServer {
 
+    //握手时解析出的员工id在会话属性中的名称
+    private static final String EMP_ID = "empId";
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static Map<String, Session> sessionMap = new ConcurrentHashMap<>();
+    //每个连接由容器创建新的实例，依赖的Bean保存在静态变量中
+    private static AdminOrderBoard adminOrderBoard;
+    private static JwtProperties jwtProperties;
+
+    @Autowired
+    public void setAdminOrderBoard(AdminOrderBoard adminOrderBoard) {
+        WebSocketServer.adminOrderBoard = adminOrderBoard;
+    }
+
+    @Autowired
+    public void setJwtProperties(JwtProperties jwtProperties) {
+        WebSocketServer.jwtProperties = jwtProperties;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
+        if (session.getUserProperties().get(EMP_ID) == null) {
+            log.info("客户端：{}未携带有效令牌，只接收来单、催单提醒", sid);
+        }
         System.out.println("客户端：" + sid + "建立连接");
         sessionMap.put(sid, session);
     }
 
     /**
      * 收到客户端消息后调用的方法
+     * 订单看板同步请求：{"type":"snapshot"} 获取快照，{"type":"resync","seq":N} 补发序号N之后的增量
      *
      * @param message 客户端发送过来的消息
      */
     @OnMessage
-    public void onMessage(String message, @PathParam("sid") String sid) {
+    public void onMessage(String message, Session session, @PathParam("sid") String sid) {
+        if (sessionMap.get(sid) != session) {
+            return;
+        }
         System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        JSONObject request;
+        try {
+            request = JSON.parseObject(message);
+        } catch (JSONException e) {
+            return;
+        }
+        if (request == null) {
+            return;
+        }
+        String type = request.getString("type");
+        if (!"snapshot".equals(type) && !"resync".equals(type)) {
+            return;
+        }
+        Long empId = (Long) session.getUserProperties().get(EMP_ID);
+        if (empId == null) {
+            log.info("客户端：{}未通过令牌校验，忽略订单看板同步请求", sid);
+            return;
+        }
+        if (!adminOrderBoard.allowSync(empId)) {
+            log.info("客户端：{}的同步请求过于频繁，忽略", sid);
+            return;
+        }
+        if ("snapshot".equals(type)) {
+            adminOrderBoard.snapshot(sid);
+        } else if ("resync".equals(type)) {
+            adminOrderBoard.resync(sid, request.getLong("seq"));
+        }
     }
 
     /**
@@ -46,9 +111,9 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
+    public void onClose(Session session, @PathParam("sid") String sid) {
         System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+        sessionMap.remove(sid, session);
     }
 
     /**
@@ -59,6 +124,39 @@ public class WebSocketServer {
     public void sendToAllClient(String message) {
         Collection<Session> sessions = sessionMap.values();
         for (Session session : sessions) {
+            send(session, message);
+        }
+    }
+
+    /**
+     * 发送给所有通过令牌校验的客户端（订单看板）
+     *
+     * @param message
+     */
+    public void sendToAuthorizedClients(String message) {
+        for (Session session : sessionMap.values()) {
+            if (session.getUserProperties().get(EMP_ID) != null) {
+                send(session, message);
+            }
+        }
+    }
+
+    /**
+     * 发送给指定客户端
+     *
+     * @param sid
+     * @param message
+     */
+    public void sendToClient(String sid, String message) {
+        Session session = sessionMap.get(sid);
+        if (session != null) {
+            send(session, message);
+        }
+    }
+
+    private void send(Session session, String message) {
+        //同一会话不允许并发发送，群发、催单合并和看板同步可能在不同线程中发送
+        synchronized (session) {
             try {
                 //服务器向客户端发送消息
                 session.getBasicRemote().sendText(message);
@@ -68,4 +166,31 @@ public class WebSocketServer {
         }
     }
 
+    /**
+     * 握手时校验管理端jwt令牌，通过时把员工id保存到会话属性中
+     */
+    public static class AuthConfigurator extends ServerEndpointConfig.Configurator {
+
+        @Override
+        public void modifyHandshake(ServerEndpointConfig sec, HandshakeRequest request, HandshakeResponse response) {
+            String tokenName = jwtProperties.getAdminTokenName();
+            String token = first(request.getHeaders().get(tokenName));
+            if (token == null) {
+                token = first(request.getParameterMap().get(tokenName));
+            }
+            if (token == null) {
+                return;
+            }
+            try {
+                Claims claims = JwtUtil.parseJWT(jwtProperties.getAdminSecretKey(), token);
+                sec.getUserProperties().put(EMP_ID, Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString()));
+            } catch (Exception e) {
+                log.info("WebSocket令牌校验失败：{}", e.getMessage());
+            }
+        }
+
+        private static String first(List<String> values) {
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+    }
 }
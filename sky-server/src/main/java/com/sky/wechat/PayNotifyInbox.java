@@ -0,0 +1,144 @@
+package com.sky.wechat;
+
+import com.sky.entity.PayNotify;
+import com.sky.mapper.PayNotifyMapper;
+import com.sky.properties.PayNotifyProperties;
+import com.sky.service.OrderService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支付回调收件箱：回调按微信支付交易号去重后落库，立即应答微信，再由独立线程池处理订单状态
+ * 处理失败按指数退避重试；线程池满或服务重启时留在收件箱中的回调由定时任务补偿
+ * 每次处理前先领取（带租约），同一条回调在多个线程或实例间只会被一个处理
+ */
+@Component
+@Slf4j
+public class PayNotifyInbox {
+
+    private static final int LAST_ERROR_LENGTH = 255;
+
+    @Autowired
+    private PayNotifyMapper payNotifyMapper;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private PayNotifyProperties payNotifyProperties;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(payNotifyProperties.getThreads(), payNotifyProperties.getThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(payNotifyProperties.getQueueSize()), runnable -> {
+            Thread thread = new Thread(runnable, "pay-notify-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 保存支付回调并提交处理
+     * @param outTradeNo 商户平台订单号
+     * @param transactionId 微信支付交易号
+     * @return 是否为首次收到的回调，重复通知返回false
+     */
+    public boolean accept(String outTradeNo, String transactionId) {
+        LocalDateTime now = LocalDateTime.now();
+        PayNotify payNotify = PayNotify.builder()
+                .transactionId(transactionId)
+                .outTradeNo(outTradeNo)
+                .status(PayNotify.PENDING)
+                .attempts(0)
+                .nextRetryTime(now)
+                .createTime(now)
+                .updateTime(now)
+                .build();
+        try {
+            payNotifyMapper.insert(payNotify);
+        } catch (DuplicateKeyException e) {
+            log.info("重复的支付回调，交易号：{}", transactionId);
+            return false;
+        }
+        submit(payNotify.getId());
+        return true;
+    }
+
+    /**
+     * 定时补偿：处理到期的待处理回调（重试、线程池满时未提交、处理中断的回调）
+     */
+    @Scheduled(fixedDelayString = "${sky.pay-notify.poll-interval:5000}")
+    public void processDue() {
+        List<Long> ids = payNotifyMapper.getDueIds(LocalDateTime.now(), payNotifyProperties.getBatchSize());
+        for (Long id : ids) {
+            if (!submit(id)) {
+                break;
+            }
+        }
+    }
+
+    private boolean submit(Long id) {
+        try {
+            executor.execute(() -> process(id));
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("支付回调处理排队已满，{}留待定时任务处理", id);
+            return false;
+        }
+    }
+
+    /**
+     * 领取并处理一条回调，失败时安排重试
+     */
+    private void process(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (payNotifyMapper.claim(id, now, now.plus(payNotifyProperties.getLease(), ChronoUnit.MILLIS)) == 0) {
+            return;
+        }
+        PayNotify payNotify = payNotifyMapper.getById(id);
+        PayNotify result = PayNotify.builder().id(id).build();
+        try {
+            orderService.paySuccess(payNotify.getOutTradeNo());
+            result.setStatus(PayNotify.DONE);
+            result.setNextRetryTime(now);
+        } catch (RuntimeException e) {
+            int attempts = payNotify.getAttempts();
+            String error = String.valueOf(e.getMessage());
+            result.setLastError(error.length() > LAST_ERROR_LENGTH ? error.substring(0, LAST_ERROR_LENGTH) : error);
+            if (attempts >= payNotifyProperties.getMaxAttempts()) {
+                log.error("支付回调处理失败且重试次数已用尽，订单号：{}，交易号：{}", payNotify.getOutTradeNo(), payNotify.getTransactionId(), e);
+                result.setStatus(PayNotify.FAILED);
+                result.setNextRetryTime(now);
+            } else {
+                long delay = Math.min(payNotifyProperties.getRetryDelay() << Math.min(attempts - 1, 20),
+                        payNotifyProperties.getMaxRetryDelay());
+                log.warn("支付回调处理失败，第{}次，{}ms后重试，订单号：{}：{}", attempts, delay, payNotify.getOutTradeNo(), e.getMessage());
+                result.setStatus(PayNotify.PENDING);
+                result.setNextRetryTime(LocalDateTime.now().plus(delay, ChronoUnit.MILLIS));
+            }
+        }
+        result.setUpdateTime(LocalDateTime.now());
+        payNotifyMapper.updateResult(result);
+    }
+}
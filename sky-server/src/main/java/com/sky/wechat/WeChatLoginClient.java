@@ -0,0 +1,129 @@
+package com.sky.wechat;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.MessageConstant;
+import com.sky.exception.LoginFailedException;
+import com.sky.properties.WeChatProperties;
+import com.sky.utils.CircuitBreaker;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 微信登录凭证校验接口的客户端
+ * 接口调用在独立的有界线程池中执行（舱壁），请求线程最多等待loginTimeout；
+ * 线程池满、等待超时或熔断时立即返回登录繁忙，微信服务异常不会占满Tomcat线程拖慢其他接口
+ */
+@Component
+@Slf4j
+public class WeChatLoginClient {
+
+    // 微信接口返回的系统繁忙错误码，与参数错误不同，计为一次失败
+    private static final int ERRCODE_BUSY = -1;
+
+    @Autowired
+    private WeChatProperties weChatProperties;
+    @Autowired
+    private HttpClientUtil httpClientUtil;
+
+    private ThreadPoolExecutor executor;
+    private CircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(weChatProperties.getLoginMaxConcurrent(), weChatProperties.getLoginMaxConcurrent(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(weChatProperties.getLoginMaxQueued()), runnable -> {
+            Thread thread = new Thread(runnable, "wechat-login-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        circuitBreaker = new CircuitBreaker("wechat-login", weChatProperties.getBreakerFailureThreshold(),
+                weChatProperties.getBreakerOpenMillis(), weChatProperties.getBreakerHalfOpenCalls());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 调用微信接口服务，获得当前微信用户的openid
+     * @param code
+     * @return 接口返回的openid，凭证无效时为null
+     */
+    public String getOpenid(String code) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new LoginFailedException(MessageConstant.LOGIN_BUSY);
+        }
+
+        Map<String, String> map = new HashMap<>();
+        map.put("appid", weChatProperties.getAppid());
+        map.put("secret", weChatProperties.getSecret());
+        map.put("js_code", code);
+        map.put("grant_type", "authorization_code");
+
+        Future<String> future;
+        try {
+            future = executor.submit(() -> httpClientUtil.doGet(weChatProperties.getLoginUrl(), map));
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.release();
+            log.warn("微信登录请求排队已满，直接返回");
+            throw new LoginFailedException(MessageConstant.LOGIN_BUSY);
+        }
+
+        String json;
+        try {
+            json = future.get(weChatProperties.getLoginTimeout(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 还在排队的请求不再执行；已发出的请求由socket超时结束
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            log.warn("微信登录接口{}毫秒内未返回", weChatProperties.getLoginTimeout());
+            throw new LoginFailedException(MessageConstant.LOGIN_BUSY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            circuitBreaker.release();
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            log.warn("微信登录接口调用失败：{}", e.getCause().getMessage());
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        }
+
+        // 网络异常或状态码不是200时返回空字符串
+        JSONObject jsonObject = json.isEmpty() ? null : JSON.parseObject(json);
+        if (jsonObject == null || Integer.valueOf(ERRCODE_BUSY).equals(jsonObject.getInteger("errcode"))) {
+            circuitBreaker.onFailure();
+            log.warn("微信登录接口返回异常：{}", json);
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        }
+        circuitBreaker.onSuccess();
+        return jsonObject.getString("openid");
+    }
+
+    /**
+     * 熔断器当前状态
+     * @return
+     */
+    public CircuitBreaker.State getBreakerState() {
+        return circuitBreaker.getState();
+    }
+}
@@ -0,0 +1,4 @@
+-- 事件最近一次被领取分发的时间：事件id在写入时分配，提交晚的事件可能id更小却更晚分发，
+-- 订单跟踪断线重连时按分发时间而不是事件id补发
+alter table order_event add column dispatch_time datetime;
+create index idx_order_event_user_dispatch on order_event (user_id, dispatch_time);
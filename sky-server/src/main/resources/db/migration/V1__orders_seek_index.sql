@@ -0,0 +1,5 @@
+-- 订单列表按 order_time desc, id desc 游标分页所需的联合索引
+-- 用户历史订单：user_id等值过滤后沿(order_time, id)倒序扫描
+create index idx_orders_user_time on orders (user_id, order_time, id);
+-- 管理端订单搜索：无用户条件时沿(order_time, id)倒序扫描
+create index idx_orders_time on orders (order_time, id);
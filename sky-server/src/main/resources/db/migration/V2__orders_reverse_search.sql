@@ -0,0 +1,8 @@
+-- 订单号、手机号的反转列：按尾号（后缀）查询转为反转列上的前缀查询，可以走索引
+alter table orders add column number_rev varchar(50);
+alter table orders add column phone_rev varchar(11);
+update orders set number_rev = reverse(number), phone_rev = reverse(phone);
+create index idx_orders_number on orders (number);
+create index idx_orders_number_rev on orders (number_rev);
+create index idx_orders_phone on orders (phone);
+create index idx_orders_phone_rev on orders (phone_rev);
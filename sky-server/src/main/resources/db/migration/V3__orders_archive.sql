@@ -0,0 +1,8 @@
+-- 冷订单归档表：结构与热表相同（orders加列时需同步修改归档表），只保留历史查询需要的索引
+create table if not exists orders_archive as select * from orders where 1 = 0;
+alter table orders_archive add primary key (id);
+create index idx_orders_archive_user_time on orders_archive (user_id, order_time, id);
+create index idx_orders_archive_time on orders_archive (order_time, id);
+create table if not exists order_detail_archive as select * from order_detail where 1 = 0;
+alter table order_detail_archive add primary key (id);
+create index idx_order_detail_archive_order on order_detail_archive (order_id);
@@ -0,0 +1,15 @@
+-- 支付回调收件箱：回调先落库再异步处理，transaction_id唯一，微信重复通知只保存一次
+-- status 0 待处理 1 已处理 2 重试次数用尽；next_retry_time 到期后才会被处理，处理中的记录用它作为租约
+create table if not exists pay_notify (
+    id              bigint       not null auto_increment primary key,
+    transaction_id  varchar(64)  not null,
+    out_trade_no    varchar(50)  not null,
+    status          int          not null default 0,
+    attempts        int          not null default 0,
+    next_retry_time datetime     not null,
+    last_error      varchar(255),
+    create_time     datetime     not null,
+    update_time     datetime     not null
+);
+create unique index uk_pay_notify_transaction on pay_notify (transaction_id);
+create index idx_pay_notify_status_retry on pay_notify (status, next_retry_time);
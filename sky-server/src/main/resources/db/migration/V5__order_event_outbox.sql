@@ -0,0 +1,17 @@
+-- 订单事件发件箱：与订单状态变更在同一事务中写入，由OrderEventDispatcher批量领取后分发给各处理器
+-- status 0 待分发 1 已分发 2 重试次数用尽；领取时写入claim_token并把next_retry_time推迟到租约结束
+create table if not exists order_event (
+    id              bigint       not null auto_increment primary key,
+    event_type      varchar(32)  not null,
+    order_id        bigint       not null,
+    user_id         bigint,
+    order_number    varchar(50),
+    order_status    int,
+    status          int          not null default 0,
+    attempts        int          not null default 0,
+    next_retry_time datetime     not null,
+    claim_token     varchar(36),
+    create_time     datetime     not null
+);
+create index idx_order_event_status_retry on order_event (status, next_retry_time);
+create index idx_order_event_claim on order_event (claim_token);
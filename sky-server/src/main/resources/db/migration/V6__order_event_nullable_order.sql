@@ -0,0 +1,2 @@
+-- 订单状态改为条件更新一次完成后，按订单号变更的事件（支付成功）写入时还不知道订单id，由分发器补全
+alter table order_event modify column order_id bigint null;
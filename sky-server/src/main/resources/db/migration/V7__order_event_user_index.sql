@@ -0,0 +1,2 @@
+-- 订单跟踪断线重连时按用户补发之后的订单事件
+create index idx_order_event_user on order_event (user_id, id);
@@ -0,0 +1,7 @@
+-- 启用分库后订单id的号段：各实例从主库（0号分片）按号段申请序号，订单id = 序号 * 100 + 分片号
+-- 序号从1e10开始，生成的id不小于1e12，与启用分库前的自增id不重叠，id小于1e12的订单都在0号分片
+create table if not exists order_id_segment (
+    name      varchar(32) primary key,
+    max_value bigint      not null
+);
+insert into order_id_segment (name, max_value) values ('orders', 10000000000);
@@ -0,0 +1,2 @@
+-- 订单事件已成功处理的处理器名称（逗号分隔）：部分处理器失败重试时跳过已处理的处理器，不重复累加销量、不重复推送
+alter table order_event add column handled varchar(255);
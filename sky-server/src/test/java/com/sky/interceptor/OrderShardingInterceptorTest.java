@@ -0,0 +1,334 @@
+package com.sky.interceptor;
+
+import com.github.pagehelper.Page;
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInterceptor;
+import com.sky.datasource.OrderShardRouter;
+import com.sky.dto.DailyBusinessDTO;
+import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ShardingProperties;
+import com.sky.vo.OrderOverViewVO;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 订单分库：每个分片一个内嵌H2数据库，通过OrderMapper验证路由和各分片结果的合并
+ */
+public class OrderShardingInterceptorTest {
+
+    private static final int SHARDS = 3;
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2026, 1, 1, 12, 0);
+    // 与OrderShardRouter的规则一致：订单id = 序号 * 100 + 分片号
+    private static final long SEQUENCE = 10_000_000_000L;
+
+    private final List<String> urls = new ArrayList<>();
+    private OrderShardRouter orderShardRouter;
+    private SqlSession sqlSession;
+    private OrderMapper orderMapper;
+    private OrderDetailMapper orderDetailMapper;
+    private long nextSequence = SEQUENCE;
+
+    /**
+     * H2没有MySQL的reverse函数，由order-shard.sql注册
+     */
+    public static String reverse(String value) {
+        return value == null ? null : new StringBuilder(value).reverse().toString();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String name = "order_shard_" + System.nanoTime();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            String url = "jdbc:h2:mem:" + name + "_" + shard + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+            urls.add(url);
+            try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+                ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/order-shard.sql"));
+            }
+        }
+
+        ShardingProperties shardingProperties = new ShardingProperties();
+        shardingProperties.setEnabled(true);
+        shardingProperties.setLegacyOnPrimary(true);
+        for (int shard = 1; shard < SHARDS; shard++) {
+            ShardingProperties.Shard config = new ShardingProperties.Shard();
+            config.setUrl(urls.get(shard));
+            config.setUsername("sa");
+            config.setPassword("");
+            shardingProperties.getShards().add(config);
+        }
+        orderShardRouter = new OrderShardRouter();
+        ReflectionTestUtils.setField(orderShardRouter, "shardingProperties", shardingProperties);
+        orderShardRouter.init();
+
+        OrderShardingInterceptor shardingInterceptor = new OrderShardingInterceptor();
+        ReflectionTestUtils.setField(shardingInterceptor, "orderShardRouter", orderShardRouter);
+        PageInterceptor pageInterceptor = new PageInterceptor();
+        Properties pageProperties = new Properties();
+        pageProperties.setProperty("helperDialect", "mysql");
+        pageInterceptor.setProperties(pageProperties);
+
+        JdbcDataSource primary = new JdbcDataSource();
+        primary.setURL(urls.get(0));
+        primary.setUser("sa");
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), primary));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.getTypeAliasRegistry().registerAliases("com.sky.entity");
+        // 分库插件在最内层，PageHelper在外层
+        configuration.addInterceptor(shardingInterceptor);
+        configuration.addInterceptor(pageInterceptor);
+        for (String resource : new String[]{"mapper/OrderMapper.xml", "mapper/OrderDetailMapper.xml"}) {
+            try (InputStream in = Resources.getResourceAsStream(resource)) {
+                new XMLMapperBuilder(in, configuration, resource, configuration.getSqlFragments()).parse();
+            }
+        }
+        sqlSession = new SqlSessionFactoryBuilder().build(configuration).openSession(true);
+        orderMapper = sqlSession.getMapper(OrderMapper.class);
+        orderDetailMapper = sqlSession.getMapper(OrderDetailMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        PageHelper.clearPage();
+        sqlSession.close();
+        orderShardRouter.close();
+        for (String url : urls) {
+            try (Connection connection = DriverManager.getConnection(url, "sa", "");
+                 Statement statement = connection.createStatement()) {
+                statement.execute("shutdown");
+            }
+        }
+    }
+
+    @Test
+    void routesByUserOrderIdAndNumber() throws SQLException {
+        // 用户5在2号分片
+        Long userId = 5L;
+        Orders orders = newOrder(userId, Orders.PENDING_PAYMENT, BASE_TIME);
+        orderMapper.insert(orders);
+        OrderDetail orderDetail = new OrderDetail();
+        orderDetail.setOrderId(orders.getId());
+        orderDetail.setName("宫保鸡丁");
+        orderDetail.setNumber(2);
+        orderDetail.setAmount(new BigDecimal("28.00"));
+        orderDetailMapper.insertBatch(Collections.singletonList(orderDetail));
+
+        assertEquals(0, count(0, "orders"));
+        assertEquals(0, count(1, "orders"));
+        assertEquals(1, count(2, "orders"));
+        assertEquals(1, count(2, "order_detail"));
+
+        assertEquals(userId, orderMapper.getById(orders.getId()).getUserId());
+        assertEquals(orders.getId(), orderMapper.getByNumber(orders.getNumber()).getId());
+        assertEquals("宫保鸡丁", orderDetailMapper.getByOrderId(orders.getId()).get(0).getName());
+
+        Orders cancel = Orders.builder().id(orders.getId()).status(Orders.CANCELLED).build();
+        assertEquals(1, orderMapper.transition(cancel, Collections.singletonList(Orders.PENDING_PAYMENT), null));
+        assertEquals(Orders.CANCELLED, orderMapper.getById(orders.getId()).getStatus());
+    }
+
+    @Test
+    void legacyOrdersStayOnPrimary() throws SQLException {
+        // 启用分库前的自增id和13位订单号，用户4在1号分片
+        insertOrder(0, 42L, "1600000000000", 4L, Orders.COMPLETED, BASE_TIME.minusDays(1));
+        Orders orders = newOrder(4L, Orders.PENDING_PAYMENT, BASE_TIME);
+        orderMapper.insert(orders);
+
+        assertEquals(0, orderShardRouter.shardOfOrderId(42L));
+        assertEquals(0, orderShardRouter.shardOfNumber("1600000000000"));
+        assertEquals("1600000000000", orderMapper.getById(42L).getNumber());
+        assertEquals(42L, orderMapper.getByNumber("1600000000000").getId());
+
+        // 按用户查询同时查询用户所在分片和0号分片
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        query.setUserId(4L);
+        PageHelper.startPage(1, 10);
+        Page<Orders> page = orderMapper.pageQuery(query);
+        assertEquals(2, page.getTotal());
+        assertEquals(orders.getId(), page.getResult().get(0).getId());
+        assertEquals(42L, page.getResult().get(1).getId());
+    }
+
+    @Test
+    void mergesPagesAcrossShards() throws SQLException {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int shard = i % SHARDS;
+            long id = (nextSequence++) * 100 + shard;
+            insertOrder(shard, id, BASE_TIME.toString() + i, (long) shard, Orders.COMPLETED, BASE_TIME.plusMinutes(i));
+            expected.add(0, id);
+        }
+
+        OrdersPageQueryDTO query = new OrdersPageQueryDTO();
+        PageHelper.startPage(2, 3);
+        Page<Orders> page = orderMapper.pageQuery(query);
+
+        assertEquals(10, page.getTotal());
+        assertEquals(expected.subList(3, 6), page.getResult().stream().map(Orders::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void trimsMergedRowsToLimit() throws SQLException {
+        for (int i = 0; i < 9; i++) {
+            int shard = i % SHARDS;
+            insertOrder(shard, (nextSequence++) * 100 + shard, String.valueOf(i), (long) shard,
+                    Orders.TO_BE_CONFIRMED, BASE_TIME.plusMinutes(i));
+        }
+
+        List<Orders> active = orderMapper.getActive(4);
+
+        assertEquals(4, active.size());
+        assertEquals(BASE_TIME.plusMinutes(8), active.get(0).getOrderTime());
+        assertEquals(BASE_TIME.plusMinutes(5), active.get(3).getOrderTime());
+    }
+
+    @Test
+    void mergesCountsAndStatistics() throws SQLException {
+        insertOrder(0, 1L, "1600000000001", 3L, Orders.COMPLETED, BASE_TIME);
+        insertOrder(1, (nextSequence++) * 100 + 1, "a", 1L, Orders.COMPLETED, BASE_TIME);
+        insertOrder(1, (nextSequence++) * 100 + 1, "b", 1L, Orders.TO_BE_CONFIRMED, BASE_TIME);
+        insertOrder(2, (nextSequence++) * 100 + 2, "c", 2L, Orders.TO_BE_CONFIRMED, BASE_TIME);
+        insertOrder(2, (nextSequence++) * 100 + 2, "d", 2L, Orders.CANCELLED, BASE_TIME);
+
+        assertEquals(2, orderMapper.countStatus(Orders.TO_BE_CONFIRMED));
+
+        DailyBusinessDTO statistics = orderMapper.getBusinessStatistics(
+                BASE_TIME.minusDays(1), BASE_TIME.plusDays(1), false);
+        assertEquals(5, statistics.getOrderCount());
+        assertEquals(2, statistics.getValidOrderCount());
+        assertEquals(200.0, statistics.getTurnover().doubleValue(), 0.001);
+
+        OrderOverViewVO overView = orderMapper.getOrderOverView(BASE_TIME.minusDays(1));
+        assertEquals(5, overView.getAllOrders());
+        assertEquals(2, overView.getWaitingOrders());
+        assertEquals(2, overView.getCompletedOrders());
+        assertEquals(1, overView.getCancelledOrders());
+    }
+
+    @Test
+    void salesRankingUsesFullTotalsOfEachShard() throws SQLException {
+        // 每个分片上"招牌牛肉"都只排第11名，合计后排第1名
+        for (int shard = 1; shard < SHARDS; shard++) {
+            long orderId = (nextSequence++) * 100 + shard;
+            insertOrder(shard, orderId, String.valueOf(orderId), (long) shard, Orders.COMPLETED, BASE_TIME);
+            for (int dish = 0; dish < 10; dish++) {
+                insertDetail(shard, orderId, "菜品" + shard + "-" + dish, 10);
+            }
+            insertDetail(shard, orderId, "招牌牛肉", 9);
+        }
+
+        List<GoodsSalesDTO> top10 = orderMapper.getSalesTop10(BASE_TIME.minusDays(1), BASE_TIME.plusDays(1), false);
+
+        assertEquals(10, top10.size());
+        assertEquals("招牌牛肉", top10.get(0).getName());
+        assertEquals(18, top10.get(0).getNumber());
+    }
+
+    @Test
+    void refusesWritesToTwoShardsInOneTransaction() throws SQLException {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            orderMapper.insert(newOrder(1L, Orders.PENDING_PAYMENT, BASE_TIME));
+            PersistenceException e = assertThrows(PersistenceException.class,
+                    () -> orderMapper.insert(newOrder(2L, Orders.PENDING_PAYMENT, BASE_TIME)));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        } finally {
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        // 事务回滚，1号分片上的订单没有提交
+        assertEquals(0, count(1, "orders"));
+        assertEquals(0, count(2, "orders"));
+    }
+
+    private Orders newOrder(Long userId, Integer status, LocalDateTime orderTime) {
+        int shard = orderShardRouter.shardOfUser(userId);
+        Orders orders = Orders.builder()
+                .id((nextSequence++) * 100 + shard)
+                .number(orderShardRouter.orderNumber(userId))
+                .userId(userId)
+                .status(status)
+                .payStatus(Orders.UN_PAID)
+                .orderTime(orderTime)
+                .amount(new BigDecimal("100.00"))
+                .build();
+        assertNotNull(orders.getNumber());
+        return orders;
+    }
+
+    private void insertOrder(int shard, Long id, String number, Long userId, Integer status, LocalDateTime orderTime)
+            throws SQLException {
+        try (Connection connection = DriverManager.getConnection(urls.get(shard), "sa", "");
+             PreparedStatement ps = connection.prepareStatement("insert into orders (id, number, user_id, status, order_time, amount)"
+                     + " values (?, ?, ?, ?, ?, 100)")) {
+            ps.setLong(1, id);
+            ps.setString(2, number);
+            ps.setLong(3, userId);
+            ps.setInt(4, status);
+            ps.setTimestamp(5, Timestamp.valueOf(orderTime));
+            ps.executeUpdate();
+        }
+    }
+
+    private void insertDetail(int shard, Long orderId, String name, int number) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(urls.get(shard), "sa", "");
+             PreparedStatement ps = connection.prepareStatement(
+                     "insert into order_detail (order_id, name, number, amount) values (?, ?, ?, 10)")) {
+            ps.setLong(1, orderId);
+            ps.setString(2, name);
+            ps.setInt(3, number);
+            ps.executeUpdate();
+        }
+    }
+
+    private int count(int shard, String table) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(urls.get(shard), "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select count(*) from " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.sky.ratelimit;
+
+import com.sky.properties.RateLimitProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * GCRA令牌桶：local模式的本地计数，以及redis模式下Lua脚本的计算（需要本机6379端口的Redis，不可用时跳过）
+ */
+public class RateLimiterTest {
+
+    private static final String NAME = "test";
+    // 每秒1次，发放间隔1秒
+    private static final long INTERVAL = 1_000_000;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate stringRedisTemplate;
+
+    @AfterEach
+    void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    void localAllowsBurstThenRejects() {
+        RateLimiter rateLimiter = rateLimiter("local", null);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, rateLimiter.acquire(NAME, "1", 1, 3));
+        }
+        long wait = rateLimiter.acquire(NAME, "1", 1, 3);
+        // 第一个令牌在约1秒后补充
+        assertTrue(wait > INTERVAL / 2 && wait <= INTERVAL, String.valueOf(wait));
+    }
+
+    @Test
+    void localRejectionDoesNotConsumePermit() {
+        RateLimiter rateLimiter = rateLimiter("local", null);
+        assertEquals(0, rateLimiter.acquire(NAME, "1", 1, 1));
+        long first = rateLimiter.acquire(NAME, "1", 1, 1);
+        long second = rateLimiter.acquire(NAME, "1", 1, 1);
+        assertTrue(first > 0);
+        // 被拒绝的请求不推迟理论到达时间，等待时间只随时间流逝减少
+        assertTrue(second > 0 && second <= first, first + " " + second);
+    }
+
+    @Test
+    void localRefillsAfterInterval() throws InterruptedException {
+        RateLimiter rateLimiter = rateLimiter("local", null);
+        // 每秒200次，发放间隔5毫秒
+        assertEquals(0, rateLimiter.acquire(NAME, "1", 200, 1));
+        long wait = rateLimiter.acquire(NAME, "1", 200, 1);
+        assertTrue(wait > 0 && wait <= 5_000, String.valueOf(wait));
+        Thread.sleep(wait / 1000 + 2);
+        assertEquals(0, rateLimiter.acquire(NAME, "1", 200, 1));
+    }
+
+    @Test
+    void localKeysAndNamesAreIndependent() {
+        RateLimiter rateLimiter = rateLimiter("local", null);
+        assertEquals(0, rateLimiter.acquire(NAME, "1", 1, 1));
+        assertTrue(rateLimiter.acquire(NAME, "1", 1, 1) > 0);
+        assertEquals(0, rateLimiter.acquire(NAME, "2", 1, 1));
+        assertEquals(0, rateLimiter.acquire("other", "1", 1, 1));
+    }
+
+    @Test
+    void evictIdleRemovesRefilledBuckets() throws InterruptedException {
+        RateLimiter rateLimiter = rateLimiter("local", null);
+        rateLimiter.acquire(NAME, "fast", 1000, 1);
+        rateLimiter.acquire(NAME, "slow", 0.01, 1);
+        Thread.sleep(5);
+        rateLimiter.evictIdle();
+
+        Map<?, ?> buckets = (Map<?, ?>) ReflectionTestUtils.getField(rateLimiter, "buckets");
+        assertNotNull(buckets);
+        assertEquals(1, buckets.size());
+        assertTrue(buckets.containsKey("rate:" + NAME + ":slow"));
+        // 清理后仍在限额内
+        assertTrue(rateLimiter.acquire(NAME, "slow", 0.01, 1) > 0);
+    }
+
+    @Test
+    void redisUnavailableFallsBackToLocal() {
+        connectionFactory = connectionFactory(1);
+        RateLimiter rateLimiter = rateLimiter("redis", template(connectionFactory));
+        assertEquals(0, rateLimiter.acquire(NAME, "1", 1, 1));
+        assertTrue(rateLimiter.acquire(NAME, "1", 1, 1) > 0);
+    }
+
+    @Test
+    void redisScriptAllowsBurstThenRejects() {
+        RateLimiter rateLimiter = redisRateLimiter();
+        String key = UUID.randomUUID().toString();
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(0, rateLimiter.acquire(NAME, key, 1, 3));
+            }
+            long wait = rateLimiter.acquire(NAME, key, 1, 3);
+            assertTrue(wait > INTERVAL / 2 && wait <= INTERVAL, String.valueOf(wait));
+
+            // 被拒绝的请求不修改理论到达时间
+            String tat = stringRedisTemplate.opsForValue().get("rate:" + NAME + ":" + key);
+            rateLimiter.acquire(NAME, key, 1, 3);
+            assertEquals(tat, stringRedisTemplate.opsForValue().get("rate:" + NAME + ":" + key));
+        } finally {
+            stringRedisTemplate.delete("rate:" + NAME + ":" + key);
+        }
+    }
+
+    @Test
+    void redisKeyExpiresWhenBucketIsFull() {
+        RateLimiter rateLimiter = redisRateLimiter();
+        String key = UUID.randomUUID().toString();
+        try {
+            assertEquals(0, rateLimiter.acquire(NAME, key, 1, 3));
+            Long ttl = stringRedisTemplate.getExpire("rate:" + NAME + ":" + key);
+            // 理论到达时间为1秒后，键在补满后约1秒过期
+            assertNotNull(ttl);
+            assertTrue(ttl > 0 && ttl <= 2, String.valueOf(ttl));
+        } finally {
+            stringRedisTemplate.delete("rate:" + NAME + ":" + key);
+        }
+    }
+
+    @Test
+    void redisRefillsAfterInterval() throws InterruptedException {
+        RateLimiter rateLimiter = redisRateLimiter();
+        String key = UUID.randomUUID().toString();
+        try {
+            // 每秒20次，发放间隔50毫秒
+            assertEquals(0, rateLimiter.acquire(NAME, key, 20, 1));
+            long wait = rateLimiter.acquire(NAME, key, 20, 1);
+            assertTrue(wait > 0 && wait <= 50_000, String.valueOf(wait));
+            Thread.sleep(wait / 1000 + 5);
+            assertEquals(0, rateLimiter.acquire(NAME, key, 20, 1));
+        } finally {
+            stringRedisTemplate.delete("rate:" + NAME + ":" + key);
+        }
+    }
+
+    private RateLimiter redisRateLimiter() {
+        connectionFactory = connectionFactory(6379);
+        boolean available;
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            available = "PONG".equals(connection.ping());
+        } catch (RuntimeException e) {
+            available = false;
+        }
+        assumeTrue(available, "本机没有可用的Redis");
+        stringRedisTemplate = template(connectionFactory);
+        return rateLimiter("redis", stringRedisTemplate);
+    }
+
+    private static RateLimiter rateLimiter(String mode, StringRedisTemplate stringRedisTemplate) {
+        RateLimitProperties rateLimitProperties = new RateLimitProperties();
+        rateLimitProperties.setMode(mode);
+        RateLimiter rateLimiter = new RateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "rateLimitProperties", rateLimitProperties);
+        ReflectionTestUtils.setField(rateLimiter, "stringRedisTemplate", stringRedisTemplate);
+        return rateLimiter;
+    }
+
+    private static LettuceConnectionFactory connectionFactory(int port) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+        return connectionFactory;
+    }
+
+    private static StringRedisTemplate template(LettuceConnectionFactory connectionFactory) {
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+        return stringRedisTemplate;
+    }
+}
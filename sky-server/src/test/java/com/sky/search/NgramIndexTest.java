@@ -0,0 +1,83 @@
+package com.sky.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 名称的n-gram倒排索引：切分、子串匹配和排序
+ */
+public class NgramIndexTest {
+
+    private NgramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new NgramIndex();
+        index.put(1L, "宫保鸡丁");
+        index.put(2L, "辣子鸡");
+        index.put(3L, "鸡");
+        index.put(4L, "鸡蛋炒饭");
+        index.put(5L, "小鸡炖蘑菇");
+        index.put(6L, "Coca Cola");
+    }
+
+    @Test
+    void singleCharacterMatchesAnyPosition() {
+        // 完全相同的在前，其余按匹配位置、名称长度、id排序
+        assertEquals(Arrays.asList(3L, 4L, 5L, 2L, 1L), index.search("鸡", 0));
+    }
+
+    @Test
+    void multiCharacterKeywordMustBeSubstring() {
+        assertEquals(Collections.singletonList(1L), index.search("鸡丁", 0));
+        assertEquals(Collections.singletonList(4L), index.search("蛋炒", 0));
+        // 包含关键字的所有bigram但不连续的名称不匹配
+        index.put(7L, "鸡丁丁鸡");
+        assertEquals(Collections.emptyList(), index.search("鸡丁鸡", 0));
+        assertEquals(Collections.emptyList(), index.search("鸡肉", 0));
+    }
+
+    @Test
+    void keywordIsNormalized() {
+        // 忽略大小写和空白
+        assertEquals(Collections.singletonList(6L), index.search("cocacola", 0));
+        assertEquals(Collections.singletonList(6L), index.search(" COCA  co ", 0));
+        assertEquals(Collections.emptyList(), index.search("   ", 0));
+        assertEquals(Collections.emptyList(), index.search(null, 0));
+    }
+
+    @Test
+    void limitTruncatesRankedResult() {
+        assertEquals(Arrays.asList(3L, 4L), index.search("鸡", 2));
+        assertEquals(5, index.search("鸡", 10).size());
+    }
+
+    @Test
+    void putReplacesOldName() {
+        index.put(2L, "水煮鱼");
+        assertEquals(Collections.emptyList(), index.search("辣子", 0));
+        assertEquals(Collections.singletonList(2L), index.search("煮鱼", 0));
+        assertFalse(index.search("鸡", 0).contains(2L));
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void removeDropsIdFromAllPostings() {
+        index.remove(3L);
+        index.remove(99L);
+        assertEquals(Arrays.asList(4L, 5L, 2L, 1L), index.search("鸡", 0));
+        assertEquals(5, index.size());
+
+        index.remove(1L);
+        index.remove(2L);
+        index.remove(4L);
+        index.remove(5L);
+        assertEquals(Collections.emptyList(), index.search("鸡", 0));
+    }
+}
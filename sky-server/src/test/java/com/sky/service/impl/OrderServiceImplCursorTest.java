@@ -0,0 +1,138 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.OrdersPageQueryDTO;
+import com.sky.entity.Orders;
+import com.sky.exception.OrderBusinessException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 订单游标分页的继续令牌：Base64编码的“下单时间,id[,i]”与查询条件之间的转换
+ */
+public class OrderServiceImplCursorTest {
+
+    @Test
+    void cursorRoundTrip() {
+        LocalDateTime orderTime = LocalDateTime.of(2026, 3, 8, 9, 30, 15);
+        String cursor = encode(Orders.builder().id(174140000000042L).orderTime(orderTime).build(), false);
+
+        OrdersPageQueryDTO dto = query(cursor);
+        apply(dto);
+
+        assertEquals(orderTime, dto.getSeekOrderTime());
+        assertEquals(174140000000042L, dto.getSeekId());
+        assertNull(dto.getInfix());
+        assertNull(dto.getSeekLimit());
+    }
+
+    @Test
+    void cursorKeepsWholeMinutesAndNanos() {
+        // LocalDateTime.toString在秒为0时省略秒，有纳秒时带小数
+        LocalDateTime wholeMinute = LocalDateTime.of(2026, 3, 8, 9, 30);
+        LocalDateTime withNanos = LocalDateTime.of(2026, 3, 8, 9, 30, 15, 123_000_000);
+
+        OrdersPageQueryDTO dto = query(encode(Orders.builder().id(1L).orderTime(wholeMinute).build(), false));
+        apply(dto);
+        assertEquals(wholeMinute, dto.getSeekOrderTime());
+
+        dto = query(encode(Orders.builder().id(2L).orderTime(withNanos).build(), false));
+        apply(dto);
+        assertEquals(withNanos, dto.getSeekOrderTime());
+    }
+
+    @Test
+    void infixFlagIsCarriedToNextPage() {
+        String cursor = encode(Orders.builder().id(7L).orderTime(LocalDateTime.of(2026, 3, 8, 9, 30, 15)).build(), true);
+        assertEquals("2026-03-08T09:30:15,7,i", decode(cursor));
+
+        OrdersPageQueryDTO dto = query(cursor);
+        apply(dto);
+        assertEquals(Boolean.TRUE, dto.getInfix());
+        assertEquals(7L, dto.getSeekId());
+    }
+
+    @Test
+    void cursorIsUrlSafeWithoutPadding() {
+        // 不同长度的内容覆盖需要补齐的各种情况
+        for (long id = 1; id < 1000; id += 37) {
+            String cursor = encode(Orders.builder().id(id).orderTime(LocalDateTime.of(2026, 3, 8, 9, 30, 15)).build(), id % 2 == 0);
+            assertFalse(cursor.contains("+") || cursor.contains("/") || cursor.contains("="), cursor);
+        }
+    }
+
+    @Test
+    void missingCursorClearsSeekConditions() {
+        OrdersPageQueryDTO dto = query(null);
+        dto.setSeekOrderTime(LocalDateTime.now());
+        dto.setSeekId(1L);
+        dto.setSeekLimit(11);
+        dto.setInfix(true);
+        apply(dto);
+        assertNull(dto.getSeekOrderTime());
+        assertNull(dto.getSeekId());
+        assertNull(dto.getSeekLimit());
+        assertNull(dto.getInfix());
+
+        dto = query("");
+        dto.setInfix(true);
+        apply(dto);
+        assertNull(dto.getSeekOrderTime());
+        assertNull(dto.getInfix());
+    }
+
+    @Test
+    void unknownFlagIsIgnored() {
+        OrdersPageQueryDTO dto = query(Base64.getUrlEncoder().encodeToString("2026-03-08T09:30:15,7,x".getBytes(StandardCharsets.UTF_8)));
+        apply(dto);
+        assertEquals(7L, dto.getSeekId());
+        assertNull(dto.getInfix());
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        String[] invalid = {
+                "not base64!",
+                raw("2026-03-08T09:30:15"),
+                raw("yesterday,7"),
+                raw("2026-03-08T09:30:15,abc"),
+                raw("")
+        };
+        for (String cursor : invalid) {
+            OrderBusinessException e = assertThrows(OrderBusinessException.class, () -> apply(query(cursor)), cursor);
+            assertEquals(MessageConstant.PAGE_CURSOR_INVALID, e.getMessage());
+        }
+    }
+
+    private static OrdersPageQueryDTO query(String cursor) {
+        OrdersPageQueryDTO dto = new OrdersPageQueryDTO();
+        dto.setPageSize(10);
+        dto.setCursor(cursor);
+        return dto;
+    }
+
+    private static void apply(OrdersPageQueryDTO dto) {
+        ReflectionTestUtils.invokeMethod(OrderServiceImpl.class, "applyCursor", dto);
+    }
+
+    private static String encode(Orders orders, Boolean infix) {
+        return ReflectionTestUtils.invokeMethod(OrderServiceImpl.class, "encodeCursor", orders, infix);
+    }
+
+    private static String raw(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,132 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.OrderEventProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 催单推送合并：首次立即推送，窗口内的催单在窗口结束时合并推送，没有新催单的窗口结束后合并结束
+ */
+public class ReminderCoalescerTest {
+
+    private static final long WINDOW = 200;
+
+    private WebSocketServer webSocketServer;
+    private ReminderCoalescer reminderCoalescer;
+
+    @BeforeEach
+    void setUp() {
+        webSocketServer = mock(WebSocketServer.class);
+        OrderEventProperties orderEventProperties = new OrderEventProperties();
+        orderEventProperties.setReminderWindow(WINDOW);
+        reminderCoalescer = new ReminderCoalescer();
+        ReflectionTestUtils.setField(reminderCoalescer, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(reminderCoalescer, "orderEventProperties", orderEventProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reminderCoalescer.destroy();
+    }
+
+    @Test
+    void firstReminderIsSentImmediately() {
+        reminderCoalescer.remind(1L, "N1");
+
+        List<JSONObject> messages = messages(1);
+        assertEquals(2, messages.get(0).getIntValue("type"));
+        assertEquals(1L, messages.get(0).getLongValue("orderId"));
+        assertEquals("订单号：N1", messages.get(0).getString("content"));
+        assertEquals(1, messages.get(0).getIntValue("count"));
+    }
+
+    @Test
+    void remindersInWindowAreMergedAtWindowEnd() {
+        for (int i = 0; i < 5; i++) {
+            reminderCoalescer.remind(1L, "N1");
+        }
+        // 窗口内只推送首次催单
+        verify(webSocketServer, times(1)).sendToAllClient(anyString());
+
+        verify(webSocketServer, timeout(WINDOW * 5).times(2)).sendToAllClient(anyString());
+        assertEquals(5, messages(2).get(1).getIntValue("count"));
+
+        // 下一个窗口没有新的催单，不再推送，合并结束
+        verify(webSocketServer, after(WINDOW * 3).times(2)).sendToAllClient(anyString());
+        assertTrue(windows().isEmpty());
+    }
+
+    @Test
+    void quietWindowEndsCoalescing() {
+        reminderCoalescer.remind(1L, "N1");
+        verify(webSocketServer, after(WINDOW * 3).times(1)).sendToAllClient(anyString());
+        assertTrue(windows().isEmpty());
+
+        // 合并结束后的催单重新计数并立即推送
+        reminderCoalescer.remind(1L, "N1");
+        List<JSONObject> messages = messages(2);
+        assertEquals(1, messages.get(1).getIntValue("count"));
+    }
+
+    @Test
+    void continuousRemindersSendOncePerWindowWithRunningTotal() {
+        reminderCoalescer.remind(1L, "N1");
+        reminderCoalescer.remind(1L, "N1");
+        verify(webSocketServer, timeout(WINDOW * 5).times(2)).sendToAllClient(anyString());
+
+        // 第二个窗口内继续催单，窗口结束时推送首次催单以来的累计次数
+        reminderCoalescer.remind(1L, "N1");
+        reminderCoalescer.remind(1L, "N1");
+        verify(webSocketServer, timeout(WINDOW * 5).times(3)).sendToAllClient(anyString());
+
+        List<JSONObject> messages = messages(3);
+        assertEquals(1, messages.get(0).getIntValue("count"));
+        assertEquals(2, messages.get(1).getIntValue("count"));
+        assertEquals(4, messages.get(2).getIntValue("count"));
+    }
+
+    @Test
+    void ordersAreCoalescedSeparately() {
+        reminderCoalescer.remind(1L, "N1");
+        reminderCoalescer.remind(2L, "N2");
+        reminderCoalescer.remind(2L, "N2");
+
+        List<JSONObject> immediate = messages(2);
+        assertEquals(1L, immediate.get(0).getLongValue("orderId"));
+        assertEquals(2L, immediate.get(1).getLongValue("orderId"));
+
+        // 只有订单2在窗口内有新的催单
+        verify(webSocketServer, timeout(WINDOW * 5).times(3)).sendToAllClient(anyString());
+        JSONObject merged = messages(3).get(2);
+        assertEquals(2L, merged.getLongValue("orderId"));
+        assertEquals(2, merged.getIntValue("count"));
+    }
+
+    private List<JSONObject> messages(int count) {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(webSocketServer, times(count)).sendToAllClient(captor.capture());
+        return captor.getAllValues().stream().map(JSON::parseObject).collect(Collectors.toList());
+    }
+
+    private Map<?, ?> windows() {
+        return (Map<?, ?>) ReflectionTestUtils.getField(reminderCoalescer, "windows");
+    }
+}
@@ -0,0 +1,42 @@
+-- 分库测试用的订单表，每个内嵌数据库（分片）执行一次
+create alias if not exists reverse for 'com.sky.interceptor.OrderShardingInterceptorTest.reverse';
+
+create table if not exists orders (
+    id                      bigint auto_increment primary key,
+    number                  varchar(50),
+    status                  int,
+    user_id                 bigint,
+    address_book_id         bigint,
+    order_time              datetime,
+    checkout_time           datetime,
+    pay_method              int,
+    pay_status              tinyint,
+    amount                  decimal(10, 2),
+    remark                  varchar(100),
+    phone                   varchar(11),
+    address                 varchar(255),
+    consignee               varchar(32),
+    cancel_reason           varchar(255),
+    rejection_reason        varchar(255),
+    cancel_time             datetime,
+    estimated_delivery_time datetime,
+    delivery_status         tinyint,
+    delivery_time           datetime,
+    pack_amount             int,
+    tableware_number        int,
+    tableware_status        tinyint,
+    number_rev              varchar(50),
+    phone_rev               varchar(11)
+);
+
+create table if not exists order_detail (
+    id          bigint auto_increment primary key,
+    name        varchar(32),
+    image       varchar(255),
+    order_id    bigint not null,
+    dish_id     bigint,
+    setmeal_id  bigint,
+    dish_flavor varchar(50),
+    number      int    not null default 1,
+    amount      decimal(10, 2)
+);